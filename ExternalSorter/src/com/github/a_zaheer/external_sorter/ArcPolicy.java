@@ -0,0 +1,208 @@
+package com.github.a_zaheer.external_sorter;
+// -------------------------------------------------------------------------
+/**
+ * Adaptive Replacement Cache eviction (Megiddo and Modha). Frames are split
+ * between T1, blocks seen once recently, and T2, blocks seen at least twice.
+ * Ghost lists B1 and B2 remember blocks recently evicted from each side, and
+ * a miss on a ghost moves the target size of T1 towards the side that would
+ * have kept it. The split therefore adapts between recency and frequency on
+ * its own.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class ArcPolicy
+    implements EvictionPolicy
+{
+    // ~ Fields ................................................................
+    private FrameList    t1;
+    private FrameList    t2;
+    private GhostList    b1;
+    private GhostList    b2;
+    private final long[] blocks;   // frame -> block
+    private final int    capacity;
+    private int          target;   // p, the target size of T1
+
+    // a ghost hit seen by evict() before the matching miss()
+    private long         pendingBlock;
+    private boolean      pendingFrequent;
+
+    private static final long NO_BLOCK = -1L;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new ArcPolicy object.
+     *
+     * @param capacity
+     *            number of frames in the pool
+     */
+    public ArcPolicy(int capacity)
+    {
+        this.capacity = capacity;
+        t1 = new FrameList(capacity);
+        t2 = new FrameList(capacity);
+        b1 = new GhostList(capacity);
+        b2 = new GhostList(2 * capacity);
+        blocks = new long[capacity];
+        clear();
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void hit(int frame)
+    {
+        t1.remove(frame);
+        t2.moveToFront(frame);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void miss(int frame, long block)
+    {
+        boolean frequent;
+        if (block == pendingBlock)
+            frequent = pendingFrequent;
+        else
+            frequent = ghostHit(block);
+        pendingBlock = NO_BLOCK;
+
+        blocks[frame] = block;
+        if (frequent)
+            t2.addFirst(frame);
+        else
+            t1.addFirst(frame);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int evict(long block)
+    {
+        boolean inB2 = b2.contains(block);
+        boolean frequent = ghostHit(block);
+        pendingBlock = block;
+        pendingFrequent = frequent;
+
+        if (!frequent)
+        {
+            // a brand new block: keep the ghost lists within their bounds
+            int l1 = t1.length() + b1.size();
+            if (l1 >= capacity)
+            {
+                if (t1.length() < capacity)
+                    b1.removeLast();
+                else
+                {
+                    int victim = t1.last(); // T1 is full, drop it outright
+                    t1.remove(victim);
+                    return victim;
+                }
+            }
+            else if (l1 + t2.length() + b2.size() >= 2 * capacity)
+                b2.removeLast();
+        }
+        return replace(inB2);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(int frame)
+    {
+        t1.remove(frame);
+        t2.remove(frame);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        t1.clear();
+        t2.clear();
+        b1.clear();
+        b2.clear();
+        target = 0;
+        pendingBlock = NO_BLOCK;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the current target size of T1.
+     *
+     * @return p, from 0 to the capacity
+     */
+    public int getTarget()
+    {
+        return target;
+    }
+
+
+    /*
+     * Adapts the target if the block is in a ghost list and forgets it there.
+     * Returns true if the block should go to T2.
+     */
+    private boolean ghostHit(long block)
+    {
+        if (b1.contains(block))
+        {
+            int delta = Math.max(1, b2.size() / b1.size());
+            target = Math.min(capacity, target + delta);
+            b1.remove(block);
+            return true;
+        }
+        if (b2.contains(block))
+        {
+            int delta = Math.max(1, b1.size() / b2.size());
+            target = Math.max(0, target - delta);
+            b2.remove(block);
+            return true;
+        }
+        return false;
+    }
+
+
+    /*
+     * Evicts the LRU frame of T1 or T2, depending on the target, and remembers
+     * its block in the matching ghost list.
+     */
+    private int replace(boolean inB2)
+    {
+        int victim;
+        int t1Size = t1.length();
+        if (t1Size > 0
+            && (t1Size > target || (inB2 && t1Size == target) || t2.isEmpty()))
+        {
+            victim = t1.last();
+            t1.remove(victim);
+            b1.add(blocks[victim]);
+        }
+        else
+        {
+            victim = t2.last();
+            t2.remove(victim);
+            b2.add(blocks[victim]);
+        }
+        return victim;
+    }
+}
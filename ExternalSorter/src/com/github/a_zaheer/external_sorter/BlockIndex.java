@@ -0,0 +1,220 @@
+package com.github.a_zaheer.external_sorter;
+import java.util.Arrays;
+
+// -------------------------------------------------------------------------
+/**
+ * Maps block numbers to small integer slots (usually buffer indices) without
+ * boxing. Uses open addressing with linear probing, and deletes by shifting
+ * the following entries back so that no tombstones pile up. Lookups,
+ * insertions and removals are O(1) on average no matter how many entries the
+ * index holds.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+class BlockIndex
+{
+    // ~ Fields ................................................................
+    private long[]          keys;
+    private int[]           vals;
+    private int             mask;
+    private int             size;
+
+    /**
+     * Returned by get() and remove() when the block is not in the index.
+     */
+    public static final int NONE        = -1;
+
+    private static final long EMPTY_KEY = -1L;
+    private static final int  MIN_SLOTS = 8;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new BlockIndex object sized for the expected number of
+     * entries. The index grows if more entries are added.
+     *
+     * @param expected
+     *            expected number of entries
+     */
+    public BlockIndex(int expected)
+    {
+        int slots = MIN_SLOTS;
+        while (slots < expected * 2)
+            slots <<= 1;
+
+        keys = new long[slots];
+        vals = new int[slots];
+        mask = slots - 1;
+        Arrays.fill(keys, EMPTY_KEY);
+        size = 0;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Looks up the slot mapped to a block.
+     *
+     * @param block
+     *            block number, must not be negative
+     * @return the slot, or NONE if the block is not in the index
+     */
+    public int get(long block)
+    {
+        int i = hash(block);
+        long k;
+        while ((k = keys[i]) != EMPTY_KEY)
+        {
+            if (k == block)
+                return vals[i];
+            i = (i + 1) & mask;
+        }
+        return NONE;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Maps a block to a slot, replacing any earlier mapping.
+     *
+     * @param block
+     *            block number, must not be negative
+     * @param slot
+     *            the slot
+     */
+    public void put(long block, int slot)
+    {
+        if (block < 0)
+            throw new IllegalArgumentException("Block must not be negative");
+
+        int i = hash(block);
+        long k;
+        while ((k = keys[i]) != EMPTY_KEY)
+        {
+            if (k == block)
+            {
+                vals[i] = slot;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = block;
+        vals[i] = slot;
+        size++;
+
+        if (size * 2 > keys.length)
+            grow();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Removes a block from the index.
+     *
+     * @param block
+     *            block number
+     * @return the slot that was mapped to the block, or NONE
+     */
+    public int remove(long block)
+    {
+        int i = hash(block);
+        long k;
+        while ((k = keys[i]) != EMPTY_KEY)
+        {
+            if (k == block)
+            {
+                int old = vals[i];
+                shiftBack(i);
+                size--;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        return NONE;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Removes all entries.
+     */
+    public void clear()
+    {
+        Arrays.fill(keys, EMPTY_KEY);
+        size = 0;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of entries.
+     *
+     * @return number of blocks in the index
+     */
+    public int size()
+    {
+        return size;
+    }
+
+
+    /*
+     * Fills the hole at "hole" with a later entry of the same probe chain, and
+     * repeats for the hole that leaves, until the chain ends.
+     */
+    private void shiftBack(int hole)
+    {
+        int i = hole;
+        while (true)
+        {
+            i = (i + 1) & mask;
+            long k = keys[i];
+            if (k == EMPTY_KEY)
+                break;
+
+            // an entry may only move back if its home is not between the hole
+            // and its current slot (cyclically)
+            int home = hash(k);
+            if (((i - home) & mask) >= ((i - hole) & mask))
+            {
+                keys[hole] = k;
+                vals[hole] = vals[i];
+                hole = i;
+            }
+        }
+        keys[hole] = EMPTY_KEY;
+    }
+
+
+    /*
+     * Doubles the table and reinserts every entry.
+     */
+    private void grow()
+    {
+        long[] oldKeys = keys;
+        int[] oldVals = vals;
+
+        keys = new long[oldKeys.length * 2];
+        vals = new int[oldVals.length * 2];
+        mask = keys.length - 1;
+        Arrays.fill(keys, EMPTY_KEY);
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] != EMPTY_KEY)
+                put(oldKeys[i], oldVals[i]);
+        }
+    }
+
+
+    /*
+     * Spreads the block number's bits (Fibonacci hashing) since neighboring
+     * blocks are looked up together most of the time.
+     */
+    private int hash(long block)
+    {
+        long h = block * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32)) & mask;
+    }
+}
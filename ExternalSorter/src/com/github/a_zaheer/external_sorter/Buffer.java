@@ -1,11 +1,24 @@
 package com.github.a_zaheer.external_sorter;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 // -------------------------------------------------------------------------
 /**
  * Implements a buffer, which reads and writes from a file. The buffer holds
  * blocks of data at a time, reducing disk reads and writes.
+ * <p>
+ * A buffer keeps the same backing storage, on the Java heap or direct, for
+ * its whole life. Records are read and written at offsets in that storage, so
+ * filling, flushing and reusing a buffer never allocates. All reads and
+ * writes are positional FileChannel calls; the RandomAccessFile versions only
+ * move the file pointer afterwards, as a read or write there would.
+ * <p>
+ * Changes are tracked per 512-byte sector, and a flush writes only the runs
+ * of changed sectors, so changing one record of a large block does not
+ * rewrite the whole block.
  *
  * @author Ali Zaheer
  * @version Oct 18, 2022
@@ -16,27 +29,95 @@ public class Buffer
     private long             blockOffset;
     private final int        capacity;
     private boolean          isDirty;
-    private byte[]           byteData;
-    private Record[]         records;
+    private int              length;  // bytes actually read from the file
+    private final ByteBuffer data;
+    private final long[]     dirtySectors; // bit per changed sector
+    private final int        sectorCount;
 
     /**
      * Default capacity of buffer in bytes.
      */
     public static final int  BUFFER_CAPACITY = 4096;
 
+    /**
+     * Largest capacity of a buffer in bytes.
+     */
+    public static final int  MAX_CAPACITY    = 4 << 20;
+
+    /**
+     * Bytes per sector, the unit in which changes are tracked and written.
+     */
+    public static final int  SECTOR_SIZE     = 512;
+
     private static final int EMPTY_OFFSET    = -1;
 
     // ----------------------------------------------------------
     /**
-     * Create a new Buffer object.
+     * Create a new Buffer object backed by a heap array.
      */
     public Buffer()
     {
-        capacity = BUFFER_CAPACITY;
+        this(false);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new Buffer object.
+     *
+     * @param direct
+     *            true to keep the data in a direct (off-heap) ByteBuffer
+     */
+    public Buffer(boolean direct)
+    {
+        this(BUFFER_CAPACITY, direct);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new Buffer object for blocks of a given size.
+     *
+     * @param capacity
+     *            block size in bytes, a multiple of the record size from
+     *            BUFFER_CAPACITY to MAX_CAPACITY
+     * @param direct
+     *            true to keep the data in a direct (off-heap) ByteBuffer
+     */
+    public Buffer(int capacity, boolean direct)
+    {
+        checkCapacity(capacity);
+        this.capacity = capacity;
+        isDirty = false;
+        blockOffset = EMPTY_OFFSET;
+        length = 0;
+        data = direct
+            ? ByteBuffer.allocateDirect(capacity)
+            : ByteBuffer.allocate(capacity);
+        sectorCount = (capacity + SECTOR_SIZE - 1) / SECTOR_SIZE;
+        dirtySectors = new long[(sectorCount + Long.SIZE - 1) / Long.SIZE];
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new Buffer object over storage the caller carved out, such as
+     * a frame of a FrameSlab. The storage's capacity is the block size.
+     *
+     * @param storage
+     *            backing storage, used from 0 to its capacity
+     */
+    public Buffer(ByteBuffer storage)
+    {
+        capacity = storage.capacity();
+        checkCapacity(capacity);
         isDirty = false;
         blockOffset = EMPTY_OFFSET;
-        byteData = new byte[capacity];
-        records = null;
+        length = 0;
+        data = storage;
+        data.clear();
+        sectorCount = (capacity + SECTOR_SIZE - 1) / SECTOR_SIZE;
+        dirtySectors = new long[(sectorCount + Long.SIZE - 1) / Long.SIZE];
     }
 
     // ~Public Methods ........................................................
@@ -44,7 +125,8 @@ public class Buffer
 
     // ----------------------------------------------------------
     /**
-     * Read a block of data from the file.
+     * Read a block of data from the file at its file pointer, which moves past
+     * the bytes read.
      *
      * @param raf
      *            the file
@@ -55,12 +137,68 @@ public class Buffer
     public Buffer fill(RandomAccessFile raf)
         throws IOException
     {
-        blockOffset = raf.getFilePointer();
+        long start = raf.getFilePointer();
+        fill(raf.getChannel(), start);
+        raf.seek(start + length);
+        return this;
+    }
 
-        raf.read(byteData);
 
-        records = Record.toRecArray(byteData);
+    // ----------------------------------------------------------
+    /**
+     * Read a block of data from a position in the file. Uses no file pointer,
+     * so several threads can read the same channel at once.
+     *
+     * @param channel
+     *            the file
+     * @param position
+     *            byte offset of the block
+     * @return the filled buffer
+     * @throws IOException
+     *             if an error happens when reading file
+     */
+    public Buffer fill(FileChannel channel, long position)
+        throws IOException
+    {
+        int read = 0;
+        int n = 0;
+        data.clear();
+        while (data.hasRemaining()
+            && (n = channel.read(data, position + read)) > 0)
+            read += n;
+        length = read;
+
+        for (int i = length; i < capacity; i++)
+            data.put(i, (byte)0);
+
+        blockOffset = position;
+        return this;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Fills the buffer with a block that was already read into another
+     * ByteBuffer, such as a prefetched one.
+     *
+     * @param src
+     *            the block's bytes, from position to limit
+     * @param offset
+     *            the block's byte offset in the file
+     * @return the filled buffer
+     */
+    public Buffer load(ByteBuffer src, long offset)
+    {
+        length = Math.min(src.remaining(), capacity);
+        data.clear();
+        src.limit(src.position() + length);
+        data.put(src);
 
+        for (int i = length; i < capacity; i++)
+            data.put(i, (byte)0);
+
+        markClean();
+        blockOffset = offset;
         return this;
     }
 
@@ -68,7 +206,8 @@ public class Buffer
     // ----------------------------------------------------------
     /**
      * Writes the buffer's data back to its original location in the file. It
-     * overwrites the file if any changes were made to the buffer's data. Buffer
+     * overwrites the changed sectors of the file if any changes were made to
+     * the buffer's data, and leaves the file pointer after the block. Buffer
      * is empty after flush.
      *
      * @param raf
@@ -80,16 +219,50 @@ public class Buffer
     public boolean flush(RandomAccessFile raf)
         throws IOException
     {
-        boolean overwritten = false;
         if (blockOffset == EMPTY_OFFSET)
             throw new IllegalStateException(
                 "Error writing empty buffer to file");
 
-        if (isDirty)
+        long end = blockOffset + length;
+        boolean overwritten = flush(raf.getChannel());
+        if (overwritten)
+            raf.seek(end);
+        return overwritten;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Writes the changed sectors of the buffer back to their location in the
+     * file, without using the file pointer. Buffer is empty after flush.
+     *
+     * @param channel
+     *            the file
+     * @return if the file was overwritten
+     * @throws IOException
+     *             if an error occurs while writing to the file
+     */
+    public boolean flush(FileChannel channel)
+        throws IOException
+    {
+        if (blockOffset == EMPTY_OFFSET)
+            throw new IllegalStateException(
+                "Error writing empty buffer to file");
+
+        boolean overwritten = isDirty;
+        int sector = 0;
+        while (isDirty && (sector = nextSector(sector, true)) < sectorCount)
         {
-            raf.seek(blockOffset);
-            raf.write(byteData);
-            overwritten = true;
+            int end = nextSector(sector, false);
+            int from = sector * SECTOR_SIZE;
+            int to = Math.min(end * SECTOR_SIZE, length);
+            sector = end;
+            if (from >= to)
+                continue;
+
+            data.clear().limit(to).position(from);
+            while (data.hasRemaining())
+                channel.write(data, blockOffset + data.position());
         }
         this.flush();
         return overwritten;
@@ -98,20 +271,21 @@ public class Buffer
 
     // ----------------------------------------------------------
     /**
-     * Clears the buffer without writing to anything.
+     * Clears the buffer without writing to anything. The backing storage is
+     * kept for the next fill.
      */
     public void flush()
     {
-        isDirty = false;
+        markClean();
         blockOffset = EMPTY_OFFSET;
-        byteData = new byte[capacity];
-        records = null;
+        length = 0;
     }
 
 
     // ----------------------------------------------------------
     /**
-     * Get the record located at the "pos" position relative to the buffer.
+     * Get a copy of the record located at the "pos" position relative to the
+     * buffer.
      *
      * @param pos
      *            record's index
@@ -119,13 +293,13 @@ public class Buffer
      */
     public Record getRecord(int pos)
     {
-        if (pos < 0 || pos >= capacity)
-            throw new IllegalArgumentException("Position must be within range");
-
+        int at = recordOffset(pos);
         if (blockOffset == EMPTY_OFFSET)
             throw new IllegalStateException("Reading from an empty buffer");
 
-        return records[pos];
+        return new Record(
+            data.getShort(at + Record.BYTE_INDEX_KEY),
+            data.getShort(at + Record.BYTE_INDEX_VALUE));
     }
 
 
@@ -140,14 +314,195 @@ public class Buffer
      */
     public void setRecord(int pos, Record newRec)
     {
-        if (pos < 0 || pos >= capacity)
-            throw new IllegalArgumentException("Position must be within range");
+        int at = recordOffset(pos);
+        if (blockOffset == EMPTY_OFFSET)
+            throw new IllegalStateException("Writing to an empty buffer");
+
+        markDirty(at, Record.SIZE_IN_BYTES);
+        data.putShort(at + Record.BYTE_INDEX_KEY, newRec.getKey());
+        data.putShort(at + Record.BYTE_INDEX_VALUE, newRec.getValue());
+    }
 
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the key of the record at the "pos" position relative to the
+     * buffer, without making a Record.
+     *
+     * @param pos
+     *            record's index
+     * @return the key
+     */
+    public short getKey(int pos)
+    {
+        int at = recordOffset(pos);
+        if (blockOffset == EMPTY_OFFSET)
+            throw new IllegalStateException("Reading from an empty buffer");
+
+        return data.getShort(at + Record.BYTE_INDEX_KEY);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the record at the "pos" position relative to the buffer, packed
+     * as by Record.pack().
+     *
+     * @param pos
+     *            record's index
+     * @return the packed record
+     */
+    public int getPacked(int pos)
+    {
+        int at = recordOffset(pos);
+        if (blockOffset == EMPTY_OFFSET)
+            throw new IllegalStateException("Reading from an empty buffer");
+
+        return data.getInt(at);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Changes the record at the "pos" position relative to the buffer to a
+     * packed one.
+     *
+     * @param pos
+     *            old record's index
+     * @param packed
+     *            the new record, packed as by Record.pack()
+     */
+    public void setPacked(int pos, int packed)
+    {
+        int at = recordOffset(pos);
         if (blockOffset == EMPTY_OFFSET)
             throw new IllegalStateException("Writing to an empty buffer");
 
-        isDirty = true;
-        records[pos].setTo(newRec);
+        markDirty(at, Record.SIZE_IN_BYTES);
+        data.putInt(at, packed);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Swaps two records of the buffer in place.
+     *
+     * @param a
+     *            first record's index
+     * @param b
+     *            second record's index
+     */
+    public void swapRecords(int a, int b)
+    {
+        int atA = recordOffset(a);
+        int atB = recordOffset(b);
+        if (blockOffset == EMPTY_OFFSET)
+            throw new IllegalStateException("Writing to an empty buffer");
+
+        markDirty(atA, Record.SIZE_IN_BYTES);
+        markDirty(atB, Record.SIZE_IN_BYTES);
+        int temp = data.getInt(atA);
+        data.putInt(atA, data.getInt(atB));
+        data.putInt(atB, temp);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Copies records, packed as by Record.pack(), into an array.
+     *
+     * @param pos
+     *            first record's index
+     * @param dst
+     *            destination array
+     * @param off
+     *            index in dst of the first record
+     * @param count
+     *            number of records
+     */
+    public void getRecords(int pos, int[] dst, int off, int count)
+    {
+        int at = rangeOffset(pos, count);
+        if (blockOffset == EMPTY_OFFSET)
+            throw new IllegalStateException("Reading from an empty buffer");
+
+        for (int i = 0; i < count; i++, at += Record.SIZE_IN_BYTES)
+            dst[off + i] = data.getInt(at);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Changes records to ones packed as by Record.pack() in an array.
+     *
+     * @param pos
+     *            first record's index
+     * @param src
+     *            source array
+     * @param off
+     *            index in src of the first record
+     * @param count
+     *            number of records
+     */
+    public void setRecords(int pos, int[] src, int off, int count)
+    {
+        int at = rangeOffset(pos, count);
+        if (blockOffset == EMPTY_OFFSET)
+            throw new IllegalStateException("Writing to an empty buffer");
+
+        markDirty(at, count * Record.SIZE_IN_BYTES);
+        for (int i = 0; i < count; i++, at += Record.SIZE_IN_BYTES)
+            data.putInt(at, src[off + i]);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Copies the bytes of records into a ByteBuffer, advancing its position.
+     *
+     * @param pos
+     *            first record's index
+     * @param dst
+     *            destination, with room for count records
+     * @param count
+     *            number of records
+     */
+    public void getRecords(int pos, ByteBuffer dst, int count)
+    {
+        int at = rangeOffset(pos, count);
+        if (blockOffset == EMPTY_OFFSET)
+            throw new IllegalStateException("Reading from an empty buffer");
+
+        ByteBuffer src = data.duplicate();
+        src.limit(at + count * Record.SIZE_IN_BYTES).position(at);
+        dst.put(src);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Changes records to the bytes from a ByteBuffer, advancing its position.
+     *
+     * @param pos
+     *            first record's index
+     * @param src
+     *            source, with count records remaining
+     * @param count
+     *            number of records
+     */
+    public void setRecords(int pos, ByteBuffer src, int count)
+    {
+        int at = rangeOffset(pos, count);
+        if (blockOffset == EMPTY_OFFSET)
+            throw new IllegalStateException("Writing to an empty buffer");
+
+        markDirty(at, count * Record.SIZE_IN_BYTES);
+        ByteBuffer from = src.duplicate();
+        from.limit(from.position() + count * Record.SIZE_IN_BYTES);
+        ByteBuffer to = data.duplicate();
+        to.position(at);
+        to.put(from);
+        src.position(from.position());
     }
 
 
@@ -164,6 +519,147 @@ public class Buffer
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Copies the bytes that came from the file into another ByteBuffer, so
+     * they can be written while the buffer is used and changed further.
+     *
+     * @param dst
+     *            destination, flipped for reading afterwards
+     */
+    public void copyTo(ByteBuffer dst)
+    {
+        if (blockOffset == EMPTY_OFFSET)
+            throw new IllegalStateException("Reading from an empty buffer");
+
+        ByteBuffer src = data.duplicate();
+        src.clear().limit(length);
+        dst.clear();
+        dst.put(src);
+        dst.flip();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Copies the changed sectors into a buffer as large as the block, at
+     * the same offsets, and gets where they are. The rest of dst is left
+     * as it was.
+     *
+     * @param dst
+     *            where the changed bytes go
+     * @param extents
+     *            gets the start and end of each run of changed bytes, one
+     *            after the other; room for one more int than there are
+     *            sectors is enough
+     * @return number of runs
+     */
+    public int copyDirtyTo(ByteBuffer dst, int[] extents)
+    {
+        if (blockOffset == EMPTY_OFFSET)
+            throw new IllegalStateException("Reading from an empty buffer");
+
+        ByteBuffer src = data.duplicate();
+        ByteBuffer to = dst.duplicate();
+        int runs = 0;
+        int sector = 0;
+        while (isDirty && (sector = nextSector(sector, true)) < sectorCount)
+        {
+            int end = nextSector(sector, false);
+            int from = sector * SECTOR_SIZE;
+            int until = Math.min(end * SECTOR_SIZE, length);
+            sector = end;
+            if (from >= until)
+                continue;
+
+            src.limit(until).position(from);
+            to.limit(until).position(from);
+            to.put(src);
+            extents[2 * runs] = from;
+            extents[2 * runs + 1] = until;
+            runs++;
+        }
+        return runs;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets a read-only view of the bytes that came from the file, so they can
+     * be written along with other buffers.
+     *
+     * @return the view, from 0 to the length
+     */
+    public ByteBuffer view()
+    {
+        if (blockOffset == EMPTY_OFFSET)
+            throw new IllegalStateException("Reading from an empty buffer");
+
+        ByteBuffer view = data.asReadOnlyBuffer();
+        view.clear().limit(length);
+        return view;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Marks the buffer as matching the file, after its data was written some
+     * other way.
+     */
+    public void markClean()
+    {
+        isDirty = false;
+        Arrays.fill(dirtySectors, 0L);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of bytes a flush would write: the changed sectors that
+     * came from the file.
+     *
+     * @return bytes, 0 if the buffer is clean
+     */
+    public int dirtyBytes()
+    {
+        int bytes = 0;
+        int sector = 0;
+        while (isDirty && (sector = nextSector(sector, true)) < sectorCount)
+        {
+            int end = nextSector(sector, false);
+            bytes += Math.max(0,
+                Math.min(end * SECTOR_SIZE, length) - sector * SECTOR_SIZE);
+            sector = end;
+        }
+        return bytes;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of bytes that came from the file, less than the
+     * capacity for a block cut short by the end of the file.
+     *
+     * @return bytes read into the buffer
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Checks if the buffer was changed since it was filled or last written.
+     *
+     * @return true or false
+     */
+    public boolean isDirty()
+    {
+        return isDirty;
+    }
+
+
     // ----------------------------------------------------------
     /**
      * Checks if the buffer has the bytes starting at the "start" offset. All
@@ -194,4 +690,96 @@ public class Buffer
     {
         return (this.getOffset() == EMPTY_OFFSET);
     }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the block size of the buffer.
+     *
+     * @return capacity in bytes
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Checks that a block size can be used for a buffer.
+     *
+     * @param capacity
+     *            block size in bytes
+     * @throws IllegalArgumentException
+     *             if it is not a multiple of the record size from
+     *             BUFFER_CAPACITY to MAX_CAPACITY
+     */
+    public static void checkCapacity(int capacity)
+    {
+        if (capacity < BUFFER_CAPACITY || capacity > MAX_CAPACITY
+            || capacity % Record.SIZE_IN_BYTES != 0)
+            throw new IllegalArgumentException(
+                "Block size must be a multiple of " + Record.SIZE_IN_BYTES
+                    + " from " + BUFFER_CAPACITY + " to " + MAX_CAPACITY);
+    }
+
+
+    /*
+     * Marks the sectors holding some bytes as changed.
+     */
+    private void markDirty(int at, int bytes)
+    {
+        isDirty = true;
+        if (bytes < 1)
+            return;
+        int last = (at + bytes - 1) / SECTOR_SIZE;
+        for (int i = at / SECTOR_SIZE; i <= last; i++)
+            dirtySectors[i >>> 6] |= 1L << i;
+    }
+
+
+    /*
+     * Finds the first sector from a given one that is changed, or unchanged
+     * if dirty is false. Returns sectorCount if there is none.
+     */
+    private int nextSector(int from, boolean dirty)
+    {
+        int word = from >>> 6;
+        if (word >= dirtySectors.length)
+            return sectorCount;
+        long bits = dirty ? dirtySectors[word] : ~dirtySectors[word];
+        bits &= -1L << from;
+        while (bits == 0)
+        {
+            if (++word == dirtySectors.length)
+                return sectorCount;
+            bits = dirty ? dirtySectors[word] : ~dirtySectors[word];
+        }
+        return Math.min(sectorCount, word * Long.SIZE
+            + Long.numberOfTrailingZeros(bits));
+    }
+
+
+    /*
+     * Checks a run of records fits the buffer and returns the byte offset of
+     * the first.
+     */
+    private int rangeOffset(int pos, int count)
+    {
+        if (pos < 0 || count < 0
+            || count > capacity / Record.SIZE_IN_BYTES - pos)
+            throw new IllegalArgumentException("Range must be within buffer");
+        return pos * Record.SIZE_IN_BYTES;
+    }
+
+
+    /*
+     * Converts a record index to its byte offset in the backing storage.
+     */
+    private int recordOffset(int pos)
+    {
+        if (pos < 0 || pos >= capacity / Record.SIZE_IN_BYTES)
+            throw new IllegalArgumentException("Position must be within range");
+        return pos * Record.SIZE_IN_BYTES;
+    }
 }
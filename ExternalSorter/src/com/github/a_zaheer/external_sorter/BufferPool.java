@@ -22,7 +22,7 @@ public interface BufferPool<E>
      *            the position in the virtual array
      * @return the element
      */
-    public E getElem(int pos);
+    public E getElem(long pos);
 
 
     // ----------------------------------------------------------
@@ -34,7 +34,7 @@ public interface BufferPool<E>
      * @param newElem
      *            the new element
      */
-    public void setElem(int pos, E newElem);
+    public void setElem(long pos, E newElem);
 
 
     /**
@@ -45,7 +45,62 @@ public interface BufferPool<E>
      * @param b
      *            the second element's position
      */
-    public void swapElems(int a, int b);
+    public void swapElems(long a, long b);
+
+
+    // ----------------------------------------------------------
+    /**
+     * Hints that a range of elements will be used over and over, so its
+     * blocks should stay in memory until unpin(). A pool may pin only some
+     * of the blocks, or none, so as to keep buffers for everything else.
+     *
+     * @param pos
+     *            the first element's position
+     * @param count
+     *            number of elements
+     */
+    public void pin(long pos, long count);
+
+
+    // ----------------------------------------------------------
+    /**
+     * Ends a pin() of the same range. The blocks go back to the eviction
+     * policy once nothing else pins them.
+     *
+     * @param pos
+     *            the first element's position
+     * @param count
+     *            number of elements
+     */
+    public void unpin(long pos, long count);
+
+
+    // ----------------------------------------------------------
+    /**
+     * Hints that a range of elements will be used soon, so its blocks may be
+     * read ahead.
+     *
+     * @param pos
+     *            the first element's position
+     * @param count
+     *            number of elements
+     */
+    public void willNeed(long pos, long count);
+
+
+    // ----------------------------------------------------------
+    /**
+     * Hints that a range of elements will not be used again, so the blocks
+     * lying wholly in it may be written back and dropped right away. A range
+     * that ends where the last one started joins it, so a block across the
+     * two counts as wholly in the range.
+     *
+     * @param pos
+     *            the first element's position
+     * @param count
+     *            number of elements
+     */
+    public void dontNeed(long pos, long count);
 
 
     // ----------------------------------------------------------
@@ -62,5 +117,5 @@ public interface BufferPool<E>
      *
      * @return length
      */
-    public int length();
+    public long length();
 }
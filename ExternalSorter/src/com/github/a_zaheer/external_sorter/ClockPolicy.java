@@ -0,0 +1,112 @@
+package com.github.a_zaheer.external_sorter;
+import java.util.Arrays;
+
+// -------------------------------------------------------------------------
+/**
+ * CLOCK (second chance) eviction. Each frame has a reference bit that is set
+ * on every hit. A hand sweeps the frames in order, clearing set bits, and
+ * evicts the first frame whose bit is already clear. Hits cost only a store,
+ * which makes CLOCK much cheaper than LRU for hit-heavy workloads.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class ClockPolicy
+    implements EvictionPolicy
+{
+    // ~ Fields ................................................................
+    private final boolean[] referenced;
+    private final boolean[] tracked;
+    private int             hand;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new ClockPolicy object.
+     *
+     * @param capacity
+     *            number of frames in the pool
+     */
+    public ClockPolicy(int capacity)
+    {
+        referenced = new boolean[capacity];
+        tracked = new boolean[capacity];
+        hand = 0;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void hit(int frame)
+    {
+        referenced[frame] = true;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void miss(int frame, long block)
+    {
+        tracked[frame] = true;
+        referenced[frame] = false;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int evict(long block)
+    {
+        // two sweeps are enough: the first clears every bit
+        for (int i = 0; i < 2 * tracked.length; i++)
+        {
+            int frame = hand;
+            hand = (hand + 1) % tracked.length;
+            if (!tracked[frame])
+                continue;
+
+            if (referenced[frame])
+                referenced[frame] = false;
+            else
+            {
+                tracked[frame] = false;
+                return frame;
+            }
+        }
+        throw new IllegalStateException("No frame to evict");
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(int frame)
+    {
+        tracked[frame] = false;
+        referenced[frame] = false;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        Arrays.fill(referenced, false);
+        Arrays.fill(tracked, false);
+        hand = 0;
+    }
+}
@@ -0,0 +1,333 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// -------------------------------------------------------------------------
+/**
+ * A second tier of the cache for blocks the pool evicted. Blocks are kept
+ * packed, so a byte budget holds more of them than the same memory spent on
+ * buffers, and a block found here costs one pass over its bytes instead of
+ * a disk read. Blocks that do not shrink are kept as they are. When the
+ * budget is full, the least recently used block is dropped.
+ * <p>
+ * Each key is packed as its difference from the key before it, zigzagged so
+ * that small steps down are small numbers too, in a varint: 7 bits a byte,
+ * low bits first, with the top bit set on every byte but the last. Values
+ * are kept as they are. Keys of a sorted or partly sorted block then take
+ * one byte instead of two, which is most of what a general compressor finds
+ * in them at a small part of the cost.
+ * <p>
+ * The tier only ever holds blocks as they are in the file: the pool writes
+ * a dirty block back before handing it over. Dropping a block therefore
+ * never needs a write. A block stays stored when it is loaded into a
+ * buffer, so the pool need not pack it again if it is evicted unchanged.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class CompressedTier
+    implements Closeable
+{
+    // ~ Fields ................................................................
+    private final long               budget;
+    private long                     stored;  // bytes held, with overhead
+    private final Map<Long, Entry>   entries; // least recently used first
+    private byte[]                   plain;   // a block as it is in the file
+    private byte[]                   packed;  // a block packed
+
+    /**
+     * Bytes counted for each block on top of its data, for the map entry
+     * and the arrays' headers.
+     */
+    public static final int          ENTRY_OVERHEAD = 64;
+
+    private static final int         CHECK_EVERY    = 63; // records, less 1
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new CompressedTier object.
+     *
+     * @param budget
+     *            most bytes the stored blocks may take
+     */
+    public CompressedTier(long budget)
+    {
+        if (budget < 1)
+            throw new IllegalArgumentException("Budget must be positive");
+
+        this.budget = budget;
+        entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true);
+        plain = new byte[0];
+        packed = new byte[0];
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Stores a block, replacing any copy already stored, and drops the
+     * oldest blocks until the budget holds.
+     *
+     * @param block
+     *            block number
+     * @param data
+     *            the block's bytes, from position to limit; the position
+     *            does not move
+     * @return false if the block alone is over the budget and was not stored
+     */
+    public boolean put(long block, ByteBuffer data)
+    {
+        remove(block);
+
+        int length = data.remaining();
+        grow(length);
+        data.duplicate().get(plain, 0, length);
+
+        int size = pack(length);
+        Entry entry;
+        if (size < length)
+            entry = new Entry(Arrays.copyOf(packed, size), length, false);
+        else
+            entry = new Entry(Arrays.copyOf(plain, length), length, true);
+
+        long cost = entry.cost();
+        if (cost > budget)
+            return false;
+        entries.put(block, entry);
+        stored += cost;
+
+        Iterator<Entry> oldest = entries.values().iterator();
+        while (stored > budget)
+        {
+            stored -= oldest.next().cost();
+            oldest.remove();
+        }
+        return true;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Loads a stored block into a buffer. The block stays stored and
+     * becomes the most recently used.
+     *
+     * @param block
+     *            block number
+     * @param into
+     *            buffer to load the block into
+     * @param offset
+     *            the block's byte offset in the file
+     * @return true if the block was stored and is now in the buffer
+     */
+    public boolean take(long block, Buffer into, long offset)
+    {
+        Entry entry = entries.get(block);
+        if (entry == null)
+            return false;
+
+        byte[] bytes = entry.data;
+        if (!entry.raw)
+        {
+            grow(entry.length);
+            unpack(entry.data, entry.length);
+            bytes = plain;
+        }
+        into.load(ByteBuffer.wrap(bytes, 0, entry.length), offset);
+        return true;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Drops a block if it is stored, such as one the file now holds newer
+     * data for.
+     *
+     * @param block
+     *            block number
+     */
+    public void remove(long block)
+    {
+        Entry entry = entries.remove(block);
+        if (entry != null)
+            stored -= entry.cost();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Tells if a block is stored.
+     *
+     * @param block
+     *            block number
+     * @return true if it is
+     */
+    public boolean contains(long block)
+    {
+        return entries.containsKey(block);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Drops every stored block.
+     */
+    public void clear()
+    {
+        entries.clear();
+        stored = 0;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of bytes the stored blocks take, counting
+     * ENTRY_OVERHEAD for each.
+     *
+     * @return bytes stored, at most the budget
+     */
+    public long getStoredBytes()
+    {
+        return stored;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of blocks stored.
+     *
+     * @return block count
+     */
+    public int getBlockCount()
+    {
+        return entries.size();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Drops every stored block and frees the scratch arrays.
+     */
+    @Override
+    public void close()
+    {
+        clear();
+        plain = new byte[0];
+        packed = new byte[0];
+    }
+
+
+    /*
+     * Makes the scratch arrays hold at least a block of length bytes.
+     */
+    private void grow(int length)
+    {
+        if (plain.length >= length)
+            return;
+        plain = new byte[length];
+        packed = new byte[length];
+    }
+
+
+    /*
+     * Packs the block in plain into packed. Stops as soon as the records
+     * packed so far have not shrunk, which for a block of random keys is
+     * after the first few, and then returns length.
+     */
+    private int pack(int length)
+    {
+        int n = length / Record.SIZE_IN_BYTES;
+        int size = 0;
+        short last = 0;
+        for (int i = 0; i < n; i++)
+        {
+            if (size + Record.SIZE_IN_BYTES + 1 > length)
+                return length; // a full step might not fit
+            int at = i * Record.SIZE_IN_BYTES;
+            short key = (short)((plain[at] << 8) | (plain[at + 1] & 0xFF));
+            short delta = (short)(key - last);
+            last = key;
+            int zigzag = (delta << 1) ^ (delta >> 31);
+            while (zigzag >= 0x80)
+            {
+                packed[size++] = (byte)(zigzag | 0x80);
+                zigzag >>>= 7;
+            }
+            packed[size++] = (byte)zigzag;
+            packed[size++] = plain[at + 2];
+            packed[size++] = plain[at + 3];
+            if ((i & CHECK_EVERY) == CHECK_EVERY && size >= at)
+                return length;
+        }
+        int tail = length - n * Record.SIZE_IN_BYTES;
+        if (size + tail >= length)
+            return length;
+        System.arraycopy(plain, n * Record.SIZE_IN_BYTES, packed, size, tail);
+        return size + tail;
+    }
+
+
+    /*
+     * Unpacks a block of length bytes into plain.
+     */
+    private void unpack(byte[] data, int length)
+    {
+        int n = length / Record.SIZE_IN_BYTES;
+        int from = 0;
+        short last = 0;
+        for (int i = 0; i < n; i++)
+        {
+            int zigzag = 0;
+            int shift = 0;
+            byte b;
+            do
+            {
+                b = data[from++];
+                zigzag |= (b & 0x7F) << shift;
+                shift += 7;
+            }
+            while (b < 0);
+            last += (short)((zigzag >>> 1) ^ -(zigzag & 1));
+            int at = i * Record.SIZE_IN_BYTES;
+            plain[at] = (byte)(last >> 8);
+            plain[at + 1] = (byte)last;
+            plain[at + 2] = data[from++];
+            plain[at + 3] = data[from++];
+        }
+        System.arraycopy(
+            data,
+            from,
+            plain,
+            n * Record.SIZE_IN_BYTES,
+            length - n * Record.SIZE_IN_BYTES);
+    }
+
+
+    // -------------------------------------------------------------------------
+    /**
+     * A stored block: packed, or raw if it did not shrink.
+     */
+    private static final class Entry
+    {
+        private final byte[]  data;
+        private final int     length; // bytes of the block in the file
+        private final boolean raw;
+
+        private Entry(byte[] data, int length, boolean raw)
+        {
+            this.data = data;
+            this.length = length;
+            this.raw = raw;
+        }
+
+
+        private long cost()
+        {
+            return data.length + ENTRY_OVERHEAD;
+        }
+    }
+}
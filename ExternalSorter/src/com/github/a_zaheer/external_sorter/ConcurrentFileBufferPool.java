@@ -0,0 +1,653 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.LongAdder;
+
+// -------------------------------------------------------------------------
+/**
+ * A buffer pool that several threads can share. Blocks are split among lock
+ * stripes by a hash of the block number, and each stripe is a small pool of
+ * its own, with its own buffers, index and LRU order, guarded by its own
+ * lock. Threads working on blocks of different stripes never wait for each
+ * other. A stripe makes each buffer the first time it needs one.
+ * <p>
+ * Blocks are read and written with positional FileChannel calls, so there is
+ * no shared file pointer to seek, and the statistics are kept in LongAdders
+ * that copyStatsTo() hands to an IOStats. A swap of records in two stripes
+ * takes both locks, lower stripe first, so two swaps can never deadlock.
+ * <p>
+ * A range is copied a block at a time, each block under its stripe's lock,
+ * so other threads can see a range half written.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class ConcurrentFileBufferPool
+    implements RecordBufferPool
+{
+    // ~ Fields ................................................................
+    private final FileChannel channel;
+    private final Stripe[]    stripes;
+    private final int         blockSize;
+
+    private final LongAdder   hits         = new LongAdder();
+    private final LongAdder   misses       = new LongAdder();
+    private final LongAdder   reads        = new LongAdder();
+    private final LongAdder   writes       = new LongAdder();
+    private final LongAdder   bytesWritten = new LongAdder();
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new ConcurrentFileBufferPool object with the default block
+     * size.
+     *
+     * @param channel
+     *            source file
+     * @param maxBuff
+     *            maximum number of buffers in all stripes
+     * @param stripeCount
+     *            number of lock stripes, at most maxBuff
+     */
+    public ConcurrentFileBufferPool(
+        FileChannel channel,
+        int maxBuff,
+        int stripeCount)
+    {
+        this(channel, maxBuff, Buffer.BUFFER_CAPACITY, stripeCount);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new ConcurrentFileBufferPool object.
+     *
+     * @param channel
+     *            source file
+     * @param maxBuff
+     *            maximum number of buffers in all stripes
+     * @param blockSize
+     *            bytes per block, a multiple of the record size from
+     *            Buffer.BUFFER_CAPACITY to Buffer.MAX_CAPACITY
+     * @param stripeCount
+     *            number of lock stripes, at most maxBuff
+     */
+    public ConcurrentFileBufferPool(
+        FileChannel channel,
+        int maxBuff,
+        int blockSize,
+        int stripeCount)
+    {
+        Buffer.checkCapacity(blockSize);
+        if (stripeCount < 1 || stripeCount > maxBuff)
+            throw new IllegalArgumentException(
+                "Number of stripes must be from 1 to the number of buffers");
+
+        this.channel = channel;
+        this.blockSize = blockSize;
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++)
+        {
+            // spread the remainder over the first stripes
+            int frames = maxBuff / stripeCount
+                + (i < maxBuff % stripeCount ? 1 : 0);
+            stripes[i] = new Stripe(i, frames);
+        }
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record getElem(long pos)
+    {
+        long block = blockOf(pos);
+        Stripe stripe = stripeOf(block);
+        synchronized (stripe)
+        {
+            return stripe.get(pos, block);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setElem(long pos, Record newRec)
+    {
+        long block = blockOf(pos);
+        Stripe stripe = stripeOf(block);
+        synchronized (stripe)
+        {
+            stripe.set(pos, block, newRec);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Swaps two records as one step: no other thread sees only half of it.
+     *
+     * @param a
+     *            first record's index
+     * @param b
+     *            second record's index
+     */
+    @Override
+    public void swapElems(long a, long b)
+    {
+        swapAt(a, b);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public short keyAt(long pos)
+    {
+        long block = blockOf(pos);
+        Stripe stripe = stripeOf(block);
+        synchronized (stripe)
+        {
+            Buffer buff = stripe.buffer(block);
+            return buff.getKey(stripe.posInBuff(pos, buff));
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Compares the keys of the records at two positions. Each key is read
+     * under its own stripe's lock, so the comparison is not one step.
+     *
+     * @param a
+     *            the first record's position
+     * @param b
+     *            the second record's position
+     * @return negative if a's key is less than b's, positive if greater, and
+     *         zero if equal
+     */
+    @Override
+    public int compareAt(long a, long b)
+    {
+        return Short.compare(keyAt(a), keyAt(b));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Swaps two records as one step: no other thread sees only half of it.
+     *
+     * @param a
+     *            first record's index
+     * @param b
+     *            second record's index
+     */
+    @Override
+    public void swapAt(long a, long b)
+    {
+        long blockA = blockOf(a);
+        long blockB = blockOf(b);
+        Stripe stripeA = stripeOf(blockA);
+        Stripe stripeB = stripeOf(blockB);
+
+        // always lock the lower stripe first
+        Stripe first = stripeA;
+        Stripe second = stripeB;
+        if (stripeA.number > stripeB.number)
+        {
+            first = stripeB;
+            second = stripeA;
+        }
+
+        synchronized (first)
+        {
+            synchronized (second)
+            {
+                // each access finds its buffer again, since getting B can
+                // evict A's buffer from a stripe with one frame
+                int recA = stripeA.getPacked(a, blockA);
+                int recB = stripeB.getPacked(b, blockB);
+                stripeB.setPacked(b, blockB, recA);
+                stripeA.setPacked(a, blockA, recB);
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readRange(long pos, int[] dst, int off, int count)
+    {
+        checkArray(dst.length, off, count);
+        moveRange(pos, count, false, dst, off, null);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readRange(long pos, ByteBuffer dst)
+    {
+        int count = dst.remaining() / Record.SIZE_IN_BYTES;
+        moveRange(pos, count, false, null, 0, dst);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeRange(long pos, int[] src, int off, int count)
+    {
+        checkArray(src.length, off, count);
+        moveRange(pos, count, true, src, off, null);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeRange(long pos, ByteBuffer src)
+    {
+        int count = src.remaining() / Record.SIZE_IN_BYTES;
+        moveRange(pos, count, true, null, 0, src);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void copyRange(long from, long to, long count)
+    {
+        checkRange(from, count);
+        checkRange(to, count);
+        if (count == 0 || from == to)
+            return;
+
+        // from the back if the destination overlaps the end of the source
+        int chunk = (int)Math.min(blockSize / Record.SIZE_IN_BYTES, count);
+        ByteBuffer temp = ByteBuffer.allocate(chunk * Record.SIZE_IN_BYTES);
+        boolean backward = to > from && to < from + count;
+        for (long done = 0; done < count; done += chunk)
+        {
+            int n = (int)Math.min(chunk, count - done);
+            long at = backward ? count - done - n : done;
+            temp.clear().limit(n * Record.SIZE_IN_BYTES);
+            moveRange(from + at, n, false, null, 0, temp);
+            temp.flip();
+            moveRange(to + at, n, true, null, 0, temp);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void pin(long pos, long count)
+    {
+        // the stripes take no hints
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unpin(long pos, long count)
+    {
+        // the stripes take no hints
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void willNeed(long pos, long count)
+    {
+        // the stripes take no hints
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dontNeed(long pos, long count)
+    {
+        // the stripes take no hints
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        for (Stripe stripe : stripes)
+        {
+            synchronized (stripe)
+            {
+                stripe.clear();
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long length()
+    {
+        try
+        {
+            return channel.size() / Record.SIZE_IN_BYTES;
+        }
+        catch (IOException e)
+        {
+            throw handleIOE(e);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Copies the counts so far into an IOStats, replacing its hits, misses,
+     * reads, writes and bytes written.
+     *
+     * @param stats
+     *            IO statistics log
+     */
+    public void copyStatsTo(IOStats stats)
+    {
+        stats.setHits(hits.sum());
+        stats.setMisses(misses.sum());
+        stats.setReads(reads.sum());
+        stats.setWrites(writes.sum());
+        stats.setBytesWritten(bytesWritten.sum());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of lock stripes.
+     *
+     * @return stripe count
+     */
+    public int stripeCount()
+    {
+        return stripes.length;
+    }
+
+
+    private long blockOf(long pos)
+    {
+        if (pos < 0)
+            throw new IllegalArgumentException("Position must be within range");
+        return pos * Record.SIZE_IN_BYTES / blockSize;
+    }
+
+
+    /*
+     * Moves count records starting at pos between the file and either ints,
+     * from index off, or bytes, from its position, which advances. Each block
+     * is copied under its stripe's lock.
+     */
+    private void moveRange(
+        long pos,
+        long count,
+        boolean write,
+        int[] ints,
+        int off,
+        ByteBuffer bytes)
+    {
+        checkRange(pos, count);
+        int perBlock = blockSize / Record.SIZE_IN_BYTES;
+        long done = 0;
+        while (done < count)
+        {
+            long recPos = pos + done;
+            long block = recPos / perBlock;
+            int inBlock = (int)(recPos % perBlock);
+            int n = (int)Math.min(perBlock - inBlock, count - done);
+            int at = off + (int)done;
+
+            Stripe stripe = stripeOf(block);
+            synchronized (stripe)
+            {
+                Buffer buff = stripe.buffer(block);
+                if (write && ints != null)
+                    buff.setRecords(inBlock, ints, at, n);
+                else if (write)
+                    buff.setRecords(inBlock, bytes, n);
+                else if (ints != null)
+                    buff.getRecords(inBlock, ints, at, n);
+                else
+                    buff.getRecords(inBlock, bytes, n);
+            }
+            done += n;
+        }
+    }
+
+
+    private void checkRange(long pos, long count)
+    {
+        if (pos < 0 || count < 0 || count > length() - pos)
+            throw new IllegalArgumentException("Range must be within the file");
+    }
+
+
+    private void checkArray(int length, int off, int count)
+    {
+        if (off < 0 || count < 0 || count > length - off)
+            throw new IllegalArgumentException(
+                "Range must be within the array");
+    }
+
+
+    /*
+     * Picks a block's stripe. The hash spreads neighbouring blocks over
+     * different stripes, so a scan does not queue up on one lock.
+     */
+    private Stripe stripeOf(long block)
+    {
+        long h = block * 0x9E3779B97F4A7C15L;
+        return stripes[(int)((h >>> 32) % stripes.length)];
+    }
+
+
+    /**
+     * Converts IOException(checked) to RuntimeException(unchecked).
+     */
+    private RuntimeException handleIOE(IOException e)
+    {
+        return new RuntimeException(
+            "Unexpected error happened with the file",
+            e);
+    }
+
+
+    // -------------------------------------------------------------------------
+    /**
+     * One lock stripe: the frames, index and LRU order for its blocks. Every
+     * method must be called holding the stripe's lock.
+     */
+    private final class Stripe
+    {
+        private final Buffer[]   buffers;
+        private final BlockIndex index;
+        private final LruPolicy  policy;
+        private final int[]      freeFrames;
+        private int              freeCount;
+        private final int        number;
+
+        private Stripe(int number, int frames)
+        {
+            buffers = new Buffer[frames]; // made on first use
+            index = new BlockIndex(frames);
+            policy = new LruPolicy(frames);
+            freeFrames = new int[frames];
+            this.number = number;
+            resetFreeFrames();
+        }
+
+
+        private Record get(long pos, long block)
+        {
+            Buffer buff = buffer(block);
+            return buff.getRecord(posInBuff(pos, buff));
+        }
+
+
+        private void set(long pos, long block, Record rec)
+        {
+            Buffer buff = buffer(block);
+            buff.setRecord(posInBuff(pos, buff), rec);
+        }
+
+
+        private int getPacked(long pos, long block)
+        {
+            Buffer buff = buffer(block);
+            return buff.getPacked(posInBuff(pos, buff));
+        }
+
+
+        private void setPacked(long pos, long block, int packed)
+        {
+            Buffer buff = buffer(block);
+            buff.setPacked(posInBuff(pos, buff), packed);
+        }
+
+
+        /*
+         * Finds the frame holding a block, reading it into the frame the
+         * policy gives up if it is not there.
+         */
+        private Buffer buffer(long block)
+        {
+            int frame = index.get(block);
+            if (frame != BlockIndex.NONE)
+            {
+                hits.increment();
+                policy.hit(frame);
+                return buffers[frame];
+            }
+            misses.increment();
+
+            if (freeCount > 0)
+                frame = freeFrames[--freeCount];
+            else
+                frame = policy.evict(block);
+
+            Buffer buff = buffers[frame];
+            if (buff == null)
+            {
+                buff = new Buffer(blockSize, true);
+                buffers[frame] = buff;
+            }
+            else if (!buff.isEmpty())
+            {
+                long victim = buff.getOffset() / blockSize;
+                try
+                {
+                    int bytes = buff.dirtyBytes();
+                    if (buff.flush(channel))
+                    {
+                        writes.increment();
+                        bytesWritten.add(bytes);
+                    }
+                }
+                catch (IOException e)
+                {
+                    policy.miss(frame, victim); // still holds its dirty block
+                    throw handleIOE(e);
+                }
+                index.remove(victim);
+            }
+
+            try
+            {
+                buff.fill(channel, block * blockSize);
+            }
+            catch (IOException e)
+            {
+                freeFrames[freeCount++] = frame;
+                throw handleIOE(e);
+            }
+            reads.increment();
+            index.put(block, frame);
+            policy.miss(frame, block);
+            return buff;
+        }
+
+
+        private void clear()
+        {
+            for (Buffer buff : buffers)
+            {
+                if (buff == null || buff.isEmpty())
+                    continue;
+                try
+                {
+                    int bytes = buff.dirtyBytes();
+                    if (buff.flush(channel))
+                    {
+                        writes.increment();
+                        bytesWritten.add(bytes);
+                    }
+                }
+                catch (IOException e)
+                {
+                    throw handleIOE(e);
+                }
+            }
+            index.clear();
+            policy.clear();
+            resetFreeFrames();
+        }
+
+
+        private void resetFreeFrames()
+        {
+            freeCount = buffers.length;
+            for (int i = 0; i < buffers.length; i++)
+                freeFrames[i] = buffers.length - 1 - i;
+        }
+
+
+        private int posInBuff(long pos, Buffer buff)
+        {
+            long offset = pos * Record.SIZE_IN_BYTES;
+            return (int)((offset - buff.getOffset()) / Record.SIZE_IN_BYTES);
+        }
+    }
+}
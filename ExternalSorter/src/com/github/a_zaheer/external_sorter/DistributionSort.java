@@ -0,0 +1,421 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// -------------------------------------------------------------------------
+/**
+ * Sorts a file of records by distributing them on their keys, reading and
+ * writing it only in order. Keys are shorts, and in practice no more than
+ * Record.KEY_MAXIMUM, so a count for every key fits in memory:
+ * <ol>
+ * <li>The file is read once to count the records of each key. That gives
+ * where each key's records start in the sorted file. The keys are then cut
+ * into buckets of consecutive keys, each with no more records than the
+ * memory holds twice over (read in, and sorted) unless it is a single
+ * key. Each bucket needs a write-combining buffer of at least MIN_COMBINE
+ * records next to a block for reading the file; if there would be more
+ * buckets than that leaves room for, the buckets are made larger.</li>
+ * <li>The file is read again and every record is appended to its bucket's
+ * region of a temporary file through a write-combining buffer per bucket,
+ * so each write is a run of records headed for the same place.</li>
+ * <li>The buckets are read back in order, those with more than one key are
+ * counting sorted in memory, and all are written over the file from the
+ * start. A bucket too large to sort in memory is first scattered again on
+ * its own keys into a second temporary file, and so on.</li>
+ * </ol>
+ * A file that fits in memory is read once, counting sorted and written back.
+ * Records with equal keys keep the order they had in the file.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class DistributionSort
+{
+    // ~ Fields ................................................................
+    private final FileChannel file;
+    private final long        memory;
+    private final int         blockSize;
+    private final IOStats     stats;
+    private final Path        tempDir;
+    private int               buckets;
+    private int               capacity;   // records sorted in memory at once
+    private long              maxBuckets; // buckets the buffers leave room for
+    private long[]            counts;     // records of each key
+    private List<Path>        tempPaths;  // a temporary file for each level
+    private List<FileChannel> temps;
+    private int[]             recs;       // scratch for sorting a bucket
+    private int[]             sorted;
+
+    /**
+     * Number of different keys a record can have.
+     */
+    public static final int   KEYS          = 1 << 16;
+
+    /**
+     * Fewest records in a write-combining buffer, which limits how many
+     * buckets share the memory.
+     */
+    public static final int   MIN_COMBINE   = 16;
+
+    /**
+     * Most records sorted in memory at once, whatever the budget.
+     */
+    public static final int   MAX_RECORDS   = 1 << 28;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new DistributionSort object. The caller keeps ownership of
+     * the channel.
+     *
+     * @param file
+     *            the file to sort
+     * @param memory
+     *            bytes for a bucket sorted in memory and for the buffers,
+     *            at least three blocks
+     * @param blockSize
+     *            bytes per sequential read or write, a block size Buffer
+     *            accepts
+     * @param stats
+     *            IO statistics log
+     * @param tempDir
+     *            directory for the temporary bucket file
+     */
+    public DistributionSort(
+        FileChannel file,
+        long memory,
+        int blockSize,
+        IOStats stats,
+        Path tempDir)
+    {
+        Buffer.checkCapacity(blockSize);
+        if (memory < 3L * blockSize)
+            throw new IllegalArgumentException(
+                "Memory must hold at least three blocks");
+
+        this.file = file;
+        this.memory = memory;
+        this.blockSize = blockSize;
+        this.stats = stats;
+        this.tempDir = tempDir;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of buckets the last sort scattered records into, at
+     * every level.
+     *
+     * @return buckets, 1 if the file fit in memory, 0 before a sort
+     */
+    public int getBucketCount()
+    {
+        return buckets;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Sorts the file in place. Bytes past the last whole record are left
+     * alone.
+     *
+     * @throws IOException
+     *             if the file or a temporary file cannot be read or written
+     */
+    public void sort()
+        throws IOException
+    {
+        long length = file.size() - file.size() % Record.SIZE_IN_BYTES;
+        long count = length / Record.SIZE_IN_BYTES;
+        // a bucket and its sorted copy
+        capacity =
+            (int)Math.min(memory / (2 * Record.SIZE_IN_BYTES), MAX_RECORDS);
+        // the input window and a buffer for each bucket
+        maxBuckets =
+            (memory - blockSize) / (MIN_COMBINE * Record.SIZE_IN_BYTES);
+        buckets = 0;
+        if (count == 0)
+            return;
+
+        if (count <= capacity)
+        {
+            // one bucket: read it, sort it and write it straight back
+            int[] all = new int[(int)count];
+            RunReader in = new RunReader(file, 0, length, blockSize, stats);
+            for (int i = 0; i < all.length; i++)
+            {
+                all[i] = in.current();
+                in.advance();
+            }
+            RunWriter out = new RunWriter(file, 0, blockSize, stats);
+            writeSorted(all, new int[all.length], all.length, out);
+            out.flush();
+            buckets = 1;
+            return;
+        }
+
+        counts = histogram(length);
+        tempPaths = new ArrayList<>();
+        temps = new ArrayList<>();
+        try
+        {
+            // every record is in a temporary file before the first is
+            // written over the file
+            RunWriter out = new RunWriter(file, 0, blockSize, stats);
+            distribute(file, 0, length, 0, KEYS, 0, out);
+            out.flush();
+        }
+        finally
+        {
+            for (FileChannel temp : temps)
+                temp.close();
+            for (Path path : tempPaths)
+                Files.deleteIfExists(path);
+            counts = null;
+            recs = null;
+            sorted = null;
+        }
+    }
+
+
+    /*
+     * Counts the records of each key, indexed by the key's place among all
+     * short values.
+     */
+    private long[] histogram(long length)
+        throws IOException
+    {
+        long[] keyCounts = new long[KEYS];
+        RunReader in = new RunReader(file, 0, length, blockSize, stats);
+        while (!in.isDone())
+        {
+            keyCounts[slot(in.current())]++;
+            in.advance();
+        }
+        return keyCounts;
+    }
+
+
+    /*
+     * Sorts the records between start and end of src, which are those with
+     * keys in the slots from low to high, and writes them to out: scatters
+     * them into buckets in the temporary file of the given level, then
+     * gathers the buckets.
+     */
+    private void distribute(
+        FileChannel src,
+        long start,
+        long end,
+        int low,
+        int high,
+        int level,
+        RunWriter out)
+        throws IOException
+    {
+        int[] firstKeys = cut(low, high);
+        buckets += firstKeys.length - 1;
+        // the scratch arrays are not needed while scattering
+        recs = null;
+        sorted = null;
+        FileChannel temp = temp(level);
+        long[] bounds = scatter(src, start, end, temp, firstKeys);
+
+        for (int b = 0; b < bounds.length - 1; b++)
+        {
+            long records = (bounds[b + 1] - bounds[b]) / Record.SIZE_IN_BYTES;
+            // a bucket starts at a key with records
+            boolean oneKey = counts[firstKeys[b]] == records;
+            if (records > capacity && !oneKey)
+            {
+                distribute(
+                    temp,
+                    bounds[b],
+                    bounds[b + 1],
+                    firstKeys[b],
+                    firstKeys[b + 1],
+                    level + 1,
+                    out);
+                continue;
+            }
+
+            RunReader in =
+                new RunReader(temp, bounds[b], bounds[b + 1], blockSize, stats);
+            if (records <= 1 || oneKey)
+            {
+                // one key, already in file order
+                while (!in.isDone())
+                {
+                    out.write(in.current());
+                    in.advance();
+                }
+                continue;
+            }
+
+            if (recs == null)
+            {
+                recs = new int[capacity];
+                sorted = new int[capacity];
+            }
+            for (int i = 0; i < records; i++)
+            {
+                recs[i] = in.current();
+                in.advance();
+            }
+            writeSorted(recs, sorted, (int)records, out);
+        }
+    }
+
+
+    /*
+     * Cuts the slots from low to high into buckets of consecutive keys with
+     * at most capacity records each, or a single key. If that makes more
+     * buckets than the buffers leave room for, the limit is doubled until it
+     * does not. Returns the first slot of each bucket and, last, high.
+     */
+    private int[] cut(int low, int high)
+    {
+        int[] firsts = new int[high - low + 1];
+        long limit = capacity;
+        while (true)
+        {
+            int n = 0;
+            long size = 0;
+            for (int slot = low; slot < high; slot++)
+            {
+                if (counts[slot] == 0)
+                    continue;
+                if (n == 0 || size + counts[slot] > limit)
+                {
+                    firsts[n++] = slot;
+                    size = 0;
+                }
+                size += counts[slot];
+            }
+            if (n <= maxBuckets)
+            {
+                firsts[n++] = high;
+                int[] result = new int[n];
+                System.arraycopy(firsts, 0, result, 0, n);
+                return result;
+            }
+            limit *= 2;
+        }
+    }
+
+
+    /*
+     * Appends every record between start and end of src to its bucket's
+     * region of temp, in order. Returns the byte offsets where the buckets
+     * start, and the end.
+     */
+    private long[] scatter(
+        FileChannel src,
+        long start,
+        long end,
+        FileChannel temp,
+        int[] firstKeys)
+        throws IOException
+    {
+        int n = firstKeys.length - 1;
+        int low = firstKeys[0];
+        long[] bounds = new long[n + 1];
+        int[] bucketOf = new int[firstKeys[n] - low];
+        for (int b = 0; b < n; b++)
+        {
+            long records = 0;
+            for (int slot = firstKeys[b]; slot < firstKeys[b + 1]; slot++)
+            {
+                bucketOf[slot - low] = b;
+                records += counts[slot];
+            }
+            bounds[b + 1] = bounds[b] + records * Record.SIZE_IN_BYTES;
+        }
+
+        // the input window and the buffers share the memory, which leaves
+        // each buffer at least MIN_COMBINE records
+        long share = (memory - blockSize) / n;
+        int combine = (int)Math.min(
+            blockSize,
+            share - share % Record.SIZE_IN_BYTES);
+        RunWriter[] outs = new RunWriter[n];
+        for (int b = 0; b < n; b++)
+            outs[b] = new RunWriter(temp, bounds[b], combine, stats);
+
+        RunReader in = new RunReader(src, start, end, blockSize, stats);
+        while (!in.isDone())
+        {
+            int packed = in.current();
+            outs[bucketOf[slot(packed) - low]].write(packed);
+            in.advance();
+        }
+        for (RunWriter out : outs)
+            out.flush();
+        return bounds;
+    }
+
+
+    /*
+     * Gets the temporary file of a level, creating it the first time.
+     */
+    private FileChannel temp(int level)
+        throws IOException
+    {
+        if (level == temps.size())
+        {
+            Path path = Files.createTempFile(tempDir, "buckets", ".bin");
+            tempPaths.add(path);
+            temps.add(FileChannel.open(
+                path,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+        }
+        return temps.get(level);
+    }
+
+
+    /*
+     * Writes the first n records stably sorted by key, counting the records
+     * of each key to find where they go in sorted.
+     */
+    private static void writeSorted(
+        int[] recs,
+        int[] sorted,
+        int n,
+        RunWriter out)
+        throws IOException
+    {
+        int low = KEYS;
+        int high = -1;
+        for (int i = 0; i < n; i++)
+        {
+            int slot = slot(recs[i]);
+            low = Math.min(low, slot);
+            high = Math.max(high, slot);
+        }
+
+        int[] starts = new int[high - low + 2];
+        for (int i = 0; i < n; i++)
+            starts[slot(recs[i]) - low + 1]++;
+        for (int k = 1; k < starts.length; k++)
+            starts[k] += starts[k - 1];
+
+        for (int i = 0; i < n; i++)
+            sorted[starts[slot(recs[i]) - low]++] = recs[i];
+        out.write(sorted, 0, n);
+    }
+
+
+    /*
+     * Gets the place of a packed record's key among all short values.
+     */
+    private static int slot(int packed)
+    {
+        return Record.packedKey(packed) - Short.MIN_VALUE;
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.a_zaheer.external_sorter;
+// -------------------------------------------------------------------------
+/**
+ * Decides which buffer a buffer pool gives up when it needs room for a new
+ * block. The pool refers to its buffers by frame number (0 to capacity - 1)
+ * and tells the policy about every hit, every miss and every eviction, so the
+ * policy can keep whatever history it needs. Policies are not thread-safe.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public interface EvictionPolicy
+{
+    // ----------------------------------------------------------
+    /**
+     * Called when a requested block was already in a frame.
+     *
+     * @param frame
+     *            frame holding the block
+     */
+    public void hit(int frame);
+
+
+    // ----------------------------------------------------------
+    /**
+     * Called after a missed block was read into a frame. The frame is not
+     * tracked by the policy before this call.
+     *
+     * @param frame
+     *            frame now holding the block
+     * @param block
+     *            block number
+     */
+    public void miss(int frame, long block);
+
+
+    // ----------------------------------------------------------
+    /**
+     * Picks the frame to give up so that a missed block can be read, and stops
+     * tracking it. Only called when every frame holds a block.
+     *
+     * @param block
+     *            the missed block that needs a frame
+     * @return the evicted frame
+     */
+    public int evict(long block);
+
+
+    // ----------------------------------------------------------
+    /**
+     * Stops tracking a frame the pool gave up on its own, to free its buffer
+     * rather than to make room. It is not an eviction, so the block is not
+     * remembered as one. The frame may come back in a later miss().
+     *
+     * @param frame
+     *            a frame holding a block
+     */
+    public void remove(int frame);
+
+
+    // ----------------------------------------------------------
+    /**
+     * Forgets all frames and history.
+     */
+    public void clear();
+
+
+    // ----------------------------------------------------------
+    /**
+     * Makes a policy by name.
+     *
+     * @param name
+     *            one of lru, clock, 2q, arc or lirs (any case)
+     * @param capacity
+     *            number of frames in the pool
+     * @return the policy
+     */
+    public static EvictionPolicy forName(String name, int capacity)
+    {
+        switch (name.trim().toLowerCase())
+        {
+            case "lru":
+                return new LruPolicy(capacity);
+            case "clock":
+                return new ClockPolicy(capacity);
+            case "2q":
+                return new TwoQueuePolicy(capacity);
+            case "arc":
+                return new ArcPolicy(capacity);
+            case "lirs":
+                return new LirsPolicy(capacity);
+            default:
+                throw new IllegalArgumentException(
+                    "Unknown eviction policy: " + name);
+        }
+    }
+}
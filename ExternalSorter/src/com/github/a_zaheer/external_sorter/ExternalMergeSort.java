@@ -0,0 +1,402 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// -------------------------------------------------------------------------
+/**
+ * Sorts a file of records in two phases, reading and writing it only in
+ * order. First the file is read a memory-sized chunk at a time, each chunk
+ * is sorted in memory as packed records and written out as a sorted run to a
+ * temporary file, in the same place it had in the file. Then the runs are
+ * merged by a LoserTreeMerger, as many at once as there is memory for a
+ * window of each, until one run is left, which is written over the file.
+ * When half the fan-in merges the runs in as few passes, each run gets two
+ * windows instead and reads the next in the background while the merge
+ * uses the other. A file that fits in memory is sorted as one chunk and
+ * written straight back.
+ * <p>
+ * With r runs and a fan-in of k, the data is read and written once to make
+ * the runs and once per merge pass, ceil(log_k(r)) passes in all, instead of
+ * the random block I/O of a heap sort through a buffer pool. Reads and
+ * writes are counted in the IOStats a window at a time, along with the
+ * number of runs and merge passes.
+ * <p>
+ * The runs can instead be made by replacement selection, which on random
+ * input makes runs about twice as long as the memory, so there are about
+ * half as many to merge. The lengths of the runs of the last sort are kept
+ * in a RunStats.
+ * <p>
+ * Records are sorted by key. Records with equal keys may come out in any
+ * order.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class ExternalMergeSort
+{
+    // ~ Fields ................................................................
+    private final FileChannel file;
+    private final long        memory;
+    private final int         blockSize;
+    private final IOStats     stats;
+    private final Path        tempDir;
+    private boolean           replacement;
+    private RunStats          runStats;
+
+    /**
+     * Most records sorted in memory at once, whatever the budget.
+     */
+    public static final int   MAX_CHUNK_RECORDS = 1 << 28;
+
+    /**
+     * Most bytes in one run's window during a merge.
+     */
+    public static final int   MAX_WINDOW        = 1 << 24;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new ExternalMergeSort object. The caller keeps ownership of
+     * the channel.
+     *
+     * @param file
+     *            the file to sort
+     * @param memory
+     *            bytes for the chunk sorted in memory and for the merge
+     *            windows, at least three blocks
+     * @param blockSize
+     *            bytes per read or write, a block size Buffer accepts
+     * @param stats
+     *            IO statistics log
+     * @param tempDir
+     *            directory for the temporary run files
+     */
+    public ExternalMergeSort(
+        FileChannel file,
+        long memory,
+        int blockSize,
+        IOStats stats,
+        Path tempDir)
+    {
+        Buffer.checkCapacity(blockSize);
+        if (memory < 3L * blockSize)
+            throw new IllegalArgumentException(
+                "Memory must hold at least three blocks");
+
+        this.file = file;
+        this.memory = memory;
+        this.blockSize = blockSize;
+        this.stats = stats;
+        this.tempDir = tempDir;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Chooses how runs are made: by sorting a chunk at a time, the default,
+     * or by replacement selection.
+     *
+     * @param on
+     *            true to make runs by replacement selection
+     */
+    public void setReplacementSelection(boolean on)
+    {
+        replacement = on;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the lengths of the runs the last sort made.
+     *
+     * @return run statistics, or null before a sort
+     */
+    public RunStats getRunStats()
+    {
+        return runStats;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Sorts the file in place. Bytes past the last whole record are left
+     * alone.
+     *
+     * @throws IOException
+     *             if the file or a temporary file cannot be read or written
+     */
+    public void sort()
+        throws IOException
+    {
+        long length = file.size() - file.size() % Record.SIZE_IN_BYTES;
+        long chunkBytes = (long)chunkRecords() * Record.SIZE_IN_BYTES;
+        if (length == 0)
+            return;
+
+        if (length <= chunkBytes)
+        {
+            // one chunk: sort it and write it straight back
+            int[] recs = new int[(int)(length / Record.SIZE_IN_BYTES)];
+            readChunk(0, recs, recs.length);
+            Arrays.sort(recs);
+            RunWriter out = new RunWriter(file, 0, blockSize, stats);
+            out.write(recs, 0, recs.length);
+            out.flush();
+            stats.setRuns(stats.getRuns() + 1);
+            runStats = new RunStats(chunkRecords());
+            runStats.add(recs.length);
+            return;
+        }
+
+        Path runsPath = null;
+        Path otherPath = null;
+        try
+        {
+            runsPath = Files.createTempFile(tempDir, "runs", ".bin");
+            otherPath = Files.createTempFile(tempDir, "runs", ".bin");
+            try (
+                FileChannel runs = open(runsPath);
+                FileChannel other = open(otherPath);
+                AsynchronousFileChannel runsIn = openAsync(runsPath);
+                AsynchronousFileChannel otherIn = openAsync(otherPath))
+            {
+                long[] bounds;
+                if (replacement)
+                {
+                    // each record in the heap takes a bit for its run too
+                    int capacity = (int)(chunkRecords() * 32L / 33);
+                    runStats = new RunStats(capacity);
+                    bounds = new ReplacementSelection(
+                        file,
+                        capacity,
+                        blockSize,
+                        stats,
+                        runStats).makeRuns(runs, length);
+                }
+                else
+                {
+                    runStats = new RunStats(chunkRecords());
+                    bounds = makeRuns(runs, length, chunkBytes);
+                }
+                stats.setRuns(stats.getRuns() + bounds.length - 1);
+                merge(runs, runsIn, other, otherIn, bounds);
+            }
+        }
+        finally
+        {
+            if (runsPath != null)
+                Files.deleteIfExists(runsPath);
+            if (otherPath != null)
+                Files.deleteIfExists(otherPath);
+        }
+    }
+
+
+    /*
+     * Gets the number of records in a chunk: as many as the memory holds,
+     * at least a block's worth.
+     */
+    private int chunkRecords()
+    {
+        long records = Math.max(memory, blockSize) / Record.SIZE_IN_BYTES;
+        return (int)Math.min(records, MAX_CHUNK_RECORDS);
+    }
+
+
+    /*
+     * Sorts the file a chunk at a time into runs, each in the place the
+     * chunk had. Returns the byte offsets where the runs start, and the end.
+     */
+    private long[] makeRuns(FileChannel runs, long length, long chunkBytes)
+        throws IOException
+    {
+        int count = (int)((length + chunkBytes - 1) / chunkBytes);
+        long[] bounds = new long[count + 1];
+        int[] recs = new int[(int)(chunkBytes / Record.SIZE_IN_BYTES)];
+        RunWriter out = new RunWriter(runs, 0, blockSize, stats);
+        for (int i = 0; i < count; i++)
+        {
+            bounds[i] = (long)i * chunkBytes;
+            int n = (int)(Math.min(chunkBytes, length - bounds[i])
+                / Record.SIZE_IN_BYTES);
+            readChunk(bounds[i], recs, n);
+            Arrays.sort(recs, 0, n);
+            out.write(recs, 0, n);
+            runStats.add(n);
+        }
+        out.flush();
+        bounds[count] = length;
+        return bounds;
+    }
+
+
+    /*
+     * Merges the runs of src, fanIn at a time, back and forth between src
+     * and dst until few enough are left to merge over the file. Runs are
+     * written through the plain channels and read through the asynchronous
+     * ones on the same files.
+     */
+    private void merge(
+        FileChannel src,
+        AsynchronousFileChannel srcIn,
+        FileChannel dst,
+        AsynchronousFileChannel dstIn,
+        long[] bounds)
+        throws IOException
+    {
+        // a block for each run and one for the output, or two for each run
+        // if that makes no more passes
+        int count = bounds.length - 1;
+        int single = (int)Math.max(2, memory / blockSize - 1);
+        int fanIn = Math.max(2, single / 2);
+        int windows = 2;
+        if (passes(count, fanIn) > passes(count, single))
+        {
+            fanIn = single;
+            windows = 1;
+        }
+        FileChannel[] outs = { src, dst };
+        AsynchronousFileChannel[] ins =
+            windows == 2 ? new AsynchronousFileChannel[] { srcIn, dstIn }
+                : new AsynchronousFileChannel[2];
+        int side = 0; // of the file the runs are in
+        long[] runs = bounds;
+        while (runs.length - 1 > fanIn)
+        {
+            FileChannel to = outs[1 - side];
+            int groups = (runs.length - 1 + fanIn - 1) / fanIn;
+            long[] next = new long[groups + 1];
+            RunWriter out =
+                new RunWriter(to, 0, window(fanIn, windows), stats);
+            for (int g = 0; g < groups; g++)
+            {
+                int first = g * fanIn;
+                int last = Math.min(first + fanIn, runs.length - 1);
+                next[g] = out.getPosition();
+                mergeRuns(outs[side], ins[side], runs, first, last, out);
+            }
+            out.flush();
+            next[groups] = out.getPosition();
+            stats.setMergePasses(stats.getMergePasses() + 1);
+
+            runs = next;
+            side = 1 - side;
+        }
+
+        RunWriter out =
+            new RunWriter(file, 0, window(runs.length - 1, windows), stats);
+        mergeRuns(outs[side], ins[side], runs, 0, runs.length - 1, out);
+        out.flush();
+        stats.setMergePasses(stats.getMergePasses() + 1);
+    }
+
+
+    /*
+     * Gets the number of passes that merge r runs with a fan-in of k.
+     */
+    private static int passes(int r, int k)
+    {
+        int count = 1;
+        for (long left = r; left > k; left = (left + k - 1) / k)
+            count++;
+        return count;
+    }
+
+
+    /*
+     * Merges runs first to last - 1 of a file into out, reading ahead
+     * through fromIn unless it is null.
+     */
+    private void mergeRuns(
+        FileChannel from,
+        AsynchronousFileChannel fromIn,
+        long[] runs,
+        int first,
+        int last,
+        RunWriter out)
+        throws IOException
+    {
+        int size = window(last - first, fromIn == null ? 1 : 2);
+        RunReader[] readers = new RunReader[last - first];
+        for (int i = first; i < last; i++)
+        {
+            readers[i - first] = fromIn == null
+                ? new RunReader(from, runs[i], runs[i + 1], size, stats)
+                : new RunReader(fromIn, runs[i], runs[i + 1], size, stats);
+        }
+        new LoserTreeMerger(readers).mergeTo(out);
+    }
+
+
+    /*
+     * Gets the bytes of each window when k runs with the given number of
+     * windows each are merged: an equal share of the memory for those and
+     * the output, in whole blocks.
+     */
+    private int window(int k, int windows)
+    {
+        long share =
+            memory / ((long)windows * k + 1) / blockSize * blockSize;
+        return (int)Math.min(MAX_WINDOW, Math.max(blockSize, share));
+    }
+
+
+    /*
+     * Reads n records of the file from a byte offset into recs, a block at
+     * a time.
+     */
+    private void readChunk(long offset, int[] recs, int n)
+        throws IOException
+    {
+        ByteBuffer window = ByteBuffer.allocateDirect(blockSize);
+        long position = offset;
+        int done = 0;
+        while (done < n)
+        {
+            int count = Math.min(blockSize / Record.SIZE_IN_BYTES, n - done);
+            window.clear().limit(count * Record.SIZE_IN_BYTES);
+            while (window.hasRemaining())
+            {
+                int read = file.read(window, position);
+                if (read < 0)
+                    throw new EOFException("Chunk ends past the file");
+                position += read;
+            }
+            window.flip();
+            window.asIntBuffer().get(recs, done, count);
+            stats.setReads(stats.getReads() + 1);
+            done += count;
+        }
+    }
+
+
+    /*
+     * Opens a temporary run file for reading and writing.
+     */
+    private static FileChannel open(Path path)
+        throws IOException
+    {
+        return FileChannel.open(
+            path,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    }
+
+
+    /*
+     * Opens a temporary run file for reading in the background.
+     */
+    private static AsynchronousFileChannel openAsync(Path path)
+        throws IOException
+    {
+        return AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+    }
+}
@@ -58,9 +58,9 @@ class FakeBufferPool
      * {@inheritDoc}
      */
     @Override
-    public Integer getElem(int pos)
+    public Integer getElem(long pos)
     {
-        return elemArray[pos];
+        return elemArray[Math.toIntExact(pos)];
     }
 
 
@@ -69,9 +69,9 @@ class FakeBufferPool
      * {@inheritDoc}
      */
     @Override
-    public void setElem(int pos, Integer newElem)
+    public void setElem(long pos, Integer newElem)
     {
-        elemArray[pos] = newElem;
+        elemArray[Math.toIntExact(pos)] = newElem;
     }
 
 
@@ -80,11 +80,57 @@ class FakeBufferPool
      * {@inheritDoc}
      */
     @Override
-    public void swapElems(int a, int b)
+    public void swapElems(long a, long b)
     {
-        Integer temp = elemArray[a];
-        elemArray[a] = elemArray[b];
-        elemArray[b] = temp;
+        int i = Math.toIntExact(a);
+        int j = Math.toIntExact(b);
+        Integer temp = elemArray[i];
+        elemArray[i] = elemArray[j];
+        elemArray[j] = temp;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void pin(long pos, long count)
+    {
+        // nothing is buffered
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unpin(long pos, long count)
+    {
+        // nothing is buffered
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void willNeed(long pos, long count)
+    {
+        // nothing is buffered
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dontNeed(long pos, long count)
+    {
+        // nothing is buffered
     }
 
 
@@ -106,7 +152,7 @@ class FakeBufferPool
      * {@inheritDoc}
      */
     @Override
-    public int length()
+    public long length()
     {
         return elemArray.length;
     }
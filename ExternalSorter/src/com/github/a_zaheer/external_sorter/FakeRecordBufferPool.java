@@ -0,0 +1,234 @@
+package com.github.a_zaheer.external_sorter;
+import java.nio.ByteBuffer;
+
+// -------------------------------------------------------------------------
+/**
+ * Simulates a record buffer pool with an array of packed records and no file
+ * read/write. This class is used to test the record heap sort without having
+ * to worry about IO.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+class FakeRecordBufferPool
+    implements RecordBufferPool
+{
+    // ~ Fields ................................................................
+    private int[] recs; // packed as by Record.pack()
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new FakeRecordBufferPool object to represent a record array.
+     *
+     * @param packed
+     *            the underlying array of packed records
+     */
+    public FakeRecordBufferPool(int[] packed)
+    {
+        recs = packed;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record getElem(long pos)
+    {
+        int packed = recs[Math.toIntExact(pos)];
+        return new Record(Record.packedKey(packed), Record.packedValue(packed));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setElem(long pos, Record newElem)
+    {
+        recs[Math.toIntExact(pos)] =
+            Record.pack(newElem.getKey(), newElem.getValue());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void swapElems(long a, long b)
+    {
+        swapAt(a, b);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public short keyAt(long pos)
+    {
+        return Record.packedKey(recs[Math.toIntExact(pos)]);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareAt(long a, long b)
+    {
+        return Short.compare(keyAt(a), keyAt(b));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void swapAt(long a, long b)
+    {
+        int i = Math.toIntExact(a);
+        int j = Math.toIntExact(b);
+        int temp = recs[i];
+        recs[i] = recs[j];
+        recs[j] = temp;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readRange(long pos, int[] dst, int off, int count)
+    {
+        System.arraycopy(recs, Math.toIntExact(pos), dst, off, count);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readRange(long pos, ByteBuffer dst)
+    {
+        int at = Math.toIntExact(pos);
+        while (dst.remaining() >= Record.SIZE_IN_BYTES)
+            dst.putInt(recs[at++]);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeRange(long pos, int[] src, int off, int count)
+    {
+        System.arraycopy(src, off, recs, Math.toIntExact(pos), count);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeRange(long pos, ByteBuffer src)
+    {
+        int at = Math.toIntExact(pos);
+        while (src.remaining() >= Record.SIZE_IN_BYTES)
+            recs[at++] = src.getInt();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void copyRange(long from, long to, long count)
+    {
+        System.arraycopy(
+            recs,
+            Math.toIntExact(from),
+            recs,
+            Math.toIntExact(to),
+            Math.toIntExact(count));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void pin(long pos, long count)
+    {
+        // nothing is buffered
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unpin(long pos, long count)
+    {
+        // nothing is buffered
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void willNeed(long pos, long count)
+    {
+        // nothing is buffered
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dontNeed(long pos, long count)
+    {
+        // nothing is buffered
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        // nothing is buffered
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long length()
+    {
+        return recs.length;
+    }
+}
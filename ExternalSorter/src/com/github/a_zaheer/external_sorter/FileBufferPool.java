@@ -1,32 +1,128 @@
 package com.github.a_zaheer.external_sorter;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.function.LongPredicate;
 
 // -------------------------------------------------------------------------
 /**
- * Implements a buffer pool for a RandomAccessFile (RAF). The buffer pool holds
- * a list of buffers, the number specified by the caller, that work with blocks
- * of data from the RAF. The buffers are maintained using an Least Recently Used
+ * Implements a buffer pool for a file. The buffer pool holds a list of
+ * buffers, the number specified by the caller, that work with blocks of data
+ * from the file. The buffers are maintained using an Least Recently Used
  * strategy. The IO statistics are logged in the IOStats object provided by the
- * caller. Assuming the RAF is formatted to consist of records, the buffer pool
+ * caller. Assuming the file is formatted to consist of records, the buffer pool
  * allows the caller to access the file as one big array of records.
+ * <p>
+ * Buffers live in a fixed array of frames and a hash index maps block numbers
+ * to frames. Which frame to give up on a miss is up to an EvictionPolicy, LRU
+ * unless the caller picks another one.
+ * <p>
+ * Blocks are read and written with positional FileChannel calls into direct
+ * buffers, so the pool never seeks and does not use the file pointer. The
+ * only call that uses the channel's position is the gathering write of
+ * adjacent buffers, which sets it first.
+ * <p>
+ * A Prefetcher can be given to the pool to read blocks ahead of sequential
+ * and strided access. Misses on prefetched blocks are then served from the
+ * prefetcher and do not count as disk reads.
+ * <p>
+ * With a CompressedTier, evicted blocks are kept packed after they are
+ * written back, and a miss on one of them unpacks it instead of reading the
+ * disk. A block keeps its packed copy while it is in a frame and unchanged,
+ * so evicting it again does not pack it again.
+ * <p>
+ * With a WriteBehind, once more than a given share of the buffers is dirty
+ * the least recently used dirty buffers are copied and written in the
+ * background until half that share is left, so evictions mostly find clean
+ * victims and do not write on the way to a read.
+ * <p>
+ * Dirty buffers written back together, by clear() or by a WriteBehind, go in
+ * file order, and buffers of adjacent blocks share one long write: a
+ * gathering write, or one background write.
+ * <p>
+ * A swap looks each block up once and swaps the records' bytes in place. If
+ * reading the second block evicts the first, the first block's buffer is
+ * kept aside until the swap is done and a spare buffer takes its frame, so
+ * every swap costs the same lookups whatever the eviction policy.
+ * <p>
+ * Ranges of records are copied a block at a time. A range longer than half
+ * the buffers could hold bypasses the cache: blocks already in a frame are
+ * used there, and the rest are read or written straight from the file in
+ * runs, without evicting anything.
+ * <p>
+ * Buffers are made the first time their frame is used, so the pool only
+ * grows to the number of blocks it has needed. With an idle limit, frames
+ * that were not used for that many accesses are written back and their
+ * buffers dropped, which gives the memory back when the working set
+ * shrinks; they are made again if it grows. With a FrameSlab, buffers are
+ * carved out of a few large direct chunks instead, and idle ones go back to
+ * the slab.
  *
  * @author Ali Zaheer
  * @version Oct 18, 2022
  */
 public class FileBufferPool
-    implements BufferPool<Record>
+    implements RecordBufferPool
 {
     // ~ Fields ................................................................
-    private RandomAccessFile     raf;
-    private PriorityList<Buffer> buffers;
-    private final int            maxBuffers;
-    private int                  activeBuffers;
-    private IOStats              stats;
+    private FileChannel      channel;
+    private Buffer[]         buffers;
+    private BlockIndex       index;     // block number -> frame
+    private EvictionPolicy   policy;
+    private int[]            freeFrames; // frames not holding a block
+    private int              freeCount;
+    private final int        maxBuffers;
+    private final int        blockSize;
+    private IOStats          stats;
+    private Prefetcher       prefetcher; // null unless reading ahead
+    private CompressedTier   tier;       // null unless keeping evictions
+    private LongPredicate    cached;     // block -> in a frame or being written
+    private WriteBehind      writeBehind; // null unless writing behind
+    private int              dirtyCount;
+    private int              dirtyHigh;  // start writing behind above this
+    private int              dirtyLow;   // and stop at this
+    private long[]           lastUse;    // frame -> tick of its last access
+    private long             tick;
+    private long[]           wroteBehind; // frame -> block last written behind
+    private long[]           byAge;      // scratch for picking dirty frames
+    private long[]           byBlock;    // scratch for ordering writes
+    private Buffer[]         run;        // scratch for adjacent buffers
+    private ByteBuffer       scratch;    // direct range I/O of int arrays
+    private Buffer           spare;      // takes the frame of a held buffer
+    private Buffer           held;       // evicted, but a swap still needs it
+    private int              pinned;     // frame of a swap's first block
+    private int[]            pins;       // frame -> pin() calls on its block
+    private int              pinnedFrames; // frames kept from the policy
+    private int              allocated;  // frames with a buffer
+    private int              peak;       // most frames that had a buffer
+    private FrameSlab        slab;       // null unless buffers share a slab
+    private long             idleLimit;  // 0 unless giving idle frames back
+    private long             nextTrim;   // tick of the next idle check
+    private long             hintStart;  // bytes of the last dontNeed(),
+    private long             hintEnd;    // joined with those above it
+
+    /**
+     * Number of buffers the auto sizing tries to keep, so that the hot top of
+     * a heap and a few other blocks fit at once.
+     */
+    public static final int  MIN_AUTO_BUFFERS = 32;
+
+    /**
+     * Most bytes a range reads or writes in one call when bypassing the
+     * cache, and most bytes of adjacent buffers written back in one call.
+     */
+    public static final int  MAX_DIRECT_RUN   = 1 << 20;
+
+    private static final int NO_FRAME         = -1;
 
     // ----------------------------------------------------------
     /**
-     * Create a new FileBufferPool object.
+     * Create a new FileBufferPool object that evicts the least recently used
+     * buffer.
      *
      * @param file
      *            source RAF
@@ -39,15 +135,104 @@ public class FileBufferPool
 
     public FileBufferPool(RandomAccessFile file, int maxBuff, IOStats stats)
     {
-        raf = file;
-        buffers = new PriorityList<Buffer>();
+        this(file, maxBuff, stats, new LruPolicy(maxBuff));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new FileBufferPool object.
+     *
+     * @param file
+     *            source RAF
+     * @param maxBuff
+     *            maximum number of buffers
+     * @param stats
+     *            IO statistics log
+     * @param policy
+     *            eviction policy made for maxBuff frames
+     */
+    public FileBufferPool(
+        RandomAccessFile file,
+        int maxBuff,
+        IOStats stats,
+        EvictionPolicy policy)
+    {
+        this(file, maxBuff, Buffer.BUFFER_CAPACITY, stats, policy);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new FileBufferPool object with a chosen block size.
+     *
+     * @param file
+     *            source RAF
+     * @param maxBuff
+     *            maximum number of buffers
+     * @param blockSize
+     *            bytes per block, a multiple of the record size from
+     *            Buffer.BUFFER_CAPACITY to Buffer.MAX_CAPACITY
+     * @param stats
+     *            IO statistics log
+     * @param policy
+     *            eviction policy made for maxBuff frames
+     */
+    public FileBufferPool(
+        RandomAccessFile file,
+        int maxBuff,
+        int blockSize,
+        IOStats stats,
+        EvictionPolicy policy)
+    {
+        this(file.getChannel(), maxBuff, blockSize, stats, policy);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new FileBufferPool object for a FileChannel.
+     *
+     * @param file
+     *            source file, open for reading and writing
+     * @param maxBuff
+     *            maximum number of buffers
+     * @param blockSize
+     *            bytes per block, a multiple of the record size from
+     *            Buffer.BUFFER_CAPACITY to Buffer.MAX_CAPACITY
+     * @param stats
+     *            IO statistics log
+     * @param policy
+     *            eviction policy made for maxBuff frames
+     */
+    public FileBufferPool(
+        FileChannel file,
+        int maxBuff,
+        int blockSize,
+        IOStats stats,
+        EvictionPolicy policy)
+    {
+        Buffer.checkCapacity(blockSize);
+        this.blockSize = blockSize;
+        channel = file;
+        buffers = new Buffer[maxBuff];
+        index = new BlockIndex(maxBuff);
+        this.policy = policy;
+        freeFrames = new int[maxBuff];
         maxBuffers = maxBuff;
-        activeBuffers = 0;
 
-        for (int i = 0; i < maxBuffers; i++)
-        {
-            buffers.insert(new Buffer());
-        }
+        resetFreeFrames();
+        pinned = NO_FRAME;
+        cached = block -> index.get(block) != BlockIndex.NONE
+            || (writeBehind != null && writeBehind.isPending(block))
+            || (tier != null && tier.contains(block));
+        lastUse = new long[maxBuff];
+        pins = new int[maxBuff];
+        wroteBehind = new long[maxBuff];
+        Arrays.fill(wroteBehind, -1);
+        byAge = new long[maxBuff];
+        byBlock = new long[maxBuff];
+        run = new Buffer[maxBuff];
 
         this.stats = stats;
     }
@@ -59,7 +244,7 @@ public class FileBufferPool
      * {@inheritDoc}
      */
     @Override
-    public Record getElem(int pos)
+    public Record getElem(long pos)
     {
 
         Buffer buff = getBuffer(pos);
@@ -74,13 +259,17 @@ public class FileBufferPool
      * {@inheritDoc}
      */
     @Override
-    public void setElem(int pos, Record newRec)
+    public void setElem(long pos, Record newRec)
     {
 
         Buffer buff = getBuffer(pos);
         int posInBuff = posInBuff(pos, buff.getOffset());
 
+        int dirtyBefore = dirtyCount;
+        willChange(buff);
         buff.setRecord(posInBuff, newRec);
+
+        maybeWriteBehind(dirtyBefore);
     }
 
 
@@ -89,14 +278,21 @@ public class FileBufferPool
      * {@inheritDoc}
      */
     @Override
-    public void swapElems(int a, int b)
+    public void swapElems(long a, long b)
     {
-        Record recA = getElem(a);
-        Record recB = getElem(b);
-        Record temp = new Record(recB.getKey(), recB.getValue());
+        swapAt(a, b);
+    }
+
 
-        setElem(b, recA);
-        setElem(a, temp);
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public short keyAt(long pos)
+    {
+        Buffer buff = getBuffer(pos);
+        return buff.getKey(posInBuff(pos, buff.getOffset()));
     }
 
 
@@ -105,28 +301,263 @@ public class FileBufferPool
      * {@inheritDoc}
      */
     @Override
-    public void clear()
+    public int compareAt(long a, long b)
     {
-        buffers.moveToStart();
+        return Short.compare(keyAt(a), keyAt(b));
+    }
 
-        Buffer temp;
-        for (int i = 0; i < activeBuffers; i++)
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void swapAt(long a, long b)
+    {
+        long blockA = a * Record.SIZE_IN_BYTES / blockSize;
+        long blockB = b * Record.SIZE_IN_BYTES / blockSize;
+        int dirtyBefore = dirtyCount;
+        if (blockA == blockB)
+        {
+            Buffer buff = getBuffer(a);
+            willChange(buff);
+            buff.swapRecords(
+                posInBuff(a, buff.getOffset()),
+                posInBuff(b, buff.getOffset()));
+        }
+        else
+        {
+            Buffer buffA = getBuffer(a);
+            Buffer buffB;
+            pinned = index.get(blockA);
+            try
+            {
+                buffB = getBuffer(b);
+            }
+            catch (RuntimeException e)
+            {
+                if (held != null)
+                    releaseHeld();
+                throw e;
+            }
+            finally
+            {
+                pinned = NO_FRAME;
+            }
+            if (held != null)
+                buffA = held; // B took A's frame
+
+            int inA = posInBuff(a, buffA.getOffset());
+            int inB = posInBuff(b, buffB.getOffset());
+            int recA = buffA.getPacked(inA);
+            willChange(buffA);
+            buffA.setPacked(inA, buffB.getPacked(inB));
+            willChange(buffB);
+            buffB.setPacked(inB, recA);
+
+            if (held != null)
+                releaseHeld();
+        }
+
+        maybeWriteBehind(dirtyBefore);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        if (writeBehind != null)
         {
-            temp = buffers.getValue();
             try
             {
-                raf.seek(temp.getOffset());
-                if (temp.flush(raf))
-                    stats.setWrites(stats.getWrites() + 1);
+                writeBehind.drain(); // older copies must land first
             }
             catch (IOException e)
             {
                 throw handleIOE(e);
             }
+        }
+
+        Buffer temp;
+        int count = 0;
+        try
+        {
+            if (!channel.isOpen())
+                throw new ClosedChannelException();
+            for (int i = 0; i < maxBuffers; i++)
+            {
+                temp = buffers[i];
+                if (temp == null || temp.isEmpty())
+                    continue;
+                if (temp.isDirty())
+                    byBlock[count++] = temp.getOffset() / blockSize;
+                else
+                    temp.flush();
+            }
+            writeAdjacent(count, false);
+        }
+        catch (IOException e)
+        {
+            throw handleIOE(e);
+        }
+        index.clear();
+        policy.clear();
+        resetFreeFrames();
+        dirtyCount = 0;
+        if (tier != null)
+            tier.clear(); // the file may change behind the pool's back now
+        Arrays.fill(pins, 0);
+        pinnedFrames = 0;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Brings the blocks of the range in and keeps them out of the eviction
+     * policy, first block first. Blocks are pinned only while at least half
+     * the buffers are left to the policy.
+     *
+     * @param pos
+     *            the first record's position
+     * @param count
+     *            number of records
+     */
+    @Override
+    public void pin(long pos, long count)
+    {
+        checkRange(pos, count);
+        if (count == 0)
+            return;
+
+        long last = blockOf(pos + count - 1);
+        for (long block = blockOf(pos); block <= last; block++)
+        {
+            int frame = index.get(block);
+            if ((frame == BlockIndex.NONE || pins[frame] == 0)
+                && pinnedFrames >= maxBuffers / 2)
+                return;
+            if (frame == BlockIndex.NONE)
+            {
+                getBuffer(block * blockSize / Record.SIZE_IN_BYTES);
+                frame = index.get(block);
+            }
+            if (pins[frame]++ == 0)
+            {
+                policy.remove(frame);
+                pinnedFrames++;
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unpin(long pos, long count)
+    {
+        checkRange(pos, count);
+        if (count == 0)
+            return;
+
+        long last = blockOf(pos + count - 1);
+        for (long block = blockOf(pos); block <= last; block++)
+        {
+            int frame = index.get(block);
+            if (frame == BlockIndex.NONE || pins[frame] == 0)
+                continue;
+            if (--pins[frame] == 0)
+            {
+                policy.miss(frame, block); // tracked again as if just read
+                pinnedFrames--;
+            }
+        }
+    }
+
 
-            buffers.next();
+    // ----------------------------------------------------------
+    /**
+     * Reads ahead the blocks of the range that are not in a frame, as many
+     * as the prefetcher has slots for. Does nothing without a prefetcher.
+     *
+     * @param pos
+     *            the first record's position
+     * @param count
+     *            number of records
+     */
+    @Override
+    public void willNeed(long pos, long count)
+    {
+        checkRange(pos, count);
+        if (count == 0 || prefetcher == null)
+            return;
+
+        long first = blockOf(pos);
+        prefetcher.requested(
+            first,
+            blockOf(pos + count - 1) - first + 1,
+            cached);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Writes back and frees the frames of blocks lying wholly in the range,
+     * unless they are pinned. The buffers are kept for other blocks.
+     *
+     * @param pos
+     *            the first record's position
+     * @param count
+     *            number of records
+     */
+    @Override
+    public void dontNeed(long pos, long count)
+    {
+        checkRange(pos, count);
+        if (count == 0)
+            return;
+        long start = pos * Record.SIZE_IN_BYTES;
+        long end = (pos + count) * Record.SIZE_IN_BYTES;
+        if (end == hintStart)
+            end = hintEnd; // joins the last hint
+        hintStart = start;
+        hintEnd = end;
+
+        // only blocks with records in this range are new
+        long first = (start + blockSize - 1) / blockSize;
+        long last = Math.min(blockOf(pos + count - 1), end / blockSize - 1);
+        if (end == length() * Record.SIZE_IN_BYTES)
+            last = blockOf(pos + count - 1); // the last block may be short
+        if (first > last)
+            return;
+
+        if (last - first < maxBuffers)
+        {
+            for (long block = first; block <= last; block++)
+            {
+                int frame = index.get(block);
+                if (frame != BlockIndex.NONE)
+                    drop(frame, block);
+            }
+        }
+        else
+        {
+            for (int frame = 0; frame < maxBuffers; frame++)
+            {
+                Buffer buff = buffers[frame];
+                if (buff == null || buff.isEmpty())
+                    continue;
+                long block = buff.getOffset() / blockSize;
+                if (block >= first && block <= last
+                    && index.get(block) == frame)
+                    drop(frame, block);
+            }
         }
-        activeBuffers = 0;
     }
 
 
@@ -135,11 +566,280 @@ public class FileBufferPool
      * {@inheritDoc}
      */
     @Override
-    public int length()
+    public void readRange(long pos, int[] dst, int off, int count)
     {
+        checkArray(dst.length, off, count);
+        moveRange(pos, count, false, bypasses(count), dst, off, null);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readRange(long pos, ByteBuffer dst)
+    {
+        int count = dst.remaining() / Record.SIZE_IN_BYTES;
+        moveRange(pos, count, false, bypasses(count), null, 0, dst);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeRange(long pos, int[] src, int off, int count)
+    {
+        checkArray(src.length, off, count);
+        moveRange(pos, count, true, bypasses(count), src, off, null);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeRange(long pos, ByteBuffer src)
+    {
+        int count = src.remaining() / Record.SIZE_IN_BYTES;
+        moveRange(pos, count, true, bypasses(count), null, 0, src);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void copyRange(long from, long to, long count)
+    {
+        checkRange(from, count);
+        checkRange(to, count);
+        if (count == 0 || from == to)
+            return;
+
+        // a block of records at a time, from the back if the destination
+        // overlaps the end of the source
+        boolean direct = bypasses(count);
+        int chunk = (int)Math.min(blockSize / Record.SIZE_IN_BYTES, count);
+        ByteBuffer temp = ByteBuffer.allocate(chunk * Record.SIZE_IN_BYTES);
+        boolean backward = to > from && to < from + count;
+        for (long done = 0; done < count; done += chunk)
+        {
+            int n = (int)Math.min(chunk, count - done);
+            long at = backward ? count - done - n : done;
+            temp.clear().limit(n * Record.SIZE_IN_BYTES);
+            moveRange(from + at, n, false, direct, null, 0, temp);
+            temp.flip();
+            moveRange(to + at, n, true, direct, null, 0, temp);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Starts or stops reading ahead. The caller keeps ownership of the
+     * prefetcher and closes it when done with the pool.
+     *
+     * @param p
+     *            the prefetcher, or null to stop reading ahead
+     */
+    public void setPrefetcher(Prefetcher p)
+    {
+        prefetcher = p;
+        if (p != null)
+            p.setBlockSize(blockSize);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Starts or stops keeping evicted blocks in a compressed tier, which
+     * serves later misses on them without a disk read. The tier is cleared
+     * first; it should not be shared with another pool. The caller keeps
+     * ownership of the tier and closes it when done with the pool.
+     *
+     * @param t
+     *            the tier, or null to drop evicted blocks
+     */
+    public void setCompressedTier(CompressedTier t)
+    {
+        if (t != null)
+            t.clear();
+        tier = t;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Starts or stops writing dirty buffers in the background. The caller
+     * keeps ownership of the WriteBehind and closes it when done with the
+     * pool.
+     *
+     * @param w
+     *            the WriteBehind, or null to write only on eviction
+     * @param dirtyRatio
+     *            share of the buffers that may be dirty before writes start,
+     *            more than 0 and at most 1
+     */
+    public void setWriteBehind(WriteBehind w, double dirtyRatio)
+    {
+        if (!(dirtyRatio > 0 && dirtyRatio <= 1))
+            throw new IllegalArgumentException(
+                "Dirty ratio must be more than 0 and at most 1");
+
         try
         {
-            return (int)(raf.length() / Record.SIZE_IN_BYTES);
+            if (writeBehind != null)
+                writeBehind.drain();
+            if (w != null)
+                w.setBlockSize(blockSize);
+        }
+        catch (IOException e)
+        {
+            throw handleIOE(e);
+        }
+        writeBehind = w;
+        dirtyHigh = Math.max(1, (int)(dirtyRatio * maxBuffers));
+        dirtyLow = dirtyHigh / 2;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of bytes per block.
+     *
+     * @return block size
+     */
+    public int getBlockSize()
+    {
+        return blockSize;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Carves the buffers out of a FrameSlab of direct memory from now on,
+     * instead of allocating each one. Has to be called before the first
+     * access. The slab holds a frame for every buffer and one for swaps, and
+     * keeps the frames of buffers given back when they go idle.
+     *
+     * @return the slab
+     */
+    public FrameSlab useFrameSlab()
+    {
+        if (allocated > 0 || spare != null || held != null || slab != null)
+            throw new IllegalStateException("Buffers were already made");
+        slab = new FrameSlab(blockSize, maxBuffers + 1);
+        return slab;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Starts or stops giving back the buffers of idle frames. Every limit
+     * accesses, frames that were not used in the last limit accesses are
+     * written back, forgotten by the policy and their buffers dropped.
+     *
+     * @param limit
+     *            accesses a frame may go unused, or 0 to keep every buffer
+     */
+    public void setIdleLimit(long limit)
+    {
+        if (limit < 0)
+            throw new IllegalArgumentException(
+                "Idle limit must not be negative");
+        idleLimit = limit;
+        nextTrim = tick + limit;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of buffers the pool holds now.
+     *
+     * @return buffers allocated, at most the maximum number of buffers
+     */
+    public int getAllocatedBuffers()
+    {
+        return allocated;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the most buffers the pool has held at once.
+     *
+     * @return peak number of buffers allocated
+     */
+    public int getPeakBuffers()
+    {
+        return peak;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Picks a block size for a memory budget and file. Blocks are as large
+     * as possible, to cut the number of reads and writes, while leaving
+     * MIN_AUTO_BUFFERS of them in the budget and not making a block larger
+     * than a MIN_AUTO_BUFFERS share of the file. The result is a power of
+     * two from Buffer.BUFFER_CAPACITY to Buffer.MAX_CAPACITY; budgets of
+     * 2 MB and more and files of that size get 64 KB blocks or larger.
+     *
+     * @param budget
+     *            bytes of memory for buffers
+     * @param fileLength
+     *            file size in bytes
+     * @return block size in bytes
+     */
+    public static int autoBlockSize(long budget, long fileLength)
+    {
+        long limit = Math.min(budget, fileLength) / MIN_AUTO_BUFFERS;
+        int size = Buffer.BUFFER_CAPACITY;
+        while (size < Buffer.MAX_CAPACITY && 2L * size <= limit)
+            size *= 2;
+        return size;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Picks the number of buffers for a memory budget and block size: as many
+     * as fit, at least one, and no more than it takes to hold the whole file.
+     *
+     * @param budget
+     *            bytes of memory for buffers
+     * @param blockSize
+     *            block size in bytes
+     * @param fileLength
+     *            file size in bytes
+     * @return number of buffers
+     */
+    public static int autoBufferCount(
+        long budget,
+        int blockSize,
+        long fileLength)
+    {
+        long blocks = (fileLength + blockSize - 1) / blockSize;
+        long count = Math.min(budget / blockSize, blocks);
+        return (int)Math.max(1, Math.min(count, Integer.MAX_VALUE));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long length()
+    {
+        try
+        {
+            return channel.size() / Record.SIZE_IN_BYTES;
         }
         catch (IOException e)
         {
@@ -151,81 +851,602 @@ public class FileBufferPool
     /**
      * Given an index for a record, finds and returns the buffer that would
      * contain that record. If that record cannot be found amongst the buffers
-     * currently in use, the method follows the LRU strategy to fill a new
-     * buffer with the block containing the record.
+     * currently in use, the method asks the eviction policy for a buffer to
+     * fill with the block containing the record.
      */
-    private Buffer getBuffer(int recPos)
+    private Buffer getBuffer(long recPos)
     {
         long recOffset = recPos * Record.SIZE_IN_BYTES;
-        Buffer found;
+        long block = recOffset / blockSize;
+        if (prefetcher != null)
+            prefetcher.touched(recOffset);
+        if (idleLimit > 0 && tick >= nextTrim)
+            releaseIdle();
+
+        int frame = index.get(block);
+        if (frame != BlockIndex.NONE)
+        {
+            stats.setHits(stats.getHits() + 1);
+            if (pins[frame] == 0)
+                policy.hit(frame);
+            lastUse[frame] = ++tick;
+            return buffers[frame];
+        }
+        stats.setMisses(stats.getMisses() + 1);
+
+        return insertBlock(block, recOffset);
+    }
+
+
+    /*
+     * Fills a buffer with the requested block. If all the buffers are being
+     * used, flush the one the policy evicts and fill it with the new block
+     */
+    private Buffer insertBlock(long block, long recOffset)
+    {
+        int frame;
+        if (freeCount > 0)
+            frame = freeFrames[--freeCount];
+        else
+            frame = policy.evict(block);
 
-        buffers.moveToStart();
-        for (int i = 0; i < activeBuffers; i++)
+        Buffer buff = buffers[frame];
+        if (buff == null)
+            buff = allocate(frame);
+        else if (frame == pinned)
         {
-            if (buffers.getValue().hasBytes(recOffset, Record.SIZE_IN_BYTES))
+            // a swap still needs this block: set its buffer aside and fill
+            // the spare one
+            held = buff;
+            buff = spare != null ? spare : newBuffer();
+            spare = null;
+            buffers[frame] = buff;
+            index.remove(held.getOffset() / blockSize);
+        }
+        else if (!buff.isEmpty())
+        {
+            long victim = buff.getOffset() / blockSize;
+            boolean dirty = buff.isDirty();
+            if (tier != null && (dirty || !tier.contains(victim)))
+                putInTier(victim, buff); // as it will be in the file
+            try
+            {
+                if (dirty && writeBehind != null)
+                    writeBehind.await(victim); // older copy lands first
+                writeBack(buff);
+            }
+            catch (IOException e)
             {
-                found = buffers.getValue();
-                stats.setHits(stats.getHits() + 1);
-                buffers.prioritize();
-                return found;
+                if (tier != null)
+                    tier.remove(victim);
+                policy.miss(frame, victim); // still holds its dirty block
+                throw handleIOE(e);
             }
-            buffers.next();
+            index.remove(victim);
+            if (dirty)
+                dirtyCount--;
         }
-        stats.setMisses(stats.getMisses() + 1);
 
-        long bufferStart =
-            (recOffset / Buffer.BUFFER_CAPACITY) * Buffer.BUFFER_CAPACITY;
-        found = insertBlock(bufferStart);
+        boolean loaded = false;
+        if (prefetcher != null)
+        {
+            // take the block before new read-aheads can recycle its slot
+            loaded = prefetcher.take(block, buff);
+            prefetcher.missed(recOffset, cached);
+        }
+        if (!loaded && tier != null)
+        {
+            long start = System.nanoTime();
+            loaded = tier.take(block, buff, block * blockSize);
+            stats.setTierTime(stats.getTierTime() + System.nanoTime() - start);
+            if (loaded)
+                stats.setTierHits(stats.getTierHits() + 1);
+        }
 
-        return found;
+        if (!loaded)
+        {
+            try
+            {
+                if (writeBehind != null)
+                    writeBehind.await(block);
+                buff.fill(channel, block * blockSize);
+            }
+            catch (IOException e)
+            {
+                freeFrames[freeCount++] = frame;
+                throw handleIOE(e);
+            }
+            stats.setReads(stats.getReads() + 1);
+        }
+        index.put(block, frame);
+        policy.miss(frame, block);
+        lastUse[frame] = ++tick;
+
+        return buff;
     }
 
 
     /*
-     * Fills a buffer with the block of bytes starting at requested position. If
-     * all the buffers are being used, flush the least recently used, fill it
-     * with the new block, and move that buffer to the top of the use order
+     * Stores an evicted block in the tier, counting the time it takes.
      */
-    private Buffer insertBlock(long blockStart)
+    private void putInTier(long block, Buffer buff)
     {
+        long start = System.nanoTime();
+        tier.put(block, buff.view());
+        stats.setTierTime(stats.getTierTime() + System.nanoTime() - start);
+    }
+
+
+    /*
+     * Writes back the buffer a swap set aside, which becomes the spare. Any
+     * read-ahead copy of its block is older, so it is dropped.
+     */
+    private void releaseHeld()
+    {
+        Buffer buff = held;
+        long block = buff.getOffset() / blockSize;
+        boolean dirty = buff.isDirty();
+        if (tier != null && (dirty || !tier.contains(block)))
+            putInTier(block, buff);
         try
         {
-            Buffer buff;
-            if (activeBuffers < maxBuffers)
+            if (dirty && writeBehind != null)
+                writeBehind.await(block); // older copy lands first
+            writeBack(buff);
+        }
+        catch (IOException e)
+        {
+            if (tier != null)
+                tier.remove(block);
+            throw handleIOE(e);
+        }
+        finally
+        {
+            held = null;
+            spare = buff;
+            if (dirty)
+                dirtyCount--;
+        }
+        if (prefetcher != null)
+            prefetcher.discard(block);
+    }
+
+
+    /*
+     * Moves count records starting at pos between the file and either ints,
+     * from index off, or bytes, from its position, which advances. Each block
+     * is looked up once. With direct, blocks not in a frame are read or
+     * written straight from the file instead of being brought in.
+     */
+    private void moveRange(
+        long pos,
+        long count,
+        boolean write,
+        boolean direct,
+        int[] ints,
+        int off,
+        ByteBuffer bytes)
+    {
+        checkRange(pos, count);
+        int perBlock = blockSize / Record.SIZE_IN_BYTES;
+        long done = 0;
+        while (done < count)
+        {
+            long recPos = pos + done;
+            long block = recPos / perBlock;
+            int inBlock = (int)(recPos % perBlock);
+            int n = (int)Math.min(perBlock - inBlock, count - done);
+            int at = off + (int)done;
+
+            if (direct && index.get(block) == BlockIndex.NONE)
+            {
+                // extend the run over the next blocks not in a frame
+                int blocks = 1;
+                int maxRun = Math.max(blockSize, MAX_DIRECT_RUN)
+                    / Record.SIZE_IN_BYTES;
+                while (done + n < count && n + perBlock <= maxRun
+                    && index.get(block + blocks) == BlockIndex.NONE)
+                {
+                    n += (int)Math.min(perBlock, count - done - n);
+                    blocks++;
+                }
+                try
+                {
+                    moveDirect(
+                        block,
+                        blocks,
+                        recPos,
+                        n,
+                        write,
+                        ints,
+                        at,
+                        bytes);
+                }
+                catch (IOException e)
+                {
+                    throw handleIOE(e);
+                }
+            }
+            else
             {
-                buffers.moveToPos(activeBuffers); // add to active buffers
-                buff = buffers.getValue();
+                Buffer buff = getBuffer(recPos);
+                if (!write)
+                {
+                    if (ints != null)
+                        buff.getRecords(inBlock, ints, at, n);
+                    else
+                        buff.getRecords(inBlock, bytes, n);
+                }
+                else
+                {
+                    int dirtyBefore = dirtyCount;
+                    willChange(buff);
+                    if (ints != null)
+                        buff.setRecords(inBlock, ints, at, n);
+                    else
+                        buff.setRecords(inBlock, bytes, n);
+                    maybeWriteBehind(dirtyBefore);
+                }
+            }
+            done += n;
+        }
+    }
+
 
-                raf.seek(blockStart);
-                buff.fill(raf);
+    /*
+     * Writes behind if a buffer just became dirty and too many are.
+     */
+    private void maybeWriteBehind(int dirtyBefore)
+    {
+        if (writeBehind != null && dirtyCount > dirtyBefore
+            && dirtyCount > dirtyHigh)
+            writeBehind();
+    }
+
+
+    /*
+     * Reads or writes a run of records in blocks that are not in any frame
+     * with positional channel calls. Queued background writes of the blocks
+     * land first, and read-ahead and compressed copies of written blocks are
+     * dropped.
+     */
+    private void moveDirect(
+        long block,
+        int blocks,
+        long recPos,
+        int n,
+        boolean write,
+        int[] ints,
+        int at,
+        ByteBuffer bytes)
+        throws IOException
+    {
+        stats.setMisses(stats.getMisses() + blocks);
+        for (int i = 0; i < blocks; i++)
+        {
+            if (writeBehind != null)
+                writeBehind.await(block + i);
+            if (write && prefetcher != null)
+                prefetcher.discard(block + i);
+            if (write && tier != null)
+                tier.remove(block + i);
+        }
 
-                buffers.prioritize();
-                activeBuffers++;
+        int size = n * Record.SIZE_IN_BYTES;
+        ByteBuffer io;
+        if (bytes != null)
+        {
+            io = bytes.duplicate();
+            io.limit(io.position() + size);
+        }
+        else
+        {
+            if (scratch == null)
+                scratch = ByteBuffer.allocateDirect(
+                    Math.max(blockSize, MAX_DIRECT_RUN));
+            io = scratch;
+            io.clear().limit(size);
+            if (write)
+            {
+                for (int i = 0; i < n; i++)
+                    io.putInt(i * Record.SIZE_IN_BYTES, ints[at + i]);
             }
+        }
 
-            else
+        long offset = recPos * Record.SIZE_IN_BYTES;
+        if (write)
+        {
+            while (io.hasRemaining())
+                offset += channel.write(io, offset);
+            stats.setWrites(stats.getWrites() + blocks);
+            stats.setBytesWritten(stats.getBytesWritten() + size);
+        }
+        else
+        {
+            while (io.hasRemaining())
+            {
+                int read = channel.read(io, offset);
+                if (read < 0)
+                    throw new EOFException("Range ends past the file");
+                offset += read;
+            }
+            stats.setReads(stats.getReads() + blocks);
+            if (ints != null)
             {
-                buffers.moveToPos(maxBuffers - 1); // LRU buffer
-                buff = buffers.getValue();
+                for (int i = 0; i < n; i++)
+                    ints[at + i] = io.getInt(i * Record.SIZE_IN_BYTES);
+            }
+        }
+
+        if (bytes != null)
+            bytes.position(bytes.position() + size);
+    }
+
+
+    /*
+     * Decides if a range is long enough to bypass the cache: more than half
+     * of what the buffers hold.
+     */
+    private boolean bypasses(long count)
+    {
+        return count * Record.SIZE_IN_BYTES > (long)blockSize * maxBuffers / 2;
+    }
+
+
+    private void checkRange(long pos, long count)
+    {
+        if (pos < 0 || count < 0 || count > length() - pos)
+            throw new IllegalArgumentException("Range must be within the file");
+    }
+
+
+    private void checkArray(int length, int off, int count)
+    {
+        if (off < 0 || count < 0 || count > length - off)
+            throw new IllegalArgumentException(
+                "Range must be within the array");
+    }
+
+
+    /*
+     * Counts a buffer about to change as dirty if it is clean, and drops the
+     * tier's copy of its block, which is out of date from now on.
+     */
+    private void willChange(Buffer buff)
+    {
+        if (buff.isDirty())
+            return;
+        dirtyCount++;
+        if (tier != null)
+            tier.remove(buff.getOffset() / blockSize);
+    }
 
-                raf.seek(buff.getOffset());
-                if (buff.flush(raf))
-                    stats.setWrites(stats.getWrites() + 1);
 
-                raf.seek(blockStart);
-                buff.fill(raf);
+    /*
+     * Queues background writes of dirty buffers near the eviction end until
+     * only dirtyLow are dirty. Only the maxBuffers - dirtyHigh least recently
+     * used buffers are looked at, and pinned ones are skipped, so buffers
+     * still being changed, such as the top of a heap, are not written again
+     * every time they change. A block written behind that got dirty again is
+     * left to its eviction, so no block is written behind twice while it
+     * stays in its frame.
+     */
+    private void writeBehind()
+    {
+        int count = 0;
+        for (int i = 0; i < maxBuffers; i++)
+        {
+            if (buffers[i] != null && !buffers[i].isEmpty())
+                byAge[count++] = lastUse[i] * maxBuffers + i;
+        }
+        Arrays.sort(byAge, 0, count);
 
-                buffers.prioritize();
+        int window = Math.min(count, maxBuffers - dirtyHigh);
+        int wanted = dirtyCount - dirtyLow;
+        int picked = 0;
+        for (int i = 0; i < window && picked < wanted; i++)
+        {
+            int frame = (int)(byAge[i] % maxBuffers);
+            long block = buffers[frame].getOffset() / blockSize;
+            if (buffers[frame].isDirty() && frame != pinned
+                && pins[frame] == 0 && wroteBehind[frame] != block)
+            {
+                wroteBehind[frame] = block;
+                byBlock[picked++] = block;
             }
+        }
+        if (picked == 0)
+            return;
+        try
+        {
+            writeAdjacent(picked, true);
+        }
+        catch (IOException e)
+        {
+            throw handleIOE(e);
+        }
+    }
 
-            stats.setReads(stats.getReads() + 1);
 
-            return buff;
+    /*
+     * Writes back the dirty buffers of the first count blocks in byBlock in
+     * file order. Runs of adjacent blocks go in one write: queued together
+     * with behind, otherwise gathered from the buffers, which are emptied.
+     * A buffer on its own is written as usual.
+     */
+    private void writeAdjacent(int count, boolean behind)
+        throws IOException
+    {
+        Arrays.sort(byBlock, 0, count);
+        int most = Math.max(1, MAX_DIRECT_RUN / blockSize);
+        int start = 0;
+        while (start < count)
+        {
+            int n = 1;
+            while (start + n < count && n < most
+                && byBlock[start + n] == byBlock[start] + n)
+                n++;
+            for (int i = 0; i < n; i++)
+                run[i] = buffers[index.get(byBlock[start + i])];
+
+            long bytes = 0;
+            for (int i = 0; i < n; i++)
+                bytes += run[i].getLength();
+            if (behind)
+            {
+                bytes = writeBehind.write(byBlock[start], run, n);
+                dirtyCount -= n;
+                stats.setBackgroundWrites(stats.getBackgroundWrites() + n);
+            }
+            else if (n == 1)
+            {
+                bytes = run[0].dirtyBytes();
+                run[0].flush(channel);
+            }
+            else
+                gather(n, bytes);
+            stats.setWrites(stats.getWrites() + n);
+            stats.setBytesWritten(stats.getBytesWritten() + bytes);
+            start += n;
+        }
+        Arrays.fill(run, 0, Math.min(count, run.length), null);
+    }
+
+
+    /*
+     * Writes the first n buffers of run, which hold adjacent blocks, with one
+     * gathering write, and empties them.
+     */
+    private void gather(int n, long bytes)
+        throws IOException
+    {
+        ByteBuffer[] views = new ByteBuffer[n];
+        for (int i = 0; i < n; i++)
+            views[i] = run[i].view();
+
+        channel.position(run[0].getOffset());
+        for (long left = bytes; left > 0;)
+            left -= channel.write(views);
+        for (int i = 0; i < n; i++)
+            run[i].flush();
+    }
+
+
+    /*
+     * Flushes a buffer, counting the write and the bytes written if it was
+     * dirty.
+     */
+    private void writeBack(Buffer buff)
+        throws IOException
+    {
+        int bytes = buff.dirtyBytes();
+        if (buff.flush(channel))
+        {
+            stats.setWrites(stats.getWrites() + 1);
+            stats.setBytesWritten(stats.getBytesWritten() + bytes);
+        }
+    }
+
+
+    /*
+     * Makes a buffer, from the slab if there is one.
+     */
+    private Buffer newBuffer()
+    {
+        if (slab != null)
+            return slab.take();
+        return new Buffer(blockSize, true);
+    }
+
+
+    /*
+     * Makes the buffer of a frame used for the first time, or again after it
+     * was given back.
+     */
+    private Buffer allocate(int frame)
+    {
+        Buffer buff = newBuffer();
+        buffers[frame] = buff;
+        allocated++;
+        peak = Math.max(peak, allocated);
+        return buff;
+    }
+
+
+    /*
+     * Writes back and drops the buffers of frames not used in the last
+     * idleLimit accesses. Their frames become free again.
+     */
+    private void releaseIdle()
+    {
+        nextTrim = tick + idleLimit;
+        for (int frame = 0; frame < maxBuffers; frame++)
+        {
+            Buffer buff = buffers[frame];
+            if (buff == null || frame == pinned || pins[frame] > 0
+                || tick - lastUse[frame] <= idleLimit)
+                continue;
+
+            long block = buff.getOffset() / blockSize;
+            if (!buff.isEmpty() && index.get(block) == frame)
+                drop(frame, block);
+            buffers[frame] = null;
+            allocated--;
+            if (slab != null)
+            {
+                buff.flush(); // empty even if a read into it failed
+                slab.give(buff);
+            }
+        }
+    }
+
+
+    /*
+     * Writes back the block in a frame and frees the frame, unless a swap or
+     * pin() holds it. The frame keeps its buffer.
+     */
+    private void drop(int frame, long block)
+    {
+        if (frame == pinned || pins[frame] > 0)
+            return;
+
+        Buffer buff = buffers[frame];
+        boolean dirty = buff.isDirty();
+        try
+        {
+            if (dirty && writeBehind != null)
+                writeBehind.await(block); // older copy lands first
+            writeBack(buff);
         }
         catch (IOException e)
         {
             throw handleIOE(e);
         }
+        index.remove(block);
+        policy.remove(frame);
+        if (dirty)
+            dirtyCount--;
+        freeFrames[freeCount++] = frame;
+    }
+
+
+    /*
+     * Gets the number of the block holding a record.
+     */
+    private long blockOf(long recPos)
+    {
+        return recPos * Record.SIZE_IN_BYTES / blockSize;
+    }
+
+
+    /*
+     * Marks every frame as free, lowest frame number first.
+     */
+    private void resetFreeFrames()
+    {
+        freeCount = maxBuffers;
+        for (int i = 0; i < maxBuffers; i++)
+            freeFrames[i] = maxBuffers - 1 - i;
     }
 
 
@@ -233,7 +1454,7 @@ public class FileBufferPool
      * Helper method that converts the index of the record to the record's
      * position relative to the buffer.
      */
-    private int posInBuff(int recPos, long bufferOffset)
+    private int posInBuff(long recPos, long bufferOffset)
     {
         long recOffset = recPos * Record.SIZE_IN_BYTES;
         return (int)((recOffset - bufferOffset) / (Record.SIZE_IN_BYTES));
@@ -0,0 +1,241 @@
+package com.github.a_zaheer.external_sorter;
+import java.util.Arrays;
+
+// -------------------------------------------------------------------------
+/**
+ * Intrusive doubly linked list of frame numbers. Each frame number from 0 to
+ * capacity - 1 can be in the list at most once, and the links are kept in
+ * arrays indexed by frame number, so moving a frame to the front, removing it
+ * and finding the last frame are all O(1) and never allocate. The front of the
+ * list is the most recently used end.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+class FrameList
+{
+    // ~ Fields ................................................................
+    private final int[]     prev;
+    private final int[]     next;
+    private final boolean[] linked;
+    private int             head;
+    private int             tail;
+    private int             listSize;
+
+    /**
+     * Marks the end of the list.
+     */
+    public static final int NIL = -1;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new, empty FrameList object.
+     *
+     * @param capacity
+     *            number of distinct frames the list can hold
+     */
+    public FrameList(int capacity)
+    {
+        prev = new int[capacity];
+        next = new int[capacity];
+        linked = new boolean[capacity];
+        clear();
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Remove all frames.
+     */
+    public void clear()
+    {
+        Arrays.fill(linked, false);
+        head = NIL;
+        tail = NIL;
+        listSize = 0;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Insert a frame at the front of the list.
+     *
+     * @param frame
+     *            frame that is not in the list yet
+     */
+    public void addFirst(int frame)
+    {
+        if (linked[frame])
+            throw new IllegalStateException("Frame is already in the list");
+
+        prev[frame] = NIL;
+        next[frame] = head;
+        if (head == NIL)
+            tail = frame;
+        else
+            prev[head] = frame;
+        head = frame;
+        linked[frame] = true;
+        listSize++;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Insert a frame at the back of the list.
+     *
+     * @param frame
+     *            frame that is not in the list yet
+     */
+    public void addLast(int frame)
+    {
+        if (linked[frame])
+            throw new IllegalStateException("Frame is already in the list");
+
+        next[frame] = NIL;
+        prev[frame] = tail;
+        if (tail == NIL)
+            head = frame;
+        else
+            next[tail] = frame;
+        tail = frame;
+        linked[frame] = true;
+        listSize++;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Unlink a frame from the list. Does nothing if it is not in the list.
+     *
+     * @param frame
+     *            the frame
+     */
+    public void remove(int frame)
+    {
+        if (!linked[frame])
+            return;
+
+        int p = prev[frame];
+        int n = next[frame];
+        if (p == NIL)
+            head = n;
+        else
+            next[p] = n;
+        if (n == NIL)
+            tail = p;
+        else
+            prev[n] = p;
+
+        linked[frame] = false;
+        listSize--;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Move a frame to the front of the list, inserting it if needed.
+     *
+     * @param frame
+     *            the frame
+     */
+    public void moveToFront(int frame)
+    {
+        if (head == frame)
+            return;
+        remove(frame);
+        addFirst(frame);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the frame at the front of the list.
+     *
+     * @return the first frame, or NIL if the list is empty
+     */
+    public int first()
+    {
+        return head;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the frame at the back of the list.
+     *
+     * @return the last frame, or NIL if the list is empty
+     */
+    public int last()
+    {
+        return tail;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the frame that follows another one, towards the back.
+     *
+     * @param frame
+     *            a frame in the list
+     * @return the next frame, or NIL at the back
+     */
+    public int next(int frame)
+    {
+        return next[frame];
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the frame that precedes another one, towards the front.
+     *
+     * @param frame
+     *            a frame in the list
+     * @return the previous frame, or NIL at the front
+     */
+    public int prev(int frame)
+    {
+        return prev[frame];
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Checks if a frame is in the list.
+     *
+     * @param frame
+     *            the frame
+     * @return true or false
+     */
+    public boolean contains(int frame)
+    {
+        return linked[frame];
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Return list length
+     *
+     * @return length
+     */
+    public int length()
+    {
+        return listSize;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Checks if the list is empty.
+     *
+     * @return true/false
+     */
+    public boolean isEmpty()
+    {
+        return listSize == 0;
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.a_zaheer.external_sorter;
+import java.nio.ByteBuffer;
+
+// -------------------------------------------------------------------------
+/**
+ * Off-heap storage for the buffers of a pool. Instead of one direct
+ * ByteBuffer per buffer, frames are carved out of a few large direct chunks,
+ * each aligned to a page, so frames of a page-multiple size start on a page
+ * and the Java heap holds only the small Buffer objects. Chunks are allocated
+ * as frames are first taken, not up front.
+ * <p>
+ * Java cannot free direct memory on demand, so the slab never shrinks:
+ * buffers given back are kept and handed out again by take().
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class FrameSlab
+{
+    // ~ Fields ................................................................
+    private final int      frameSize;
+    private final int      frames;      // most frames to carve
+    private final int      chunkFrames; // frames per chunk
+    private ByteBuffer     chunk;       // the chunk being carved
+    private int            carved;      // frames carved so far
+    private long           reserved;    // bytes of all chunks
+    private final Buffer[] free;        // given back, ready to take again
+    private int            freeCount;
+
+    /**
+     * Most bytes in one chunk.
+     */
+    public static final int CHUNK_BYTES = 1 << 26;
+
+    /**
+     * Alignment of every chunk, the usual page size.
+     */
+    public static final int ALIGNMENT   = 4096;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new FrameSlab object.
+     *
+     * @param frameSize
+     *            bytes per frame, a block size Buffer accepts
+     * @param frames
+     *            most frames that can be taken at once
+     */
+    public FrameSlab(int frameSize, int frames)
+    {
+        Buffer.checkCapacity(frameSize);
+        if (frames < 1)
+            throw new IllegalArgumentException(
+                "Number of frames must be positive");
+
+        this.frameSize = frameSize;
+        this.frames = frames;
+        chunkFrames = Math.max(1, Math.min(frames, CHUNK_BYTES / frameSize));
+        free = new Buffer[frames];
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Takes an empty buffer backed by a frame of the slab, carving a new
+     * frame if none was given back.
+     *
+     * @return the buffer
+     * @throws IllegalStateException
+     *             if every frame is taken
+     */
+    public Buffer take()
+    {
+        if (freeCount > 0)
+        {
+            Buffer buff = free[--freeCount];
+            free[freeCount] = null;
+            return buff;
+        }
+        if (carved == frames)
+            throw new IllegalStateException("Every frame is taken");
+
+        if (carved % chunkFrames == 0)
+        {
+            int n = Math.min(chunkFrames, frames - carved);
+            int bytes = n * frameSize;
+            chunk = ByteBuffer.allocateDirect(bytes + ALIGNMENT)
+                .alignedSlice(ALIGNMENT);
+            chunk.limit(bytes);
+            reserved += bytes;
+        }
+
+        int at = (carved % chunkFrames) * frameSize;
+        ByteBuffer storage = chunk.duplicate();
+        storage.limit(at + frameSize).position(at);
+        carved++;
+        return new Buffer(storage.slice());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gives back a buffer from take(), so a later take() can reuse its frame.
+     *
+     * @param buff
+     *            an empty buffer of this slab
+     */
+    public void give(Buffer buff)
+    {
+        if (!buff.isEmpty())
+            throw new IllegalStateException(
+                "Only an empty buffer can be given back");
+        if (buff.getCapacity() != frameSize || freeCount == frames)
+            throw new IllegalArgumentException(
+                "Buffer does not belong to the slab");
+        free[freeCount++] = buff;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the bytes of direct memory the slab has allocated, without the
+     * alignment padding.
+     *
+     * @return bytes of the chunks so far
+     */
+    public long getReservedBytes()
+    {
+        return reserved;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of frames taken and not given back.
+     *
+     * @return frames in use
+     */
+    public int getTakenFrames()
+    {
+        return carved - freeCount;
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.a_zaheer.external_sorter;
+// -------------------------------------------------------------------------
+/**
+ * Bounded list of recently evicted block numbers, most recent first. Adaptive
+ * eviction policies use it to recognize blocks that come back soon after they
+ * were evicted. When the list is full, adding a block forgets the oldest one.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+class GhostList
+{
+    // ~ Fields ................................................................
+    private final long[] blocks;  // node -> block
+    private final int[]  free;    // unused nodes
+    private int          freeCount;
+    private FrameList    order;   // nodes, most recent first
+    private BlockIndex   index;   // block -> node
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new, empty GhostList object.
+     *
+     * @param capacity
+     *            maximum number of blocks remembered, at least 1
+     */
+    public GhostList(int capacity)
+    {
+        blocks = new long[capacity];
+        free = new int[capacity];
+        order = new FrameList(capacity);
+        index = new BlockIndex(capacity);
+        clear();
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Remember a block as the most recent one.
+     *
+     * @param block
+     *            the block, which must not be in the list
+     */
+    public void add(long block)
+    {
+        if (freeCount == 0)
+            removeLast();
+
+        int node = free[--freeCount];
+        blocks[node] = block;
+        order.addFirst(node);
+        index.put(block, node);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Checks if a block is remembered.
+     *
+     * @param block
+     *            the block
+     * @return true or false
+     */
+    public boolean contains(long block)
+    {
+        return index.get(block) != BlockIndex.NONE;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Forget a block.
+     *
+     * @param block
+     *            the block
+     * @return true if the block was in the list
+     */
+    public boolean remove(long block)
+    {
+        int node = index.remove(block);
+        if (node == BlockIndex.NONE)
+            return false;
+
+        order.remove(node);
+        free[freeCount++] = node;
+        return true;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Forget the oldest block. Does nothing if the list is empty.
+     */
+    public void removeLast()
+    {
+        int node = order.last();
+        if (node != FrameList.NIL)
+            remove(blocks[node]);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of blocks remembered.
+     *
+     * @return the size
+     */
+    public int size()
+    {
+        return order.length();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Forget all blocks.
+     */
+    public void clear()
+    {
+        order.clear();
+        index.clear();
+        freeCount = free.length;
+        for (int i = 0; i < free.length; i++)
+            free[i] = free.length - 1 - i;
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.IOException;
+
+// -------------------------------------------------------------------------
+/**
+ * Merges sorted runs into one with a binary heap of the runs, ordered by
+ * the key of each run's current record. The top run's record is written and
+ * the run sifted down again, about 2 log2(k) key comparisons per record for
+ * k runs. Records with equal keys come out in the order of their runs, so
+ * the merge is stable if the runs are in file order.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class HeapMerger
+{
+    // ~ Fields ................................................................
+    private final RunReader[] runs;
+    private final int[]       heap; // run numbers, smallest key on top
+    private int               size;
+    private long              comparisons;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new HeapMerger object over runs whose first records were
+     * read.
+     *
+     * @param runs
+     *            the runs, each sorted by key
+     */
+    public HeapMerger(RunReader[] runs)
+    {
+        this.runs = runs;
+        heap = new int[runs.length];
+        for (int i = 0; i < runs.length; i++)
+        {
+            if (!runs[i].isDone())
+                heap[size++] = i;
+        }
+        for (int i = size / 2 - 1; i >= 0; i--)
+            siftDown(i);
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Writes every record of the runs in key order.
+     *
+     * @param out
+     *            where the merged run goes; it is not flushed
+     * @return number of records written
+     * @throws IOException
+     *             if a run cannot be read or the output written
+     */
+    public long mergeTo(RunWriter out)
+        throws IOException
+    {
+        long count = 0;
+        while (size > 0)
+        {
+            RunReader top = runs[heap[0]];
+            out.write(top.current());
+            count++;
+            top.advance();
+            if (top.isDone())
+                heap[0] = heap[--size];
+            siftDown(0);
+        }
+        return count;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of key comparisons made so far.
+     *
+     * @return comparisons
+     */
+    public long getComparisons()
+    {
+        return comparisons;
+    }
+
+
+    /*
+     * Moves the run at a heap position down until neither child comes
+     * before it.
+     */
+    private void siftDown(int pos)
+    {
+        int curr = pos;
+        while (2 * curr + 1 < size)
+        {
+            int child = 2 * curr + 1;
+            if (child + 1 < size && before(heap[child + 1], heap[child]))
+                child++;
+            if (!before(heap[child], heap[curr]))
+                return;
+            int temp = heap[curr];
+            heap[curr] = heap[child];
+            heap[child] = temp;
+            curr = child;
+        }
+    }
+
+
+    /*
+     * Tells if run a's current record comes before run b's: a smaller key,
+     * or the same key in an earlier run.
+     */
+    private boolean before(int a, int b)
+    {
+        comparisons++;
+        int keyA = Record.packedKey(runs[a].current());
+        int keyB = Record.packedKey(runs[b].current());
+        return keyA < keyB || (keyA == keyB && a < b);
+    }
+}
@@ -21,9 +21,25 @@ import java.io.RandomAccessFile;
 public class HeapSort
 {
 
-    private static final int RECORDS_PER_LINE  = 8;
-    private static final int RECORDS_PER_BLOCK =
-        Buffer.BUFFER_CAPACITY / Record.SIZE_IN_BYTES;
+    private static final int    RECORDS_PER_LINE  = 8;
+    // the output shows one record per 4096 bytes, whatever the pool's block
+    private static final int    RECORDS_PER_BLOCK = 4096 / Record.SIZE_IN_BYTES;
+    private static final String POLICY_OPTION     = "--policy=";
+    private static final String POOL_OPTION       = "--pool=";
+    private static final String PREFETCH_OPTION   = "--prefetch=";
+    private static final String WRITE_OPTION      = "--write-behind=";
+    private static final int    WRITE_SLOTS       = 16;
+    private static final String BLOCK_OPTION      = "--block-size=";
+    private static final int    STRIPES           = 4;
+    private static final String MEMORY_OPTION     = "--memory=";
+    private static final String SLAB_OPTION       = "--slab";
+    private static final String TIER_OPTION       = "--tier=";
+    private static final String MODE_OPTION       = "--mode=";
+    private static final String RUNS_OPTION       = "--runs=";
+    // with a budget, frames unused for this many accesses, or for this many
+    // per frame if that is more, give their buffers back
+    private static final long   IDLE_ACCESSES     = 1 << 16;
+    private static final int    IDLE_PER_FRAME    = 8;
 
     /**
      * This is the entry point of the application
@@ -37,11 +53,19 @@ public class HeapSort
         throws IOException
     {
 
-        if (args.length != 3)
+        if (args.length < 3)
         {
             System.out.println(
                 "Usage: HeapSort <data-file-name> <num-buffers>"
-                    + " <stat-file-name>");
+                    + " <stat-file-name> [--policy=lru|clock|2q|arc|lirs]"
+                    + " [--pool=file|mapped|concurrent]"
+                    + " [--prefetch=<depth>]"
+                    + " [--write-behind=<dirty-ratio>]"
+                    + " [--block-size=<bytes>[k|m]|auto]"
+                    + " [--memory=<bytes>[k|m|g]] [--slab]"
+                    + " [--tier=<bytes>[k|m|g]]"
+                    + " [--mode=heap|merge|distribution|memory]"
+                    + " [--runs=chunks|replace]");
             return;
         }
 
@@ -70,26 +94,458 @@ public class HeapSort
 
         File statFile = new File(args[2].trim());
 
+        String policyName = "lru";
+        boolean mapped = false;
+        boolean concurrent = false;
+        int prefetchDepth = 0;
+        double dirtyRatio = 0;
+        int blockSize = Buffer.BUFFER_CAPACITY;
+        boolean autoSize = false;
+        long budget = 0;
+        boolean useSlab = false;
+        long tierBudget = 0;
+        boolean poolChosen = false;
+        boolean mergeMode = false;
+        boolean distributionMode = false;
+        boolean memoryMode = false;
+        boolean modeChosen = false;
+        boolean replacement = false;
+        for (int i = 3; i < args.length; i++)
+        {
+            String option = args[i].trim();
+            if (option.startsWith(POLICY_OPTION))
+            {
+                policyName = option.substring(POLICY_OPTION.length());
+                poolChosen = true;
+            }
+            else if (option.equals(POOL_OPTION + "file"))
+            {
+                mapped = false;
+                concurrent = false;
+                poolChosen = true;
+            }
+            else if (option.equals(POOL_OPTION + "mapped"))
+            {
+                mapped = true;
+                concurrent = false;
+                poolChosen = true;
+            }
+            else if (option.equals(POOL_OPTION + "concurrent"))
+            {
+                mapped = false;
+                concurrent = true;
+                poolChosen = true;
+            }
+            else if (option.equals(MODE_OPTION + "heap"))
+            {
+                mergeMode = false;
+                distributionMode = false;
+                memoryMode = false;
+                modeChosen = true;
+            }
+            else if (option.equals(MODE_OPTION + "merge"))
+            {
+                mergeMode = true;
+                distributionMode = false;
+                memoryMode = false;
+                modeChosen = true;
+            }
+            else if (option.equals(MODE_OPTION + "distribution"))
+            {
+                mergeMode = false;
+                distributionMode = true;
+                memoryMode = false;
+                modeChosen = true;
+            }
+            else if (option.equals(MODE_OPTION + "memory"))
+            {
+                mergeMode = false;
+                distributionMode = false;
+                memoryMode = true;
+                modeChosen = true;
+            }
+            else if (option.startsWith(MODE_OPTION))
+            {
+                System.out.println(
+                    "Unknown mode: " + option.substring(MODE_OPTION.length()));
+                return;
+            }
+            else if (option.equals(RUNS_OPTION + "chunks"))
+                replacement = false;
+            else if (option.equals(RUNS_OPTION + "replace"))
+                replacement = true;
+            else if (option.startsWith(RUNS_OPTION))
+            {
+                System.out.println(
+                    "Unknown run generation: "
+                        + option.substring(RUNS_OPTION.length()));
+                return;
+            }
+            else if (option.startsWith(PREFETCH_OPTION))
+            {
+                try
+                {
+                    prefetchDepth = Integer.valueOf(
+                        option.substring(PREFETCH_OPTION.length()));
+                }
+                catch (NumberFormatException e)
+                {
+                    System.out.println(
+                        "Invalid number format for prefetch depth");
+                    return;
+                }
+                if (prefetchDepth < 1)
+                {
+                    System.out.println("Prefetch depth needs to be positive");
+                    return;
+                }
+            }
+            else if (option.startsWith(WRITE_OPTION))
+            {
+                try
+                {
+                    dirtyRatio = Double.valueOf(
+                        option.substring(WRITE_OPTION.length()));
+                }
+                catch (NumberFormatException e)
+                {
+                    System.out.println("Invalid number format for dirty ratio");
+                    return;
+                }
+                if (!(dirtyRatio > 0 && dirtyRatio <= 1))
+                {
+                    System.out.println(
+                        "Dirty ratio needs to be more than 0 and at most 1");
+                    return;
+                }
+            }
+            else if (option.equals(BLOCK_OPTION + "auto"))
+                autoSize = true;
+            else if (option.startsWith(BLOCK_OPTION))
+            {
+                long size = parseSize(option.substring(BLOCK_OPTION.length()));
+                if (size < 0)
+                {
+                    System.out.println("Invalid number format for block size");
+                    return;
+                }
+                try
+                {
+                    Buffer.checkCapacity(
+                        (int)Math.min(size, Integer.MAX_VALUE));
+                }
+                catch (IllegalArgumentException e)
+                {
+                    System.out.println(e.getMessage());
+                    return;
+                }
+                blockSize = (int)size;
+                autoSize = false;
+            }
+            else if (option.equals(SLAB_OPTION))
+                useSlab = true;
+            else if (option.startsWith(MEMORY_OPTION))
+            {
+                budget = parseSize(option.substring(MEMORY_OPTION.length()));
+                if (budget < 0)
+                {
+                    System.out.println(
+                        "Invalid number format for memory budget");
+                    return;
+                }
+                if (budget == 0)
+                {
+                    System.out.println("Memory budget needs to be positive");
+                    return;
+                }
+            }
+            else if (option.startsWith(TIER_OPTION))
+            {
+                tierBudget =
+                    parseSize(option.substring(TIER_OPTION.length()));
+                if (tierBudget < 0)
+                {
+                    System.out.println("Invalid number format for tier size");
+                    return;
+                }
+                if (tierBudget == 0)
+                {
+                    System.out.println("Tier size needs to be positive");
+                    return;
+                }
+            }
+            else
+            {
+                System.out.println("Unknown option: " + option);
+                return;
+            }
+        }
+
+        // only the heap sort works through a pool
+        boolean poolOptions = poolChosen || prefetchDepth > 0
+            || dirtyRatio > 0 || useSlab || tierBudget > 0;
+        if ((mergeMode || distributionMode || memoryMode) && poolOptions)
+        {
+            System.out.println("Pool options need --mode=heap");
+            return;
+        }
+
+        if (replacement && !mergeMode)
+        {
+            System.out.println("Replacement selection needs --mode=merge");
+            return;
+        }
+
+        if (mapped && (prefetchDepth > 0 || dirtyRatio > 0 || autoSize
+            || blockSize != Buffer.BUFFER_CAPACITY))
+        {
+            System.out.println(
+                "Prefetching, write-behind and block size need --pool=file");
+            return;
+        }
+
+        if (mapped && budget > 0)
+        {
+            System.out.println(
+                "A memory budget needs --pool=file or --pool=concurrent");
+            return;
+        }
+
+        if (useSlab && (mapped || concurrent))
+        {
+            System.out.println("An off-heap slab needs --pool=file");
+            return;
+        }
+
+        if (tierBudget > 0 && (mapped || concurrent))
+        {
+            System.out.println("A compressed tier needs --pool=file");
+            return;
+        }
+
+        if (concurrent && (prefetchDepth > 0 || dirtyRatio > 0))
+        {
+            System.out.println("Prefetching and write-behind need --pool=file");
+            return;
+        }
+
+        if (autoSize)
+        {
+            // without a budget, the same memory as the buffers at the
+            // default size, split anew
+            long memory =
+                budget > 0 ? budget : (long)maxBuff * Buffer.BUFFER_CAPACITY;
+            blockSize = FileBufferPool.autoBlockSize(memory, byteFile.length());
+            maxBuff = FileBufferPool
+                .autoBufferCount(memory, blockSize, byteFile.length());
+        }
+        else if (budget > 0)
+        {
+            // the budget replaces the number of buffers
+            maxBuff = FileBufferPool
+                .autoBufferCount(budget, blockSize, byteFile.length());
+        }
+
+        // a sort without a pool takes the memory the buffers would have
+        long sortMemory =
+            budget > 0 ? budget : (long)maxBuff * blockSize;
+        if ((mergeMode || distributionMode) && sortMemory < 3L * blockSize)
+        {
+            System.out.println("Memory must hold at least three blocks");
+            return;
+        }
+
+        boolean fits = InMemorySort.fits(byteFile.length(), sortMemory);
+        if (memoryMode && !fits)
+        {
+            System.out.println("File does not fit in memory");
+            return;
+        }
+        // with a memory budget but no mode or pool options, a file that
+        // fits is read in one sequential pass, sorted and written back in
+        // another
+        if (!modeChosen && !poolOptions && budget > 0 && fits)
+            memoryMode = true;
+        boolean poolless = mergeMode || distributionMode || memoryMode;
+
+        EvictionPolicy policy;
+        try
+        {
+            policy = EvictionPolicy.forName(policyName, maxBuff);
+        }
+        catch (IllegalArgumentException e)
+        {
+            System.out.println(e.getMessage());
+            return;
+        }
+
         try (
             RandomAccessFile byteRaf = new RandomAccessFile(byteFile, "rw");
             FileWriter statTxt = new FileWriter(statFile, true))
         {
             IOStats stats = new IOStats();
-            FileBufferPool buffPool =
-                new FileBufferPool(byteRaf, maxBuff, stats);
-            int recordCount = (int)(byteRaf.length() / Record.SIZE_IN_BYTES);
+            RecordBufferPool buffPool;
+            Prefetcher prefetcher = null;
+            WriteBehind writeBehind = null;
+            ConcurrentFileBufferPool stripedPool = null;
+            FileBufferPool filePool = null;
+            FrameSlab slab = null;
+            CompressedTier tier = null;
+            RunStats runStats = null;
+            int buckets = 0;
+            if (poolless)
+            {
+                // only reads the sorted file back for the console
+                buffPool = new FileBufferPool(
+                    byteRaf.getChannel(),
+                    1,
+                    blockSize,
+                    new IOStats(),
+                    new LruPolicy(1));
+                if (mergeMode)
+                    policyName = "none (merge sort)";
+                else if (distributionMode)
+                    policyName = "none (distribution sort)";
+                else
+                    policyName = "none (in memory)";
+            }
+            else if (mapped)
+            {
+                buffPool = new MappedBufferPool(byteRaf, stats);
+                policyName = "none (memory-mapped)";
+            }
+            else if (concurrent)
+            {
+                stripedPool = new ConcurrentFileBufferPool(
+                    byteRaf.getChannel(),
+                    maxBuff,
+                    blockSize,
+                    Math.min(STRIPES, maxBuff));
+                buffPool = stripedPool;
+                policyName = "lru (" + stripedPool.stripeCount() + " stripes)";
+            }
+            else
+            {
+                filePool = new FileBufferPool(
+                    byteRaf.getChannel(),
+                    maxBuff,
+                    blockSize,
+                    stats,
+                    policy);
+                if (prefetchDepth > 0)
+                {
+                    prefetcher = new Prefetcher(
+                        byteFile.toPath(),
+                        prefetchDepth,
+                        stats);
+                    filePool.setPrefetcher(prefetcher);
+                }
+                if (dirtyRatio > 0)
+                {
+                    writeBehind =
+                        new WriteBehind(byteRaf.getChannel(), WRITE_SLOTS);
+                    filePool.setWriteBehind(writeBehind, dirtyRatio);
+                }
+                if (useSlab)
+                    slab = filePool.useFrameSlab();
+                if (tierBudget > 0)
+                {
+                    tier = new CompressedTier(tierBudget);
+                    filePool.setCompressedTier(tier);
+                }
+                if (budget > 0)
+                {
+                    filePool.setIdleLimit(Math.max(
+                        IDLE_ACCESSES,
+                        (long)IDLE_PER_FRAME * maxBuff));
+                }
+                buffPool = filePool;
+            }
+            long recordCount = byteRaf.length() / Record.SIZE_IN_BYTES;
+
+            long timeStart;
+            long timeEnd;
+            try
+            {
+                if (mergeMode)
+                {
+                    ExternalMergeSort sorter = new ExternalMergeSort(
+                        byteRaf.getChannel(),
+                        sortMemory,
+                        blockSize,
+                        stats,
+                        byteFile.getAbsoluteFile().getParentFile().toPath());
+                    sorter.setReplacementSelection(replacement);
 
-            HeapSorter<Record> sorter =
-                new HeapSorter<Record>(buffPool, recordCount);
+                    timeStart = System.currentTimeMillis();
+                    sorter.sort();
+                    timeEnd = System.currentTimeMillis();
+                    runStats = sorter.getRunStats();
+                }
+                else if (distributionMode)
+                {
+                    DistributionSort sorter = new DistributionSort(
+                        byteRaf.getChannel(),
+                        sortMemory,
+                        blockSize,
+                        stats,
+                        byteFile.getAbsoluteFile().getParentFile().toPath());
 
-            long timeStart = System.currentTimeMillis();
-            sorter.sort();
-            long timeEnd = System.currentTimeMillis();
+                    timeStart = System.currentTimeMillis();
+                    sorter.sort();
+                    timeEnd = System.currentTimeMillis();
+                    buckets = sorter.getBucketCount();
+                }
+                else if (memoryMode)
+                {
+                    InMemorySort sorter = new InMemorySort(
+                        byteRaf.getChannel(),
+                        blockSize,
+                        stats);
 
-            printToConsole(buffPool);
-            buffPool.clear();
+                    timeStart = System.currentTimeMillis();
+                    sorter.sort();
+                    timeEnd = System.currentTimeMillis();
+                }
+                else
+                {
+                    RecordHeapSorter sorter =
+                        new RecordHeapSorter(buffPool, recordCount);
+
+                    timeStart = System.currentTimeMillis();
+                    sorter.sort();
+                    timeEnd = System.currentTimeMillis();
+                }
+
+                printToConsole(buffPool);
+                buffPool.clear();
+            }
+            finally
+            {
+                // unused read-aheads are counted as wasted on close
+                if (writeBehind != null)
+                    writeBehind.close();
+                if (prefetcher != null)
+                    prefetcher.close();
+                if (tier != null)
+                    tier.close();
+            }
+            if (stripedPool != null)
+                stripedPool.copyStatsTo(stats);
 
-            writeStats(statTxt, byteFile.getPath(), stats, timeEnd - timeStart);
+            writeStats(
+                statTxt,
+                byteFile.getPath(),
+                policyName,
+                mapped ? 0 : blockSize,
+                maxBuff,
+                budget,
+                filePool == null ? 0 : filePool.getPeakBuffers(),
+                slab == null ? 0 : slab.getReservedBytes(),
+                stats,
+                runStats,
+                buckets,
+                timeEnd - timeStart);
         }
 
     }
@@ -98,7 +554,8 @@ public class HeapSort
     private static void printToConsole(BufferPool<Record> bp)
     {
         Record temp;
-        for (int i = 0, j = 1; i < bp.length(); i += RECORDS_PER_BLOCK, j++)
+        long length = bp.length();
+        for (long i = 0, j = 1; i < length; i += RECORDS_PER_BLOCK, j++)
         {
             temp = bp.getElem(i);
             // maximum key has 5 digits so format that way
@@ -110,10 +567,51 @@ public class HeapSort
     }
 
 
-    private static
-        void
-        writeStats(FileWriter writer, String fileName, IOStats stats, long time)
-            throws IOException
+    /*
+     * Parses a size in bytes with an optional k, m or g suffix. Returns -1 if
+     * it is not one.
+     */
+    private static long parseSize(String text)
+    {
+        String digits = text.trim().toLowerCase();
+        long unit = 1;
+        if (digits.endsWith("k"))
+            unit = 1L << 10;
+        else if (digits.endsWith("m"))
+            unit = 1L << 20;
+        else if (digits.endsWith("g"))
+            unit = 1L << 30;
+        if (unit > 1)
+            digits = digits.substring(0, digits.length() - 1);
+
+        try
+        {
+            long value = Long.parseLong(digits);
+            if (value < 0 || value > Long.MAX_VALUE / unit)
+                return -1;
+            return value * unit;
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+
+    private static void writeStats(
+        FileWriter writer,
+        String fileName,
+        String policyName,
+        int blockSize,
+        int buffers,
+        long budget,
+        int peakBuffers,
+        long slabBytes,
+        IOStats stats,
+        RunStats runStats,
+        int buckets,
+        long time)
+        throws IOException
     {
         StringBuilder builder = new StringBuilder();
         builder.append("------  STATS ------\n");
@@ -122,6 +620,47 @@ public class HeapSort
         builder.append(fileName);
         builder.append("\n");
 
+        builder.append("Eviction policy: ");
+        builder.append(policyName.trim().toLowerCase());
+        builder.append("\n");
+
+        boolean resized =
+            blockSize != 0 && blockSize != Buffer.BUFFER_CAPACITY;
+        if (resized)
+        {
+            builder.append("Block size: ");
+            builder.append(blockSize);
+            builder.append("\n");
+        }
+
+        if (budget > 0)
+        {
+            builder.append("Memory budget: ");
+            builder.append(budget);
+            builder.append("\n");
+        }
+
+        if (resized || budget > 0)
+        {
+            builder.append("Number of buffers: ");
+            builder.append(buffers);
+            builder.append("\n");
+        }
+
+        if (budget > 0 && peakBuffers > 0)
+        {
+            builder.append("Peak buffers: ");
+            builder.append(peakBuffers);
+            builder.append("\n");
+        }
+
+        if (slabBytes > 0)
+        {
+            builder.append("Slab bytes: ");
+            builder.append(slabBytes);
+            builder.append("\n");
+        }
+
         builder.append("Cache Hits: ");
         builder.append(stats.getHits());
         builder.append("\n");
@@ -138,6 +677,92 @@ public class HeapSort
         builder.append(stats.getWrites());
         builder.append("\n");
 
+        if (stats.getBytesWritten() > 0)
+        {
+            builder.append("Bytes written: ");
+            builder.append(stats.getBytesWritten());
+            builder.append("\n");
+        }
+
+        if (stats.getFaults() > 0)
+        {
+            builder.append("Page faults (estimated): ");
+            builder.append(stats.getFaults());
+            builder.append("\n");
+
+            builder.append("Bytes touched: ");
+            builder.append(stats.getTouched());
+            builder.append("\n");
+        }
+
+        if (stats.getPrefetches() > 0)
+        {
+            builder.append("Prefetched blocks: ");
+            builder.append(stats.getPrefetches());
+            builder.append("\n");
+
+            builder.append("Prefetch hits: ");
+            builder.append(stats.getPrefetchHits());
+            builder.append("\n");
+
+            builder.append("Prefetch wasted: ");
+            builder.append(stats.getPrefetchWasted());
+            builder.append("\n");
+        }
+
+        if (stats.getTierHits() > 0 || stats.getTierTime() > 0)
+        {
+            builder.append("Compressed tier hits: ");
+            builder.append(stats.getTierHits());
+            builder.append("\n");
+
+            builder.append("Compressed tier time: ");
+            builder.append(stats.getTierTime() / 1000000);
+            builder.append("\n");
+        }
+
+        if (stats.getRuns() > 0)
+        {
+            builder.append("Runs: ");
+            builder.append(stats.getRuns());
+            builder.append("\n");
+
+            builder.append("Merge passes: ");
+            builder.append(stats.getMergePasses());
+            builder.append("\n");
+        }
+
+        if (runStats != null && runStats.getCount() > 0)
+        {
+            builder.append("Run lengths (records): shortest ");
+            builder.append(runStats.getShortest());
+            builder.append(", longest ");
+            builder.append(runStats.getLongest());
+            builder.append("\n");
+
+            builder.append("Mean run length (memories): ");
+            builder.append(String.format("%.2f", runStats.getMeanRatio()));
+            builder.append("\n");
+
+            builder.append("Run length distribution (memories): ");
+            builder.append(runStats);
+            builder.append("\n");
+        }
+
+        if (buckets > 0)
+        {
+            builder.append("Distribution buckets: ");
+            builder.append(buckets);
+            builder.append("\n");
+        }
+
+        if (stats.getBackgroundWrites() > 0)
+        {
+            builder.append("Background writes: ");
+            builder.append(stats.getBackgroundWrites());
+            builder.append("\n");
+        }
+
         builder.append("Time to sort: ");
         builder.append(time);
         builder.append("\n");
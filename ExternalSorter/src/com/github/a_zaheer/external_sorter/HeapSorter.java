@@ -12,8 +12,15 @@ package com.github.a_zaheer.external_sorter;
 public class HeapSorter<E extends Comparable<E>>
 {
     // ~ Fields ................................................................
-    private MaxHeap<E> h;
-    private int        size;
+    private MaxHeap<E>    h;
+    private BufferPool<E> bp;
+    private long          size;
+
+    /**
+     * Number of elements sorted between hints that the sorted tail will not
+     * be used again.
+     */
+    static final int TAIL_STEP = 1024;
 
     // ~ Constructors ..........................................................
     // ----------------------------------------------------------
@@ -26,9 +33,10 @@ public class HeapSorter<E extends Comparable<E>>
      * @param s
      *            size of the buffer pool
      */
-    public HeapSorter(BufferPool<E> bp, int s)
+    public HeapSorter(BufferPool<E> bp, long s)
     {
         size = s;
+        this.bp = bp;
 
         h = new MaxHeap<E>(bp, size);
     }
@@ -42,9 +50,16 @@ public class HeapSorter<E extends Comparable<E>>
     public void sort()
     {
         // The heap constructor invokes the buildHeap method
-        for (int i = 0; i < size; i++)
+        long hinted = size; // the tail from here on was hinted
+        for (long i = 0; i < size; i++)
         {  // Now sort
             h.removeMax(); // Remove Max places max at end of heap
+            if ((i + 1) % TAIL_STEP == 0)
+            {
+                long n = size - i - 1; // the rest is final
+                bp.dontNeed(n, hinted - n);
+                hinted = n;
+            }
         }
     }
 }
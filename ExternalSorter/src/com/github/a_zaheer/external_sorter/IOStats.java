@@ -9,10 +9,21 @@ package com.github.a_zaheer.external_sorter;
 public class IOStats
 {
     // ~ Fields ................................................................
-    private int hits; // data found in one of the buffers
-    private int misses; // data not found in any of the buffers
-    private int reads; // number of blocks read from the file
-    private int writes; // number of blocks written to the file
+    private long hits; // data found in one of the buffers
+    private long misses; // data not found in any of the buffers
+    private long reads; // number of blocks read from the file
+    private long writes; // number of blocks written to the file
+    private long faults; // estimated page faults in memory-mapped files
+    private long touched; // bytes of memory-mapped files touched
+    private long prefetches; // blocks read ahead of time
+    private long prefetchHits; // misses served by a block read ahead
+    private long prefetchWasted; // blocks read ahead but never used
+    private long backgroundWrites; // writes queued for a background thread
+    private long bytesWritten; // bytes written to the file
+    private long tierHits; // misses served by the compressed tier
+    private long tierTime; // nanoseconds packing and unpacking tier blocks
+    private long runs; // sorted runs made by an external merge sort
+    private long mergePasses; // passes over the data merging runs
 
     // ~ Constructors ..........................................................
     // ----------------------------------------------------------
@@ -28,7 +39,7 @@ public class IOStats
      * @param w
      *            writes
      */
-    public IOStats(int h, int m, int r, int w)
+    public IOStats(long h, long m, long r, long w)
     {
         hits = h;
         misses = m;
@@ -54,7 +65,7 @@ public class IOStats
      *
      * @return number of hits
      */
-    public int getHits()
+    public long getHits()
     {
         return hits;
     }
@@ -67,7 +78,7 @@ public class IOStats
      * @param h
      *            new number of hits
      */
-    public void setHits(int h)
+    public void setHits(long h)
     {
         hits = h;
     }
@@ -79,7 +90,7 @@ public class IOStats
      *
      * @return number of misses
      */
-    public int getMisses()
+    public long getMisses()
     {
         return misses;
     }
@@ -92,7 +103,7 @@ public class IOStats
      * @param m
      *            new number of misses
      */
-    public void setMisses(int m)
+    public void setMisses(long m)
     {
         misses = m;
     }
@@ -104,7 +115,7 @@ public class IOStats
      *
      * @return number of reads
      */
-    public int getReads()
+    public long getReads()
     {
         return reads;
     }
@@ -117,7 +128,7 @@ public class IOStats
      * @param r
      *            new number of reads
      */
-    public void setReads(int r)
+    public void setReads(long r)
     {
         reads = r;
     }
@@ -129,7 +140,7 @@ public class IOStats
      *
      * @return number of writes
      */
-    public int getWrites()
+    public long getWrites()
     {
         return writes;
     }
@@ -142,12 +153,289 @@ public class IOStats
      * @param w
      *            new number of writes
      */
-    public void setWrites(int w)
+    public void setWrites(long w)
     {
         writes = w;
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Getter
+     *
+     * @return estimated number of page faults in memory-mapped files
+     */
+    public long getFaults()
+    {
+        return faults;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Setter
+     *
+     * @param f
+     *            new number of page faults
+     */
+    public void setFaults(long f)
+    {
+        faults = f;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Getter
+     *
+     * @return number of bytes touched in memory-mapped files
+     */
+    public long getTouched()
+    {
+        return touched;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Setter
+     *
+     * @param t
+     *            new number of bytes touched
+     */
+    public void setTouched(long t)
+    {
+        touched = t;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Getter
+     *
+     * @return number of blocks read ahead of time
+     */
+    public long getPrefetches()
+    {
+        return prefetches;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Setter
+     *
+     * @param p
+     *            new number of blocks read ahead of time
+     */
+    public void setPrefetches(long p)
+    {
+        prefetches = p;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Getter
+     *
+     * @return number of misses served by prefetched blocks
+     */
+    public long getPrefetchHits()
+    {
+        return prefetchHits;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Setter
+     *
+     * @param h
+     *            new number of misses served by prefetched blocks
+     */
+    public void setPrefetchHits(long h)
+    {
+        prefetchHits = h;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Getter
+     *
+     * @return number of prefetched blocks never used
+     */
+    public long getPrefetchWasted()
+    {
+        return prefetchWasted;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Setter
+     *
+     * @param w
+     *            new number of prefetched blocks never used
+     */
+    public void setPrefetchWasted(long w)
+    {
+        prefetchWasted = w;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Getter
+     *
+     * @return number of writes done by a background thread
+     */
+    public long getBackgroundWrites()
+    {
+        return backgroundWrites;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Setter
+     *
+     * @param b
+     *            new number of writes done by a background thread
+     */
+    public void setBackgroundWrites(long b)
+    {
+        backgroundWrites = b;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Getter
+     *
+     * @return number of bytes written to the file
+     */
+    public long getBytesWritten()
+    {
+        return bytesWritten;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Setter
+     *
+     * @param b
+     *            new number of bytes written to the file
+     */
+    public void setBytesWritten(long b)
+    {
+        bytesWritten = b;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Getter
+     *
+     * @return number of misses served by the compressed tier
+     */
+    public long getTierHits()
+    {
+        return tierHits;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Setter
+     *
+     * @param h
+     *            new number of misses served by the compressed tier
+     */
+    public void setTierHits(long h)
+    {
+        tierHits = h;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Getter
+     *
+     * @return nanoseconds spent packing blocks into and unpacking them from
+     *         the compressed tier
+     */
+    public long getTierTime()
+    {
+        return tierTime;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Setter
+     *
+     * @param t
+     *            new nanoseconds spent packing blocks into and unpacking them
+     *            from the compressed tier
+     */
+    public void setTierTime(long t)
+    {
+        tierTime = t;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Getter
+     *
+     * @return number of sorted runs made
+     */
+    public long getRuns()
+    {
+        return runs;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Setter
+     *
+     * @param r
+     *            new number of sorted runs made
+     */
+    public void setRuns(long r)
+    {
+        runs = r;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Getter
+     *
+     * @return number of passes over the data merging runs
+     */
+    public long getMergePasses()
+    {
+        return mergePasses;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Setter
+     *
+     * @param p
+     *            new number of passes over the data merging runs
+     */
+    public void setMergePasses(long p)
+    {
+        mergePasses = p;
+    }
+
+
     // ----------------------------------------------------------
     /**
      * Resets the values back to default of 0.
@@ -158,6 +446,17 @@ public class IOStats
         misses = 0;
         reads = 0;
         writes = 0;
+        faults = 0;
+        touched = 0;
+        prefetches = 0;
+        prefetchHits = 0;
+        prefetchWasted = 0;
+        backgroundWrites = 0;
+        bytesWritten = 0;
+        tierHits = 0;
+        tierTime = 0;
+        runs = 0;
+        mergePasses = 0;
     }
 }
 
@@ -0,0 +1,124 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+// -------------------------------------------------------------------------
+/**
+ * Sorts a file of records that fits in memory in one go: one sequential
+ * pass reading the whole file, a sort of the records as packed ints and one
+ * sequential pass writing it back. A packed record holds its key in the high
+ * half, so the signed order of packed ints is the order of the keys,
+ * negative ones first, and Arrays.sort, a dual-pivot quicksort on
+ * primitives, sorts the records without a Record or a comparison call per
+ * element. Records with equal keys come out in the order of their values.
+ * <p>
+ * The file is read straight into the ints and written back from them a
+ * block at a time, so it is held once, plus a block.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class InMemorySort
+{
+    // ~ Fields ................................................................
+    private final FileChannel file;
+    private final int         blockSize;
+    private final IOStats     stats;
+
+    /**
+     * Most bytes sorted at once, the whole records of an int array no longer
+     * than the largest buffer.
+     */
+    public static final long  MAX_BYTES =
+        Integer.MAX_VALUE - Integer.MAX_VALUE % Record.SIZE_IN_BYTES;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new InMemorySort object. The caller keeps ownership of the
+     * channel.
+     *
+     * @param file
+     *            the file to sort
+     * @param blockSize
+     *            bytes per sequential read or write, a block size Buffer
+     *            accepts
+     * @param stats
+     *            IO statistics log
+     */
+    public InMemorySort(FileChannel file, int blockSize, IOStats stats)
+    {
+        Buffer.checkCapacity(blockSize);
+
+        this.file = file;
+        this.blockSize = blockSize;
+        this.stats = stats;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Tells if a file fits in a memory budget to be sorted in one go.
+     *
+     * @param length
+     *            file length in bytes
+     * @param memory
+     *            bytes of memory
+     * @return true if the file is no longer than the memory, or MAX_BYTES
+     */
+    public static boolean fits(long length, long memory)
+    {
+        return length <= Math.min(memory, MAX_BYTES);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Sorts the file in place. Bytes past the last whole record are left
+     * alone.
+     *
+     * @throws IOException
+     *             if the file cannot be read or written, or is longer than
+     *             MAX_BYTES
+     */
+    public void sort()
+        throws IOException
+    {
+        long length = file.size() - file.size() % Record.SIZE_IN_BYTES;
+        if (length > MAX_BYTES)
+            throw new IOException("File is too large to sort in memory");
+        if (length == 0)
+            return;
+
+        int[] recs = new int[(int)(length / Record.SIZE_IN_BYTES)];
+        ByteBuffer window = ByteBuffer.allocateDirect(blockSize);
+        long position = 0;
+        int done = 0;
+        while (done < recs.length)
+        {
+            int count =
+                Math.min(blockSize / Record.SIZE_IN_BYTES, recs.length - done);
+            window.clear().limit(count * Record.SIZE_IN_BYTES);
+            while (window.hasRemaining())
+            {
+                int read = file.read(window, position);
+                if (read < 0)
+                    throw new EOFException("File ends early");
+                position += read;
+            }
+            window.flip();
+            window.asIntBuffer().get(recs, done, count);
+            stats.setReads(stats.getReads() + 1);
+            done += count;
+        }
+
+        Arrays.sort(recs);
+        RunWriter out = new RunWriter(file, 0, blockSize, stats);
+        out.write(recs, 0, recs.length);
+        out.flush();
+    }
+}
@@ -0,0 +1,267 @@
+package com.github.a_zaheer.external_sorter;
+import java.util.Arrays;
+
+// -------------------------------------------------------------------------
+/**
+ * Low Inter-reference Recency Set eviction (Jiang and Zhang). Blocks whose
+ * last two accesses were close together (LIR) get almost all of the frames.
+ * The remaining few frames hold HIR blocks, which are evicted in FIFO order.
+ * A stack S orders tracked blocks by recency, including HIR blocks that were
+ * already evicted, and a HIR block that is hit again while still in S becomes
+ * LIR, demoting the least recent LIR block. Scans and loops that defeat LRU
+ * only ever churn the small HIR part.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class LirsPolicy
+    implements EvictionPolicy
+{
+    // ~ Fields ................................................................
+    // each tracked block has a node; evicted HIR blocks keep theirs while
+    // they are in the stack
+    private final long[]    blocks;      // node -> block
+    private final int[]     frames;      // node -> frame, or NO_FRAME
+    private final boolean[] lir;         // node -> LIR or HIR
+    private final int[]     nodeOfFrame; // frame -> node
+    private final int[]     free;        // unused nodes
+    private int             freeCount;
+    private BlockIndex      index;       // block -> node
+
+    private FrameList       stack;       // S, most recent first
+    private FrameList       queue;       // Q, resident HIR, newest first
+    private final int       lirTarget;
+    private int             lirCount;
+
+    private static final int NO_FRAME        = -1;
+    private static final int NODES_PER_FRAME = 3;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new LirsPolicy object that keeps 1% of the frames (at least
+     * one) for HIR blocks.
+     *
+     * @param capacity
+     *            number of frames in the pool
+     */
+    public LirsPolicy(int capacity)
+    {
+        int nodes = NODES_PER_FRAME * capacity;
+        blocks = new long[nodes];
+        frames = new int[nodes];
+        lir = new boolean[nodes];
+        nodeOfFrame = new int[capacity];
+        free = new int[nodes];
+        index = new BlockIndex(nodes);
+        stack = new FrameList(nodes);
+        queue = new FrameList(nodes);
+        lirTarget = capacity - Math.max(1, capacity / 100);
+        clear();
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void hit(int frame)
+    {
+        int node = nodeOfFrame[frame];
+        if (lir[node])
+        {
+            boolean wasBottom = stack.last() == node;
+            stack.moveToFront(node);
+            if (wasBottom)
+                prune();
+        }
+        else if (stack.contains(node))
+        {
+            // short reuse distance: HIR becomes LIR
+            stack.moveToFront(node);
+            queue.remove(node);
+            makeLir(node);
+        }
+        else
+        {
+            stack.addFirst(node);
+            queue.moveToFront(node);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void miss(int frame, long block)
+    {
+        int node = index.get(block);
+        if (node != BlockIndex.NONE)
+        {
+            // evicted HIR block still in the stack
+            frames[node] = frame;
+            nodeOfFrame[frame] = node;
+            stack.moveToFront(node);
+            makeLir(node);
+            return;
+        }
+
+        node = newNode(block);
+        frames[node] = frame;
+        nodeOfFrame[frame] = node;
+        stack.addFirst(node);
+        if (lirCount < lirTarget)
+        {
+            lir[node] = true;
+            lirCount++;
+        }
+        else
+            queue.addFirst(node);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int evict(long block)
+    {
+        int node = queue.last();
+        if (node == FrameList.NIL)
+        {
+            // no resident HIR block, give up the least recent LIR block
+            node = stack.last();
+            lir[node] = false;
+            lirCount--;
+            stack.remove(node);
+            prune();
+        }
+        else
+            queue.remove(node);
+
+        int frame = frames[node];
+        frames[node] = NO_FRAME;
+        if (!stack.contains(node))
+            freeNode(node);
+        return frame;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(int frame)
+    {
+        int node = nodeOfFrame[frame];
+        if (lir[node])
+        {
+            lir[node] = false;
+            lirCount--;
+        }
+        else
+            queue.remove(node);
+        stack.remove(node);
+        frames[node] = NO_FRAME;
+        freeNode(node);
+        prune();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        stack.clear();
+        queue.clear();
+        index.clear();
+        Arrays.fill(frames, NO_FRAME);
+        Arrays.fill(lir, false);
+        lirCount = 0;
+        freeCount = free.length;
+        for (int i = 0; i < free.length; i++)
+            free[i] = free.length - 1 - i;
+    }
+
+
+    /*
+     * Turns a node at the top of the stack into LIR, demoting the bottom LIR
+     * node if there are now too many.
+     */
+    private void makeLir(int node)
+    {
+        lir[node] = true;
+        lirCount++;
+        prune(); // the bottom is LIR from here on
+        if (lirCount > lirTarget)
+        {
+            int bottom = stack.last();
+            lir[bottom] = false;
+            lirCount--;
+            stack.remove(bottom);
+            queue.addFirst(bottom);
+            prune();
+        }
+    }
+
+
+    /*
+     * Removes HIR nodes from the bottom of the stack so that it ends with a
+     * LIR node. Evicted ones are forgotten completely.
+     */
+    private void prune()
+    {
+        int node;
+        while ((node = stack.last()) != FrameList.NIL && !lir[node])
+        {
+            stack.remove(node);
+            if (frames[node] == NO_FRAME)
+                freeNode(node);
+        }
+    }
+
+
+    /*
+     * Takes an unused node for a block. If every node is taken, forgets the
+     * oldest evicted blocks in the stack first.
+     */
+    private int newNode(long block)
+    {
+        if (freeCount == 0)
+        {
+            int node = stack.last();
+            while (node != FrameList.NIL && freeCount == 0)
+            {
+                int above = stack.prev(node);
+                if (frames[node] == NO_FRAME)
+                {
+                    stack.remove(node);
+                    freeNode(node);
+                }
+                node = above;
+            }
+        }
+
+        int node = free[--freeCount];
+        blocks[node] = block;
+        lir[node] = false;
+        index.put(block, node);
+        return node;
+    }
+
+
+    private void freeNode(int node)
+    {
+        index.remove(blocks[node]);
+        free[freeCount++] = node;
+    }
+}
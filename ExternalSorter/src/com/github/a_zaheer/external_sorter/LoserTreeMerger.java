@@ -0,0 +1,140 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.IOException;
+
+// -------------------------------------------------------------------------
+/**
+ * Merges sorted runs into one with a loser tree, a tournament tree whose
+ * inner nodes keep the run that lost the match played there. The winner,
+ * the run with the smallest key, is written and advanced, and then only
+ * replays the matches on its own path to the root against the losers kept
+ * there: one key comparison per level, about log2(k) per record for k runs,
+ * against about 2 log2(k) for the sift-down of a heap. The path is the same
+ * every time a run wins, which branch predictors handle well.
+ * <p>
+ * Each run's current key is kept in a long along with the run's number, so
+ * a match is a single comparison of primitives, ties go to the earlier run
+ * and a finished run sorts after every other. Records with equal keys come
+ * out in the order of their runs, so the merge is stable if the runs are in
+ * file order, as with HeapMerger.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class LoserTreeMerger
+{
+    // ~ Fields ................................................................
+    private final RunReader[] runs;
+    private final long[]      keys;   // key << 32 | run number, per run
+    private final int[]       losers; // run that lost at each inner node
+    private int               winner;
+    private long              comparisons;
+
+    private static final long DONE = Long.MAX_VALUE;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new LoserTreeMerger object over runs whose first records were
+     * read, and plays the first tournament.
+     *
+     * @param runs
+     *            the runs, each sorted by key
+     */
+    public LoserTreeMerger(RunReader[] runs)
+    {
+        this.runs = runs;
+        int k = runs.length;
+        keys = new long[k];
+        for (int i = 0; i < k; i++)
+            keys[i] = keyOf(i);
+        losers = new int[Math.max(k, 1)];
+
+        // winners of the matches below each node; run i is at leaf k + i
+        int[] winners = new int[2 * k];
+        for (int i = 0; i < k; i++)
+            winners[k + i] = i;
+        for (int node = k - 1; node >= 1; node--)
+        {
+            int a = winners[2 * node];
+            int b = winners[2 * node + 1];
+            comparisons++;
+            if (keys[b] < keys[a])
+            {
+                winners[node] = b;
+                losers[node] = a;
+            }
+            else
+            {
+                winners[node] = a;
+                losers[node] = b;
+            }
+        }
+        winner = k > 1 ? winners[1] : 0;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Writes every record of the runs in key order.
+     *
+     * @param out
+     *            where the merged run goes; it is not flushed
+     * @return number of records written
+     * @throws IOException
+     *             if a run cannot be read or the output written
+     */
+    public long mergeTo(RunWriter out)
+        throws IOException
+    {
+        int k = runs.length;
+        long count = 0;
+        while (k > 0 && keys[winner] != DONE)
+        {
+            RunReader top = runs[winner];
+            out.write(top.current());
+            count++;
+            top.advance();
+            keys[winner] = keyOf(winner);
+
+            // replay the winner's matches on the way up
+            int run = winner;
+            for (int node = (k + run) >> 1; node >= 1; node >>= 1)
+            {
+                comparisons++;
+                if (keys[losers[node]] < keys[run])
+                {
+                    int temp = losers[node];
+                    losers[node] = run;
+                    run = temp;
+                }
+            }
+            winner = run;
+        }
+        return count;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of key comparisons made so far.
+     *
+     * @return comparisons
+     */
+    public long getComparisons()
+    {
+        return comparisons;
+    }
+
+
+    /*
+     * Gets the key of a run's current record together with its number, or
+     * DONE if the run is done.
+     */
+    private long keyOf(int run)
+    {
+        if (runs[run].isDone())
+            return DONE;
+        return (long)Record.packedKey(runs[run].current()) << 32 | run;
+    }
+}
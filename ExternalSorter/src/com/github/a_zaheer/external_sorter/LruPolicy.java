@@ -0,0 +1,86 @@
+package com.github.a_zaheer.external_sorter;
+// -------------------------------------------------------------------------
+/**
+ * Least Recently Used eviction. Every hit moves the frame to the front of a
+ * list and the frame at the back is evicted.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class LruPolicy
+    implements EvictionPolicy
+{
+    // ~ Fields ................................................................
+    private FrameList lru; // frames, most recently used first
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new LruPolicy object.
+     *
+     * @param capacity
+     *            number of frames in the pool
+     */
+    public LruPolicy(int capacity)
+    {
+        lru = new FrameList(capacity);
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void hit(int frame)
+    {
+        lru.moveToFront(frame);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void miss(int frame, long block)
+    {
+        lru.addFirst(frame);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int evict(long block)
+    {
+        int victim = lru.last();
+        lru.remove(victim);
+        return victim;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(int frame)
+    {
+        lru.remove(frame);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        lru.clear();
+    }
+}
@@ -0,0 +1,506 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// -------------------------------------------------------------------------
+/**
+ * Implements a buffer pool by memory-mapping the file. The file is mapped in
+ * windows of a fixed size, each mapped the first time one of its records is
+ * used, and records are read and written directly in the mapping. The
+ * operating system's page cache does the buffering, read-ahead and
+ * write-back, so there is no seek, read or copy per block. Windows let the
+ * pool handle files larger than the 2 GB a single mapping can cover.
+ * <p>
+ * Java cannot see real page faults, so the pool estimates them: the first
+ * access to each page of a window's mapping is counted as a miss and a fault,
+ * and later accesses as hits. Reads count mapped windows and writes count
+ * windows forced to disk by clear(). Ranges of records are copied a page at
+ * a time, each page counted once.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class MappedBufferPool
+    implements RecordBufferPool
+{
+    // ~ Fields ................................................................
+    private FileChannel        channel;
+    private MappedByteBuffer[] windows;
+    private long[][]           touchedPages; // bit set of pages per window
+    private long[]             windowFaults;
+    private final int          windowSize;
+    private final long         fileLength;
+    private IOStats            stats;
+
+    /**
+     * Default window size in bytes.
+     */
+    public static final int    DEFAULT_WINDOW_SIZE = 1 << 30;
+
+    /**
+     * Page size used to estimate faults.
+     */
+    public static final int    PAGE_SIZE           = 4096;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new MappedBufferPool object with 1 GB windows.
+     *
+     * @param file
+     *            source RAF
+     * @param stats
+     *            IO statistics log
+     */
+    public MappedBufferPool(RandomAccessFile file, IOStats stats)
+    {
+        this(file, DEFAULT_WINDOW_SIZE, stats);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new MappedBufferPool object.
+     *
+     * @param file
+     *            source RAF
+     * @param winSize
+     *            window size in bytes, a positive multiple of the page size
+     * @param stats
+     *            IO statistics log
+     */
+    public MappedBufferPool(RandomAccessFile file, int winSize, IOStats stats)
+    {
+        if (winSize <= 0 || winSize % PAGE_SIZE != 0)
+            throw new IllegalArgumentException(
+                "Window size must be a positive multiple of " + PAGE_SIZE);
+
+        channel = file.getChannel();
+        windowSize = winSize;
+        try
+        {
+            fileLength = channel.size();
+        }
+        catch (IOException e)
+        {
+            throw handleIOE(e);
+        }
+
+        int count = (int)((fileLength + windowSize - 1) / windowSize);
+        windows = new MappedByteBuffer[count];
+        touchedPages = new long[count][];
+        windowFaults = new long[count];
+        this.stats = stats;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record getElem(long pos)
+    {
+        long offset = byteOffset(pos);
+        MappedByteBuffer window = window(offset, Record.SIZE_IN_BYTES);
+        int inWindow = (int)(offset % windowSize);
+
+        return new Record(
+            window.getShort(inWindow + Record.BYTE_INDEX_KEY),
+            window.getShort(inWindow + Record.BYTE_INDEX_VALUE));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setElem(long pos, Record newRec)
+    {
+        long offset = byteOffset(pos);
+        MappedByteBuffer window = window(offset, Record.SIZE_IN_BYTES);
+        int inWindow = (int)(offset % windowSize);
+
+        window.putShort(inWindow + Record.BYTE_INDEX_KEY, newRec.getKey());
+        window.putShort(inWindow + Record.BYTE_INDEX_VALUE, newRec.getValue());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void swapElems(long a, long b)
+    {
+        swapAt(a, b);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public short keyAt(long pos)
+    {
+        long offset = byteOffset(pos);
+        MappedByteBuffer window = window(offset, Record.SIZE_IN_BYTES);
+        int inWindow = (int)(offset % windowSize);
+
+        return window.getShort(inWindow + Record.BYTE_INDEX_KEY);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareAt(long a, long b)
+    {
+        return Short.compare(keyAt(a), keyAt(b));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void swapAt(long a, long b)
+    {
+        long offsetA = byteOffset(a);
+        long offsetB = byteOffset(b);
+        MappedByteBuffer windowA = window(offsetA, Record.SIZE_IN_BYTES);
+        MappedByteBuffer windowB = window(offsetB, Record.SIZE_IN_BYTES);
+        int inA = (int)(offsetA % windowSize);
+        int inB = (int)(offsetB % windowSize);
+
+        int temp = windowA.getInt(inA);
+        windowA.putInt(inA, windowB.getInt(inB));
+        windowB.putInt(inB, temp);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readRange(long pos, int[] dst, int off, int count)
+    {
+        checkArray(dst.length, off, count);
+        moveRange(pos, count, false, dst, off, null);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readRange(long pos, ByteBuffer dst)
+    {
+        int count = dst.remaining() / Record.SIZE_IN_BYTES;
+        moveRange(pos, count, false, null, 0, dst);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeRange(long pos, int[] src, int off, int count)
+    {
+        checkArray(src.length, off, count);
+        moveRange(pos, count, true, src, off, null);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeRange(long pos, ByteBuffer src)
+    {
+        int count = src.remaining() / Record.SIZE_IN_BYTES;
+        moveRange(pos, count, true, null, 0, src);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void copyRange(long from, long to, long count)
+    {
+        checkRange(from, count);
+        checkRange(to, count);
+        if (count == 0 || from == to)
+            return;
+
+        // from the back if the destination overlaps the end of the source
+        int chunk = (int)Math.min(PAGE_SIZE / Record.SIZE_IN_BYTES, count);
+        ByteBuffer temp = ByteBuffer.allocate(chunk * Record.SIZE_IN_BYTES);
+        boolean backward = to > from && to < from + count;
+        for (long done = 0; done < count; done += chunk)
+        {
+            int n = (int)Math.min(chunk, count - done);
+            long at = backward ? count - done - n : done;
+            temp.clear().limit(n * Record.SIZE_IN_BYTES);
+            moveRange(from + at, n, false, null, 0, temp);
+            temp.flip();
+            moveRange(to + at, n, true, null, 0, temp);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void pin(long pos, long count)
+    {
+        // the operating system pages the mapping
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unpin(long pos, long count)
+    {
+        // the operating system pages the mapping
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void willNeed(long pos, long count)
+    {
+        // the operating system pages the mapping
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dontNeed(long pos, long count)
+    {
+        // the operating system pages the mapping
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Forces every mapped window to disk and unmaps it. The next access maps
+     * the window again.
+     */
+    @Override
+    public void clear()
+    {
+        for (int i = 0; i < windows.length; i++)
+        {
+            if (windows[i] == null)
+                continue;
+
+            windows[i].force();
+            stats.setWrites(stats.getWrites() + 1);
+            windows[i] = null;
+            touchedPages[i] = null;
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long length()
+    {
+        return fileLength / Record.SIZE_IN_BYTES;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the estimated number of page faults in one window, counted since
+     * the pool was made.
+     *
+     * @param win
+     *            window number
+     * @return estimated faults
+     */
+    public long getWindowFaults(int win)
+    {
+        return windowFaults[win];
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of windows the file is split into.
+     *
+     * @return window count
+     */
+    public int windowCount()
+    {
+        return windows.length;
+    }
+
+
+    /*
+     * Converts a record index to the record's byte offset in the file.
+     */
+    private long byteOffset(long pos)
+    {
+        if (pos < 0 || pos >= length())
+            throw new IllegalArgumentException("Position must be within range");
+        return pos * Record.SIZE_IN_BYTES;
+    }
+
+
+    /*
+     * Moves count records starting at pos between the mapping and either
+     * ints, from index off, or bytes, from its position, which advances. A
+     * page never spans two windows, so each page is one copy.
+     */
+    private void moveRange(
+        long pos,
+        long count,
+        boolean write,
+        int[] ints,
+        int off,
+        ByteBuffer bytes)
+    {
+        checkRange(pos, count);
+        long offset = pos * Record.SIZE_IN_BYTES;
+        long end = offset + count * Record.SIZE_IN_BYTES;
+        int at = off;
+        while (offset < end)
+        {
+            long pageEnd = (offset / PAGE_SIZE + 1) * PAGE_SIZE;
+            int size = (int)(Math.min(pageEnd, end) - offset);
+            MappedByteBuffer window = window(offset, size);
+            int inWindow = (int)(offset % windowSize);
+            int n = size / Record.SIZE_IN_BYTES;
+
+            if (ints != null)
+            {
+                for (int i = 0; i < n; i++)
+                {
+                    int in = inWindow + i * Record.SIZE_IN_BYTES;
+                    if (write)
+                        window.putInt(in, ints[at + i]);
+                    else
+                        ints[at + i] = window.getInt(in);
+                }
+            }
+            else
+            {
+                ByteBuffer mapped = window.duplicate();
+                mapped.limit(inWindow + size).position(inWindow);
+                if (write)
+                {
+                    ByteBuffer from = bytes.duplicate();
+                    from.limit(from.position() + size);
+                    mapped.put(from);
+                    bytes.position(from.position());
+                }
+                else
+                    bytes.put(mapped);
+            }
+            offset += size;
+            at += n;
+        }
+    }
+
+
+    private void checkRange(long pos, long count)
+    {
+        if (pos < 0 || count < 0 || count > length() - pos)
+            throw new IllegalArgumentException("Range must be within the file");
+    }
+
+
+    private void checkArray(int length, int off, int count)
+    {
+        if (off < 0 || count < 0 || count > length - off)
+            throw new IllegalArgumentException(
+                "Range must be within the array");
+    }
+
+
+    /*
+     * Finds the window holding a byte offset, mapping it if needed, and
+     * records an access of some bytes in one page in the statistics.
+     */
+    private MappedByteBuffer window(long offset, int bytes)
+    {
+        int win = (int)(offset / windowSize);
+        MappedByteBuffer window = windows[win];
+        if (window == null)
+        {
+            long start = (long)win * windowSize;
+            long size = Math.min(windowSize, fileLength - start);
+            try
+            {
+                window =
+                    channel.map(FileChannel.MapMode.READ_WRITE, start, size);
+            }
+            catch (IOException e)
+            {
+                throw handleIOE(e);
+            }
+            windows[win] = window;
+            int pageCount = (int)((size + PAGE_SIZE - 1) / PAGE_SIZE);
+            touchedPages[win] = new long[(pageCount + 63) / 64];
+            stats.setReads(stats.getReads() + 1);
+        }
+
+        int page = (int)((offset % windowSize) / PAGE_SIZE);
+        long[] pages = touchedPages[win];
+        long bit = 1L << page;
+        if ((pages[page >>> 6] & bit) == 0)
+        {
+            pages[page >>> 6] |= bit;
+            windowFaults[win]++;
+            stats.setFaults(stats.getFaults() + 1);
+            stats.setMisses(stats.getMisses() + 1);
+        }
+        else
+            stats.setHits(stats.getHits() + 1);
+        stats.setTouched(stats.getTouched() + bytes);
+
+        return window;
+    }
+
+
+    /**
+     * Converts IOException(checked) to RuntimeException(unchecked).
+     */
+    private RuntimeException handleIOE(IOException e)
+    {
+        return new RuntimeException(
+            "Unexpected error happened with the file",
+            e);
+    }
+}
@@ -15,7 +15,15 @@ class MaxHeap<E extends Comparable<E>>
 {
     private BufferPool<E> heap; // Pointer to the buffer pool, acts like an
                                 // array
-    private int           n; // Number of things currently in heap
+    private long          n; // Number of things currently in heap
+    private long          top = -1; // records pinned at the root, -1 until
+                                    // the first removeMax
+
+    /**
+     * Number of records in the top levels of the heap, which every
+     * removeMax() passes through. Their blocks are pinned while sorting.
+     */
+    static final long     PINNED_TOP = (1L << 12) - 1;
 
     // ----------------------------------------------------------
     /**
@@ -26,7 +34,7 @@ class MaxHeap<E extends Comparable<E>>
      * @param heapSize
      *            number of elements
      */
-    MaxHeap(BufferPool<E> bp, int heapSize)
+    MaxHeap(BufferPool<E> bp, long heapSize)
     {
         heap = bp;
         n = heapSize;
@@ -42,7 +50,7 @@ class MaxHeap<E extends Comparable<E>>
      *            current position
      * @return child's position
      */
-    public static int leftChild(int pos)
+    public static long leftChild(long pos)
     {
         return 2 * pos + 1;
     }
@@ -56,7 +64,7 @@ class MaxHeap<E extends Comparable<E>>
      *            current position
      * @return child's position
      */
-    public static int rightChild(int pos)
+    public static long rightChild(long pos)
     {
         return 2 * pos + 2;
     }
@@ -70,7 +78,7 @@ class MaxHeap<E extends Comparable<E>>
      *            current position
      * @return parent's position
      */
-    public static int parent(int pos)
+    public static long parent(long pos)
     {
         return (pos - 1) / 2;
     }
@@ -82,7 +90,7 @@ class MaxHeap<E extends Comparable<E>>
      *
      * @return the size
      */
-    public int heapSize()
+    public long heapSize()
     {
         return n;
     }
@@ -96,7 +104,7 @@ class MaxHeap<E extends Comparable<E>>
      *            specified position
      * @return boolean
      */
-    public boolean isLeaf(int pos)
+    public boolean isLeaf(long pos)
     {
         return (n / 2 <= pos) && (pos < n);
     }
@@ -112,12 +120,22 @@ class MaxHeap<E extends Comparable<E>>
     {
         if (n <= 0)
             throw new IllegalStateException("Heap is empty");
+        if (top < 0)
+        {
+            top = Math.min(n, PINNED_TOP);
+            heap.pin(0, top);
+        }
         n--;
         if (n > 0)
         {
             swap(0, n); // Swap maximum with last value
             siftDown(0); // Put new heap root val in correct place
         }
+        if (n <= top && top > 0)
+        {
+            heap.unpin(0, top); // the rest of the heap is in those blocks
+            top = 0;
+        }
         return heap.getElem(n);
     }
 
@@ -128,7 +146,7 @@ class MaxHeap<E extends Comparable<E>>
      */
     private void buildHeap()
     {
-        for (int i = parent(n - 1); i >= 0; i--)
+        for (long i = parent(n - 1); i >= 0; i--)
         {
             siftDown(i);
         }
@@ -139,12 +157,12 @@ class MaxHeap<E extends Comparable<E>>
     /**
      * Moves an element down to its correct place
      */
-    private void siftDown(int pos)
+    private void siftDown(long pos)
     {
-        int curr = pos;
+        long curr = pos;
         while (!isLeaf(curr))
         {
-            int child = leftChild(curr);
+            long child = leftChild(curr);
             if ((child + 1 < n) && isGreaterThan(child + 1, child))
             {
                 child = child + 1; // child is now index with the smaller value
@@ -162,7 +180,7 @@ class MaxHeap<E extends Comparable<E>>
     /**
      * swaps the elements at the two positions
      */
-    private void swap(int pos1, int pos2)
+    private void swap(long pos1, long pos2)
     {
         heap.swapElems(pos1, pos2);
     }
@@ -171,7 +189,7 @@ class MaxHeap<E extends Comparable<E>>
     /**
      * does fundamental comparison used for checking heap validity
      */
-    private boolean isGreaterThan(int pos1, int pos2)
+    private boolean isGreaterThan(long pos1, long pos2)
     {
         return heap.getElem(pos1).compareTo(heap.getElem(pos2)) > 0;
     }
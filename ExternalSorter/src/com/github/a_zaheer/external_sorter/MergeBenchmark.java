@@ -0,0 +1,156 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+// -------------------------------------------------------------------------
+/**
+ * Times a LoserTreeMerger against a HeapMerger on the same sorted runs.
+ * The runs are random records written to a temporary file, which the
+ * operating system keeps cached after the first round, so the times are
+ * mostly the mergers' own. Each round merges the runs with both mergers,
+ * in turn, into a second temporary file through double-buffered readers,
+ * and prints the time and key comparisons of each.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class MergeBenchmark
+{
+    private static final int  DEFAULT_ROUNDS = 5;
+    private static final int  WINDOW         = 1 << 16;
+    private static final long SEED           = 42;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            number of runs, records per run and, optionally, rounds
+     * @throws IOException
+     *             if a temporary file cannot be read or written
+     */
+    public static void main(String[] args)
+        throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.out.println(
+                "Usage: MergeBenchmark <runs> <records-per-run> [<rounds>]");
+            return;
+        }
+
+        int k;
+        int perRun;
+        int rounds = DEFAULT_ROUNDS;
+        try
+        {
+            k = Integer.valueOf(args[0].trim());
+            perRun = Integer.valueOf(args[1].trim());
+            if (args.length > 2)
+                rounds = Integer.valueOf(args[2].trim());
+        }
+        catch (NumberFormatException e)
+        {
+            System.out.println("Invalid number format");
+            return;
+        }
+        if (k < 1 || perRun < 1 || rounds < 1)
+        {
+            System.out.println("Numbers need to be positive");
+            return;
+        }
+
+        Path input = Files.createTempFile("merge", ".bin");
+        Path output = Files.createTempFile("merge", ".bin");
+        try (
+            FileChannel in = FileChannel.open(
+                input,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            AsynchronousFileChannel runs =
+                AsynchronousFileChannel.open(input, StandardOpenOption.READ);
+            FileChannel out =
+                FileChannel.open(output, StandardOpenOption.WRITE))
+        {
+            long[] bounds = writeRuns(in, k, perRun);
+            for (int round = 1; round <= rounds; round++)
+            {
+                for (boolean loserTree : new boolean[] { true, false })
+                {
+                    IOStats stats = new IOStats();
+                    RunReader[] readers = new RunReader[k];
+                    for (int i = 0; i < k; i++)
+                    {
+                        readers[i] = new RunReader(
+                            runs,
+                            bounds[i],
+                            bounds[i + 1],
+                            WINDOW,
+                            stats);
+                    }
+                    RunWriter writer = new RunWriter(out, 0, WINDOW, stats);
+
+                    long start = System.nanoTime();
+                    long records;
+                    long comparisons;
+                    if (loserTree)
+                    {
+                        LoserTreeMerger merger = new LoserTreeMerger(readers);
+                        records = merger.mergeTo(writer);
+                        comparisons = merger.getComparisons();
+                    }
+                    else
+                    {
+                        HeapMerger merger = new HeapMerger(readers);
+                        records = merger.mergeTo(writer);
+                        comparisons = merger.getComparisons();
+                    }
+                    writer.flush();
+                    long time = System.nanoTime() - start;
+
+                    System.out.printf(
+                        "round %d %-11s %8d ms %6.2f comparisons/record%n",
+                        round,
+                        loserTree ? "loser tree" : "heap",
+                        time / 1000000,
+                        (double)comparisons / records);
+                }
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+        }
+    }
+
+
+    /*
+     * Writes k sorted runs of random records and returns where they start,
+     * and the end.
+     */
+    private static long[] writeRuns(FileChannel channel, int k, int perRun)
+        throws IOException
+    {
+        Random random = new Random(SEED);
+        RunWriter writer = new RunWriter(channel, 0, WINDOW, new IOStats());
+        long[] bounds = new long[k + 1];
+        int[] recs = new int[perRun];
+        for (int i = 0; i < k; i++)
+        {
+            bounds[i] = writer.getPosition();
+            for (int j = 0; j < perRun; j++)
+                recs[j] = Record.pack(random.nextInt(30000), random.nextInt());
+            Arrays.sort(recs);
+            writer.write(recs, 0, perRun);
+        }
+        writer.flush();
+        bounds[k] = writer.getPosition();
+        return bounds;
+    }
+}
@@ -0,0 +1,425 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.LongPredicate;
+
+// -------------------------------------------------------------------------
+/**
+ * Reads blocks ahead of a FileBufferPool on an AsynchronousFileChannel. The
+ * pool reports every record it touches and every block it misses. When a
+ * miss continues a sequential or strided pattern, the prefetcher starts
+ * reading the next few blocks of the pattern into staging buffers. A later
+ * miss on one of those blocks is served from staging, so it waits on a read
+ * that is already under way or done instead of starting a new one.
+ * <p>
+ * A miss continues a pattern if the two records before it at the same stride
+ * were both touched recently. The stride is either one record, which catches
+ * a scan of every record and the shrinking tail of a heap sort (one record
+ * lower each time, with a whole sift-down in between), or one to MAX_STRIDE
+ * blocks, which catches scans that touch one record per block or fewer.
+ * Random accesses, such as the sift-down paths of a heap, almost never line
+ * up three in a row, so they do not trigger reads.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class Prefetcher
+    implements Closeable
+{
+    // ~ Fields ................................................................
+    private AsynchronousFileChannel channel;
+    private final long              fileLength;
+    private final int               depth;
+    private int                     blockSize;
+    private IOStats                 stats;
+
+    // staging slots, reused round robin
+    private long[]                  slotBlocks;
+    private ByteBuffer[]            slotData;
+    private Future<Integer>[]       slotReads;
+    private int                     nextSlot;
+
+    // byte offsets of recently touched records, and how often each is in
+    // the ring
+    private final long[]            recent;
+    private int                     recentPos;
+    private BlockIndex              recentCounts;
+
+    /**
+     * Largest stride in blocks that is recognized.
+     */
+    public static final int         MAX_STRIDE   = 4;
+
+    /**
+     * Number of recent record accesses remembered.
+     */
+    public static final int         RECENT_COUNT = 1024;
+
+    private static final long       NO_BLOCK     = -1L;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new Prefetcher object, which opens its own channel on the
+     * file.
+     *
+     * @param file
+     *            the file the pool works on
+     * @param depth
+     *            number of blocks to read ahead once a pattern is found
+     * @param stats
+     *            IO statistics log
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    public Prefetcher(Path file, int depth, IOStats stats)
+        throws IOException
+    {
+        this(
+            AsynchronousFileChannel.open(file, StandardOpenOption.READ),
+            depth,
+            stats);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new Prefetcher object on a channel it takes ownership of,
+     * closing it on close() or if the depth is bad.
+     *
+     * @param channel
+     *            channel on the file the pool works on
+     * @param depth
+     *            number of blocks to read ahead once a pattern is found
+     * @param stats
+     *            IO statistics log
+     * @throws IOException
+     *             if the file size cannot be read
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    Prefetcher(AsynchronousFileChannel channel, int depth, IOStats stats)
+        throws IOException
+    {
+        if (depth < 1)
+        {
+            channel.close();
+            throw new IllegalArgumentException("Depth must be positive");
+        }
+
+        this.channel = channel;
+        fileLength = channel.size();
+        this.depth = depth;
+        this.stats = stats;
+
+        int slots = 2 * depth;
+        slotBlocks = new long[slots];
+        slotData = new ByteBuffer[slots];
+        slotReads = new Future[slots];
+        Arrays.fill(slotBlocks, NO_BLOCK);
+        nextSlot = 0;
+
+        recent = new long[RECENT_COUNT];
+        Arrays.fill(recent, NO_BLOCK);
+        recentPos = 0;
+        recentCounts = new BlockIndex(RECENT_COUNT);
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Sets the size of the blocks to read. Called by the pool the prefetcher
+     * is given to.
+     *
+     * @param size
+     *            block size in bytes
+     */
+    public void setBlockSize(int size)
+    {
+        if (size != blockSize)
+        {
+            discardAll();
+            blockSize = size;
+            for (int i = 0; i < slotData.length; i++)
+                slotData[i] = ByteBuffer.allocateDirect(size);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Records an access to a record, hit or miss.
+     *
+     * @param offset
+     *            byte offset of the record
+     */
+    public void touched(long offset)
+    {
+        int last = (recentPos + RECENT_COUNT - 1) % RECENT_COUNT;
+        if (recent[last] == offset)
+            return; // the same record again tells nothing new
+
+        long old = recent[recentPos];
+        if (old != NO_BLOCK)
+        {
+            int count = recentCounts.remove(old);
+            if (count > 1)
+                recentCounts.put(old, count - 1);
+        }
+        recent[recentPos] = offset;
+        recentPos = (recentPos + 1) % RECENT_COUNT;
+
+        int count = recentCounts.get(offset);
+        recentCounts.put(offset, count == BlockIndex.NONE ? 1 : count + 1);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Reads ahead if a miss continues a pattern.
+     *
+     * @param offset
+     *            byte offset of the record whose block was missed
+     * @param cached
+     *            tells which blocks the pool already has, so they are skipped
+     */
+    public void missed(long offset, LongPredicate cached)
+    {
+        int stride = findStride(offset);
+        if (stride == 0)
+            return;
+
+        long block = offset / blockSize;
+        long lastBlock = (fileLength - 1) / blockSize;
+        for (int k = 1; k <= depth; k++)
+        {
+            long ahead = block + (long)k * stride;
+            if (ahead < 0 || ahead > lastBlock)
+                break;
+            if (findSlot(ahead) < 0 && !cached.test(ahead))
+                issue(ahead);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Reads ahead blocks the caller said it will need, whatever the pattern.
+     * At most depth blocks are read, so the first ones are not pushed out of
+     * their slots by the last.
+     *
+     * @param block
+     *            first block
+     * @param count
+     *            number of blocks
+     * @param cached
+     *            tells which blocks the pool already has, so they are skipped
+     */
+    public void requested(long block, long count, LongPredicate cached)
+    {
+        long lastBlock = (fileLength - 1) / blockSize;
+        long end = Math.min(block + Math.min(count, depth) - 1, lastBlock);
+        for (long b = Math.max(0, block); b <= end; b++)
+        {
+            if (findSlot(b) < 0 && !cached.test(b))
+                issue(b);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Hands a prefetched block to a buffer, waiting for the read if it is
+     * still going.
+     *
+     * @param block
+     *            the block the pool missed
+     * @param into
+     *            buffer to load the block into
+     * @return true if the block was prefetched and is now in the buffer
+     */
+    public boolean take(long block, Buffer into)
+    {
+        int slot = findSlot(block);
+        if (slot < 0)
+            return false;
+
+        int read = await(slot);
+        slotBlocks[slot] = NO_BLOCK;
+        if (read < 0)
+            return false; // the read failed, the pool reads it again
+
+        ByteBuffer data = slotData[slot];
+        data.flip();
+        into.load(data, block * blockSize);
+        stats.setPrefetchHits(stats.getPrefetchHits() + 1);
+        return true;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Forgets a block if it is staged, so stale data is never handed out.
+     *
+     * @param block
+     *            the block
+     */
+    public void discard(long block)
+    {
+        int slot = findSlot(block);
+        if (slot >= 0)
+            drop(slot);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Waits for reads under way and closes the channel. Blocks that were
+     * read but never used count as wasted.
+     *
+     * @throws IOException
+     *             if the channel cannot be closed
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        discardAll();
+        channel.close();
+    }
+
+
+    /*
+     * Starts reading a block into the next staging slot.
+     */
+    private void issue(long block)
+    {
+        int slot = nextSlot;
+        nextSlot = (nextSlot + 1) % slotBlocks.length;
+        if (slotBlocks[slot] != NO_BLOCK)
+            drop(slot);
+
+        ByteBuffer data = slotData[slot];
+        data.clear();
+        slotBlocks[slot] = block;
+        slotReads[slot] = channel.read(data, block * blockSize);
+        stats.setPrefetches(stats.getPrefetches() + 1);
+    }
+
+
+    /*
+     * Gives up a staged block that was never used.
+     */
+    private void drop(int slot)
+    {
+        await(slot); // the channel may still be writing into the buffer
+        slotBlocks[slot] = NO_BLOCK;
+        stats.setPrefetchWasted(stats.getPrefetchWasted() + 1);
+    }
+
+
+    private void discardAll()
+    {
+        for (int i = 0; i < slotBlocks.length; i++)
+        {
+            if (slotBlocks[i] != NO_BLOCK)
+                drop(i);
+        }
+    }
+
+
+    /*
+     * Waits for a slot's read to fill its buffer or reach the end of the
+     * file, asking again for whatever a short read left out. Returns the
+     * bytes read, or -1 if a read failed.
+     */
+    private int await(int slot)
+    {
+        ByteBuffer data = slotData[slot];
+        long start = slotBlocks[slot] * blockSize;
+        boolean interrupted = false;
+        try
+        {
+            while (true)
+            {
+                try
+                {
+                    int read = slotReads[slot].get();
+                    if (read < 0 || !data.hasRemaining()
+                        || start + data.position() >= fileLength)
+                        return data.position();
+                    slotReads[slot] =
+                        channel.read(data, start + data.position());
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    return -1;
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private int findSlot(long block)
+    {
+        for (int i = 0; i < slotBlocks.length; i++)
+        {
+            if (slotBlocks[i] == block)
+                return i;
+        }
+        return -1;
+    }
+
+
+    /*
+     * Finds the pattern a record continues: the records one stride and two
+     * strides before it were both touched recently. Returns the stride in
+     * blocks, negative going down, or 0 if there is no pattern.
+     */
+    private int findStride(long offset)
+    {
+        if (wasTouched(offset, Record.SIZE_IN_BYTES))
+            return 1;
+        if (wasTouched(offset, -Record.SIZE_IN_BYTES))
+            return -1;
+
+        for (int s = 1; s <= MAX_STRIDE; s++)
+        {
+            long step = (long)s * blockSize;
+            if (wasTouched(offset, step))
+                return s;
+            if (wasTouched(offset, -step))
+                return -s;
+        }
+        return 0;
+    }
+
+
+    /*
+     * Checks that the records one and two steps before the offset were
+     * touched recently.
+     */
+    private boolean wasTouched(long offset, long step)
+    {
+        long first = offset - 2 * step;
+        return first >= 0
+            && recentCounts.get(offset - step) != BlockIndex.NONE
+            && recentCounts.get(first) != BlockIndex.NONE;
+    }
+}
@@ -134,6 +134,52 @@ public class Record
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Packs a key and value into one int laid out like the record's bytes:
+     * the key in the high half and the value in the low half. Packed records
+     * are what the range methods of a RecordBufferPool move.
+     *
+     * @param key
+     *            the key
+     * @param val
+     *            the value
+     * @return the packed record
+     */
+    public static int pack(int key, int val)
+    {
+        return (key << 16) | (val & 0xFFFF);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the key of a packed record.
+     *
+     * @param packed
+     *            the packed record
+     * @return the key
+     */
+    public static short packedKey(int packed)
+    {
+        return (short)(packed >> 16);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the value of a packed record.
+     *
+     * @param packed
+     *            the packed record
+     * @return the value
+     */
+    public static short packedValue(int packed)
+    {
+        return (short)packed;
+    }
+
+
     // ----------------------------------------------------------
     /**
      * Copies the contents of another record. This is a DEEP copy.
@@ -0,0 +1,131 @@
+package com.github.a_zaheer.external_sorter;
+import java.nio.ByteBuffer;
+
+// -------------------------------------------------------------------------
+/**
+ * A buffer pool of records that can also move runs of records at once.
+ * getElem() and setElem() look a block up, reorder the eviction policy and
+ * make a Record for every single record; the range methods do that once per
+ * block and copy the records in bulk, which suits scans and merges. keyAt(),
+ * compareAt() and swapAt() work on single records without making Records,
+ * for sorts.
+ * <p>
+ * Records in int arrays are packed as by Record.pack(). Records in a
+ * ByteBuffer are in the file's format, four bytes each. A range has to lie
+ * within the file.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public interface RecordBufferPool
+    extends BufferPool<Record>
+{
+    // ----------------------------------------------------------
+    /**
+     * Gets the key of the record at a position.
+     *
+     * @param pos
+     *            the position in the virtual array
+     * @return the key
+     */
+    public short keyAt(long pos);
+
+
+    // ----------------------------------------------------------
+    /**
+     * Compares the keys of the records at two positions.
+     *
+     * @param a
+     *            the first record's position
+     * @param b
+     *            the second record's position
+     * @return negative if a's key is less than b's, positive if greater, and
+     *         zero if equal
+     */
+    public int compareAt(long a, long b);
+
+
+    // ----------------------------------------------------------
+    /**
+     * Swaps the records at two positions as packed ints.
+     *
+     * @param a
+     *            the first record's position
+     * @param b
+     *            the second record's position
+     */
+    public void swapAt(long a, long b);
+
+
+    // ----------------------------------------------------------
+    /**
+     * Copies records from the file into an array.
+     *
+     * @param pos
+     *            first record's position in the virtual array
+     * @param dst
+     *            destination array
+     * @param off
+     *            index in dst of the first record
+     * @param count
+     *            number of records
+     */
+    public void readRange(long pos, int[] dst, int off, int count);
+
+
+    // ----------------------------------------------------------
+    /**
+     * Copies records from the file into a ByteBuffer, as many as fit in its
+     * remaining bytes. The ByteBuffer's position advances past them.
+     *
+     * @param pos
+     *            first record's position in the virtual array
+     * @param dst
+     *            destination
+     */
+    public void readRange(long pos, ByteBuffer dst);
+
+
+    // ----------------------------------------------------------
+    /**
+     * Copies records from an array into the file.
+     *
+     * @param pos
+     *            first record's position in the virtual array
+     * @param src
+     *            source array
+     * @param off
+     *            index in src of the first record
+     * @param count
+     *            number of records
+     */
+    public void writeRange(long pos, int[] src, int off, int count);
+
+
+    // ----------------------------------------------------------
+    /**
+     * Copies the records remaining in a ByteBuffer into the file. The
+     * ByteBuffer's position advances past them.
+     *
+     * @param pos
+     *            first record's position in the virtual array
+     * @param src
+     *            source
+     */
+    public void writeRange(long pos, ByteBuffer src);
+
+
+    // ----------------------------------------------------------
+    /**
+     * Copies a run of records to another place in the file. The runs may
+     * overlap; the result is as if the source was copied out first.
+     *
+     * @param from
+     *            first source record's position
+     * @param to
+     *            first destination record's position
+     * @param count
+     *            number of records
+     */
+    public void copyRange(long from, long to, long count);
+}
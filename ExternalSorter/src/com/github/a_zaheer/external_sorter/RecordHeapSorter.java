@@ -0,0 +1,58 @@
+package com.github.a_zaheer.external_sorter;
+// -------------------------------------------------------------------------
+/**
+ * HeapSorter for records. Sorts a RecordBufferPool with a RecordMaxHeap,
+ * which compares and swaps records in place instead of making a Record for
+ * every access.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class RecordHeapSorter
+{
+    // ~ Fields ................................................................
+    private RecordMaxHeap    h;
+    private RecordBufferPool bp;
+    private long             size;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Creates a RecordHeapSorter and associated max heap. Uses the buffer
+     * pool as the source "array".
+     *
+     * @param bp
+     *            source "array"
+     * @param s
+     *            size of the buffer pool
+     */
+    public RecordHeapSorter(RecordBufferPool bp, long s)
+    {
+        size = s;
+        this.bp = bp;
+
+        h = new RecordMaxHeap(bp, size);
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Sorts the buffer pool "array" in place using heap sort.
+     */
+    public void sort()
+    {
+        // The heap constructor invokes the buildHeap method
+        long hinted = size; // the tail from here on was hinted
+        for (long i = 0; i < size; i++)
+        {  // Now sort
+            h.removeMax(); // Remove Max places max at end of heap
+            if ((i + 1) % HeapSorter.TAIL_STEP == 0)
+            {
+                long n = size - i - 1; // the rest is final
+                bp.dontNeed(n, hinted - n);
+                hinted = n;
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.a_zaheer.external_sorter;
+// -------------------------------------------------------------------------
+/**
+ * MaxHeap specialized for records. It compares and swaps records in place
+ * with the pool's compareAt() and swapAt(), so sifting never makes a Record
+ * or goes through Comparable. The shape of the heap and the order of
+ * accesses are the same as MaxHeap's.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+final class RecordMaxHeap
+{
+    private final RecordBufferPool heap; // acts like an array
+    private long                   n;    // Number of things currently in heap
+    private long                   top = -1; // records pinned at the root
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new RecordMaxHeap object from a pre-loaded buffer pool.
+     *
+     * @param bp
+     *            source buffer pool
+     * @param heapSize
+     *            number of records
+     */
+    RecordMaxHeap(RecordBufferPool bp, long heapSize)
+    {
+        heap = bp;
+        n = heapSize;
+        buildHeap();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Return current size of the heap
+     *
+     * @return the size
+     */
+    public long heapSize()
+    {
+        return n;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Return true if pos is a leaf position, false otherwise
+     *
+     * @param pos
+     *            specified position
+     * @return boolean
+     */
+    public boolean isLeaf(long pos)
+    {
+        return (n / 2 <= pos) && (pos < n);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Remove the maximum record, which is moved to the end of the heap.
+     *
+     * @return the maximum key
+     */
+    public short removeMax()
+    {
+        if (n <= 0)
+            throw new IllegalStateException("Heap is empty");
+        if (top < 0)
+        {
+            top = Math.min(n, MaxHeap.PINNED_TOP);
+            heap.pin(0, top);
+        }
+        n--;
+        if (n > 0)
+        {
+            heap.swapAt(0, n); // Swap maximum with last value
+            siftDown(0); // Put new heap root val in correct place
+        }
+        if (n <= top && top > 0)
+        {
+            heap.unpin(0, top); // the rest of the heap is in those blocks
+            top = 0;
+        }
+        return heap.keyAt(n);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Organize contents of array to satisfy the heap structure
+     */
+    private void buildHeap()
+    {
+        for (long i = MaxHeap.parent(n - 1); i >= 0; i--)
+        {
+            siftDown(i);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Moves a record down to its correct place
+     */
+    private void siftDown(long pos)
+    {
+        long curr = pos;
+        while (!isLeaf(curr))
+        {
+            long child = MaxHeap.leftChild(curr);
+            if ((child + 1 < n) && heap.compareAt(child + 1, child) > 0)
+            {
+                child = child + 1; // child is now index with the larger value
+            }
+            if (heap.compareAt(child, curr) <= 0)
+            {
+                return; // stop early
+            }
+            heap.swapAt(curr, child);
+            curr = child; // keep sifting down
+        }
+    }
+}
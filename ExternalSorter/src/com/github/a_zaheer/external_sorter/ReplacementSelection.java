@@ -0,0 +1,285 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+
+// -------------------------------------------------------------------------
+/**
+ * Makes sorted runs by replacement selection, the snowplow algorithm. A
+ * heap of records is filled from the file, and the smallest record is
+ * written out and replaced by the next one read. A record smaller than the
+ * one just written cannot join the current run, so it is marked for the
+ * next run and sinks below every record of this one. When only marked
+ * records are left, the run ends and they become the next run. On random
+ * input the runs are about twice as long as the heap; on nearly sorted
+ * input there may be only one.
+ * <p>
+ * The heap keeps each record as its packed int plus one bit for the run it
+ * belongs to, so it holds nearly as many records as a chunk of the same
+ * memory, and sifts them as ints like RecordMaxHeap, without boxing.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class ReplacementSelection
+{
+    // ~ Fields ................................................................
+    private final FileChannel file;
+    private final int         capacity;
+    private final int         blockSize;
+    private final IOStats     stats;
+    private final RunStats    runStats;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new ReplacementSelection object. The caller keeps ownership
+     * of the channel.
+     *
+     * @param file
+     *            the file to make runs of
+     * @param capacity
+     *            records in the heap
+     * @param blockSize
+     *            bytes per read or write
+     * @param stats
+     *            IO statistics log
+     * @param runStats
+     *            where the run lengths are kept
+     */
+    public ReplacementSelection(
+        FileChannel file,
+        int capacity,
+        int blockSize,
+        IOStats stats,
+        RunStats runStats)
+    {
+        if (capacity < 1)
+            throw new IllegalArgumentException(
+                "Heap must hold at least one record");
+
+        this.file = file;
+        this.capacity = capacity;
+        this.blockSize = blockSize;
+        this.stats = stats;
+        this.runStats = runStats;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Reads the file's first bytes and writes them as sorted runs, one after
+     * another, from the start of another file.
+     *
+     * @param runs
+     *            where the runs go
+     * @param length
+     *            bytes of the file to read, a whole number of records
+     * @return the byte offsets where the runs start, and the end
+     * @throws IOException
+     *             if either file cannot be read or written
+     */
+    public long[] makeRuns(FileChannel runs, long length)
+        throws IOException
+    {
+        RunReader in = new RunReader(file, 0, length, blockSize, stats);
+        RunHeap heap = new RunHeap(capacity);
+        while (heap.size() < capacity && !in.isDone())
+        {
+            heap.add(in.current());
+            in.advance();
+        }
+        heap.build();
+
+        RunWriter out = new RunWriter(runs, 0, blockSize, stats);
+        long[] bounds = new long[16];
+        int count = 0;
+        long runStart = 0;
+        while (heap.size() > 0)
+        {
+            if (heap.isNextRun(0))
+            {
+                // every record left is for the next run
+                bounds = addBound(bounds, count++, runStart);
+                runStats.add((out.getPosition() - runStart)
+                    / Record.SIZE_IN_BYTES);
+                runStart = out.getPosition();
+                heap.nextRun();
+            }
+
+            int smallest = heap.first();
+            out.write(smallest);
+            if (in.isDone())
+                heap.removeFirst();
+            else
+            {
+                int next = in.current();
+                in.advance();
+                heap.replaceFirst(next, next < smallest);
+            }
+        }
+        out.flush();
+
+        if (out.getPosition() > runStart)
+        {
+            bounds = addBound(bounds, count++, runStart);
+            runStats.add((out.getPosition() - runStart)
+                / Record.SIZE_IN_BYTES);
+        }
+        bounds = addBound(bounds, count, out.getPosition());
+        return Arrays.copyOf(bounds, count + 1);
+    }
+
+
+    /*
+     * Sets a bound, growing the array if it is full.
+     */
+    private static long[] addBound(long[] bounds, int index, long bound)
+    {
+        long[] grown = bounds;
+        if (index == bounds.length)
+            grown = Arrays.copyOf(bounds, 2 * bounds.length);
+        grown[index] = bound;
+        return grown;
+    }
+
+
+    // -------------------------------------------------------------------------
+    /**
+     * A heap of packed records with a bit for the run each is in. Records of
+     * the current run come before those of the next, then by packed record,
+     * and the first of them is at the root.
+     */
+    private static class RunHeap
+    {
+        private final int[]  recs;
+        private final BitSet parities; // run number mod 2 of each record
+        private boolean      parity;   // of the current run
+        private int          n;        // records in the heap
+
+        RunHeap(int capacity)
+        {
+            recs = new int[capacity];
+            parities = new BitSet(capacity);
+        }
+
+
+        /*
+         * Gets the number of records in the heap.
+         */
+        int size()
+        {
+            return n;
+        }
+
+
+        /*
+         * Adds a record of the current run before build().
+         */
+        void add(int packed)
+        {
+            recs[n] = packed;
+            parities.set(n, parity);
+            n++;
+        }
+
+
+        /*
+         * Orders the added records into a heap.
+         */
+        void build()
+        {
+            for (int pos = n / 2 - 1; pos >= 0; pos--)
+                siftDown(pos, recs[pos], parities.get(pos));
+        }
+
+
+        /*
+         * Gets the first record.
+         */
+        int first()
+        {
+            return recs[0];
+        }
+
+
+        /*
+         * Tells if the record at a position is for the next run.
+         */
+        boolean isNextRun(int pos)
+        {
+            return parities.get(pos) != parity;
+        }
+
+
+        /*
+         * Makes the next run the current one.
+         */
+        void nextRun()
+        {
+            parity = !parity;
+        }
+
+
+        /*
+         * Puts a record in place of the first, in one sift down.
+         */
+        void replaceFirst(int packed, boolean nextRun)
+        {
+            siftDown(0, packed, parity ^ nextRun);
+        }
+
+
+        /*
+         * Removes the first record.
+         */
+        void removeFirst()
+        {
+            n--;
+            if (n > 0)
+                siftDown(0, recs[n], parities.get(n));
+        }
+
+
+        /*
+         * Moves a record down from a position, pulling up the children that
+         * come before it, until it finds its place.
+         */
+        private void siftDown(int pos, int packed, boolean bit)
+        {
+            boolean next = bit != parity;
+            int hole = pos;
+            while (2 * hole + 1 < n)
+            {
+                int child = 2 * hole + 1;
+                if (child + 1 < n && before(child + 1, child))
+                    child++;
+                boolean childNext = isNextRun(child);
+                if (childNext != next ? next : recs[child] < packed)
+                {
+                    recs[hole] = recs[child];
+                    parities.set(hole, parities.get(child));
+                    hole = child;
+                }
+                else
+                    break;
+            }
+            recs[hole] = packed;
+            parities.set(hole, bit);
+        }
+
+
+        /*
+         * Tells if the record at i comes before the one at j.
+         */
+        private boolean before(int i, int j)
+        {
+            boolean nextI = isNextRun(i);
+            if (nextI != isNextRun(j))
+                return !nextI;
+            return recs[i] < recs[j];
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+// -------------------------------------------------------------------------
+/**
+ * Reads the packed records of one sorted run, a byte range of a file, from
+ * front to back. The run is read a window at a time with positional calls,
+ * each of which counts as one read in the IOStats. The current record is
+ * kept apart from the window, so a merge can look at it without a call into
+ * the file.
+ * <p>
+ * On an AsynchronousFileChannel the run is double buffered: the next window
+ * is read in the background while the current one is used, so a merge only
+ * waits on the disk when it uses up a window faster than the next is read.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class RunReader
+{
+    // ~ Fields ................................................................
+    private final FileChannel             channel; // null if double buffered
+    private final AsynchronousFileChannel async;   // null if not
+    private ByteBuffer                    window;
+    private ByteBuffer                    ahead;   // read in the background
+    private Future<Integer>               pending; // the read into ahead
+    private long                          aheadPos; // next byte of it
+    private final IOStats                 stats;
+    private long                          position; // next byte to ask for
+    private final long                    end;
+    private int                           current;
+    private boolean                       done;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new RunReader object and reads the run's first record. The
+     * caller keeps ownership of the channel.
+     *
+     * @param channel
+     *            the file
+     * @param start
+     *            byte offset of the run's first record
+     * @param end
+     *            byte offset just past the run's last record
+     * @param windowBytes
+     *            bytes read per call, at least one record
+     * @param stats
+     *            IO statistics log
+     * @throws IOException
+     *             if the run cannot be read
+     */
+    public RunReader(
+        FileChannel channel,
+        long start,
+        long end,
+        int windowBytes,
+        IOStats stats)
+        throws IOException
+    {
+        this(channel, null, start, end, windowBytes, stats);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new RunReader object that reads each window ahead of its use,
+     * so it holds two of them, and reads the run's first record. The caller
+     * keeps ownership of the channel.
+     *
+     * @param channel
+     *            the file
+     * @param start
+     *            byte offset of the run's first record
+     * @param end
+     *            byte offset just past the run's last record
+     * @param windowBytes
+     *            bytes read per call, at least one record
+     * @param stats
+     *            IO statistics log
+     * @throws IOException
+     *             if the run cannot be read
+     */
+    public RunReader(
+        AsynchronousFileChannel channel,
+        long start,
+        long end,
+        int windowBytes,
+        IOStats stats)
+        throws IOException
+    {
+        this(null, channel, start, end, windowBytes, stats);
+    }
+
+
+    /*
+     * Reads from whichever of the two channels is given.
+     */
+    private RunReader(
+        FileChannel channel,
+        AsynchronousFileChannel async,
+        long start,
+        long end,
+        int windowBytes,
+        IOStats stats)
+        throws IOException
+    {
+        if (windowBytes < Record.SIZE_IN_BYTES)
+            throw new IllegalArgumentException(
+                "Window must hold at least one record");
+        if (start < 0 || end < start
+            || (end - start) % Record.SIZE_IN_BYTES != 0)
+            throw new IllegalArgumentException(
+                "Run must be a whole number of records");
+
+        this.channel = channel;
+        this.async = async;
+        this.stats = stats;
+        this.end = end;
+        position = start;
+        int size = windowBytes - windowBytes % Record.SIZE_IN_BYTES;
+        window = ByteBuffer.allocateDirect(size);
+        window.flip(); // empty until the first fill
+        if (async != null && start < end)
+        {
+            ahead = ByteBuffer.allocateDirect(size);
+            startAhead();
+        }
+        advance();
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Tells if every record of the run was passed.
+     *
+     * @return true if there is no current record
+     */
+    public boolean isDone()
+    {
+        return done;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the current record.
+     *
+     * @return the record, packed as by Record.pack()
+     */
+    public int current()
+    {
+        if (done)
+            throw new IllegalStateException("Run is done");
+        return current;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Moves on to the next record, reading the next window when this one is
+     * used up.
+     *
+     * @throws IOException
+     *             if the run cannot be read
+     */
+    public void advance()
+        throws IOException
+    {
+        if (!window.hasRemaining())
+        {
+            if (position == end && pending == null)
+            {
+                done = true;
+                return;
+            }
+            fill();
+        }
+        current = window.getInt();
+    }
+
+
+    /*
+     * Reads the next window of the run.
+     */
+    private void fill()
+        throws IOException
+    {
+        if (async != null)
+        {
+            finishAhead();
+            ByteBuffer temp = window;
+            window = ahead;
+            ahead = temp;
+            window.flip();
+            stats.setReads(stats.getReads() + 1);
+            if (position < end)
+                startAhead();
+            return;
+        }
+
+        window.clear();
+        if (end - position < window.capacity())
+            window.limit((int)(end - position));
+        while (window.hasRemaining())
+        {
+            int read = channel.read(window, position);
+            if (read < 0)
+                throw new EOFException("Run ends past the file");
+            position += read;
+        }
+        window.flip();
+        stats.setReads(stats.getReads() + 1);
+    }
+
+
+    /*
+     * Starts reading the next window of the run in the background.
+     */
+    private void startAhead()
+    {
+        ahead.clear();
+        if (end - position < ahead.capacity())
+            ahead.limit((int)(end - position));
+        aheadPos = position;
+        position += ahead.remaining();
+        pending = async.read(ahead, aheadPos);
+    }
+
+
+    /*
+     * Waits for the background read to fill its window, asking again for
+     * whatever a short read left out.
+     */
+    private void finishAhead()
+        throws IOException
+    {
+        boolean interrupted = false;
+        try
+        {
+            while (pending != null)
+            {
+                try
+                {
+                    int read = pending.get();
+                    if (read < 0)
+                        throw new EOFException("Run ends past the file");
+                    aheadPos += read;
+                    pending = ahead.hasRemaining()
+                        ? async.read(ahead, aheadPos)
+                        : null;
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    pending = null;
+                    throw new IOException(
+                        "Background read failed",
+                        e.getCause());
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+}
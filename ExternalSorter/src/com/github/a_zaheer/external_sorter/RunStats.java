@@ -0,0 +1,185 @@
+package com.github.a_zaheer.external_sorter;
+import java.util.Arrays;
+
+// -------------------------------------------------------------------------
+/**
+ * Keeps the lengths of the sorted runs an external sort makes, measured
+ * against the records its run generation holds in memory. Sorting a chunk
+ * at a time makes runs of one memory each; replacement selection makes runs
+ * of about two on random input and far longer ones on nearly sorted input.
+ * The distribution is kept in buckets of half a memory, the last of which
+ * holds every run of three and a half memories or more.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class RunStats
+{
+    // ~ Fields ................................................................
+    private final long   memoryRecords;
+    private final long[] buckets;
+    private long         count;
+    private long         total;
+    private long         shortest;
+    private long         longest;
+
+    /**
+     * Number of buckets in the distribution.
+     */
+    public static final int BUCKETS = 8;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new RunStats object.
+     *
+     * @param memoryRecords
+     *            records the run generation holds in memory
+     */
+    public RunStats(long memoryRecords)
+    {
+        if (memoryRecords < 1)
+            throw new IllegalArgumentException(
+                "Memory must hold at least one record");
+
+        this.memoryRecords = memoryRecords;
+        buckets = new long[BUCKETS];
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Adds a run.
+     *
+     * @param records
+     *            length of the run in records
+     */
+    public void add(long records)
+    {
+        if (count == 0 || records < shortest)
+            shortest = records;
+        if (records > longest)
+            longest = records;
+        count++;
+        total += records;
+        buckets[(int)Math.min(BUCKETS - 1, 2 * records / memoryRecords)]++;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Getter
+     *
+     * @return records held in memory
+     */
+    public long getMemoryRecords()
+    {
+        return memoryRecords;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Getter
+     *
+     * @return number of runs
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Getter
+     *
+     * @return records in all the runs
+     */
+    public long getTotal()
+    {
+        return total;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Getter
+     *
+     * @return length of the shortest run, 0 without runs
+     */
+    public long getShortest()
+    {
+        return shortest;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Getter
+     *
+     * @return length of the longest run, 0 without runs
+     */
+    public long getLongest()
+    {
+        return longest;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the mean run length in memories.
+     *
+     * @return mean length over the records held in memory, 0 without runs
+     */
+    public double getMeanRatio()
+    {
+        if (count == 0)
+            return 0;
+        return (double)total / count / memoryRecords;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the distribution of run lengths. Bucket i counts the runs of at
+     * least i / 2 and less than (i + 1) / 2 memories, except the last which
+     * has no upper bound.
+     *
+     * @return a copy of the buckets
+     */
+    public long[] getBuckets()
+    {
+        return Arrays.copyOf(buckets, BUCKETS);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Describes the distribution, one non-empty bucket after another, as in
+     * "[1.5, 2.0): 3 [2.0, 2.5): 5" with bounds in memories.
+     *
+     * @return the description
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            if (buckets[i] == 0)
+                continue;
+            if (builder.length() > 0)
+                builder.append(' ');
+            builder.append('[');
+            builder.append(i / 2.0);
+            builder.append(", ");
+            builder.append(i < BUCKETS - 1 ? String.valueOf((i + 1) / 2.0)
+                : "inf");
+            builder.append("): ");
+            builder.append(buckets[i]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// -------------------------------------------------------------------------
+/**
+ * Writes packed records one after another into a file, from a starting byte
+ * offset on. Records are gathered in a direct window and written with one
+ * positional call each time it fills, so the file is written strictly in
+ * order. Each of those calls counts as one write in the IOStats.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class RunWriter
+{
+    // ~ Fields ................................................................
+    private final FileChannel channel;
+    private final ByteBuffer  window;
+    private final IOStats     stats;
+    private long              position; // where the window goes
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new RunWriter object. The caller keeps ownership of the
+     * channel.
+     *
+     * @param channel
+     *            the file
+     * @param start
+     *            byte offset of the first record
+     * @param windowBytes
+     *            bytes gathered per write, at least one record
+     * @param stats
+     *            IO statistics log
+     */
+    public RunWriter(
+        FileChannel channel,
+        long start,
+        int windowBytes,
+        IOStats stats)
+    {
+        if (windowBytes < Record.SIZE_IN_BYTES)
+            throw new IllegalArgumentException(
+                "Window must hold at least one record");
+
+        this.channel = channel;
+        this.stats = stats;
+        position = start;
+        window = ByteBuffer.allocateDirect(
+            windowBytes - windowBytes % Record.SIZE_IN_BYTES);
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Appends a record.
+     *
+     * @param packed
+     *            the record, packed as by Record.pack()
+     * @throws IOException
+     *             if the window cannot be written
+     */
+    public void write(int packed)
+        throws IOException
+    {
+        if (!window.hasRemaining())
+            flush();
+        window.putInt(packed);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Appends records from an array.
+     *
+     * @param recs
+     *            packed records
+     * @param off
+     *            index of the first record
+     * @param count
+     *            number of records
+     * @throws IOException
+     *             if the window cannot be written
+     */
+    public void write(int[] recs, int off, int count)
+        throws IOException
+    {
+        for (int i = off; i < off + count; i++)
+        {
+            if (!window.hasRemaining())
+                flush();
+            window.putInt(recs[i]);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Writes the records gathered so far.
+     *
+     * @throws IOException
+     *             if they cannot be written
+     */
+    public void flush()
+        throws IOException
+    {
+        window.flip();
+        int bytes = window.remaining();
+        while (window.hasRemaining())
+            position += channel.write(window, position);
+        window.clear();
+        if (bytes > 0)
+        {
+            stats.setWrites(stats.getWrites() + 1);
+            stats.setBytesWritten(stats.getBytesWritten() + bytes);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the byte offset just past the last record appended, written or
+     * not.
+     *
+     * @return end offset
+     */
+    public long getPosition()
+    {
+        return position + window.position();
+    }
+}
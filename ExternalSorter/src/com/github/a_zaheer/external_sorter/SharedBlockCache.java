@@ -0,0 +1,704 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+// -------------------------------------------------------------------------
+/**
+ * One cache of blocks that several files share, so sorts running in the same
+ * JVM draw on one memory budget instead of each keeping buffers of its own.
+ * open() hands out a RecordBufferPool for a file; its blocks are kept under a
+ * key made of the file's id and the block number, and each file keeps its
+ * own LRU order of the frames it holds.
+ * <p>
+ * Every file has a soft quota: its weight's share of the frames, split among
+ * the files used in the last IDLE_PER_FRAME accesses per frame. A file that
+ * has been idle longer has no quota. When a miss finds no free frame, the
+ * file furthest over its quota gives up its least recently used frame, the
+ * missing file itself on a tie. A busy file can so take the frames of idle
+ * ones, and a file under its quota takes frames back from one over it.
+ * <p>
+ * The cache and its pools are thread-safe: every access holds the cache's
+ * lock, I/O included. A range is copied a block at a time, so other threads
+ * can see a range half written. The statistics of all files go to one
+ * IOStats.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class SharedBlockCache
+{
+    // ~ Fields ................................................................
+    private final Buffer[]         buffers;
+    private final int[]            owners;    // frame -> file id
+    private final BlockIndex       index;     // file id and block -> frame
+    private final int[]            freeFrames; // frames not holding a block
+    private int                    freeCount;
+    private final int              blockSize;
+    private final IOStats          stats;
+    private final List<SharedFile> files;
+    private long                   tick;
+
+    /**
+     * Accesses per frame a file may go without one before it counts as idle
+     * and loses its quota.
+     */
+    public static final int        IDLE_PER_FRAME = 8;
+
+    /**
+     * Bits of the block number in a key; the file id is above them.
+     */
+    public static final int        BLOCK_BITS     = 40;
+
+    private static final int       NO_FILE        = -1;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new SharedBlockCache object with the default block size.
+     *
+     * @param frames
+     *            number of buffers shared by all files
+     * @param stats
+     *            IO statistics log
+     */
+    public SharedBlockCache(int frames, IOStats stats)
+    {
+        this(frames, Buffer.BUFFER_CAPACITY, stats);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new SharedBlockCache object. Buffers are made the first time
+     * a frame is used.
+     *
+     * @param frames
+     *            number of buffers shared by all files
+     * @param blockSize
+     *            bytes per block, a multiple of the record size from
+     *            Buffer.BUFFER_CAPACITY to Buffer.MAX_CAPACITY
+     * @param stats
+     *            IO statistics log
+     */
+    public SharedBlockCache(int frames, int blockSize, IOStats stats)
+    {
+        Buffer.checkCapacity(blockSize);
+        if (frames < 1)
+            throw new IllegalArgumentException(
+                "Number of frames must be positive");
+
+        this.blockSize = blockSize;
+        this.stats = stats;
+        buffers = new Buffer[frames];
+        owners = new int[frames];
+        index = new BlockIndex(frames);
+        freeFrames = new int[frames];
+        files = new ArrayList<SharedFile>();
+
+        freeCount = frames;
+        for (int i = 0; i < frames; i++)
+        {
+            freeFrames[i] = frames - 1 - i;
+            owners[i] = NO_FILE;
+        }
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Starts caching a file. The caller keeps ownership of the channel and
+     * closes it after close() of the pool.
+     *
+     * @param channel
+     *            the file
+     * @param weight
+     *            the file's share of the frames relative to the others
+     * @return a buffer pool on the file that uses the shared frames
+     */
+    public synchronized RecordBufferPool open(FileChannel channel, int weight)
+    {
+        if (weight < 1)
+            throw new IllegalArgumentException("Weight must be positive");
+
+        int id = 0;
+        while (findFile(id) != null)
+            id++;
+        SharedFile file = new SharedFile(id, channel, weight);
+        file.lastUse = tick;
+        files.add(file);
+        return file;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Writes back the blocks of a file and gives its frames and its quota to
+     * the other files. The pool cannot be used afterwards.
+     *
+     * @param pool
+     *            a pool from open()
+     */
+    public synchronized void close(RecordBufferPool pool)
+    {
+        SharedFile file = checkPool(pool);
+        file.release();
+        file.closed = true;
+        files.remove(file);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of frames a file may keep before the others take them,
+     * as of now.
+     *
+     * @param pool
+     *            a pool from open()
+     * @return the file's soft quota, 0 if it is idle
+     */
+    public synchronized int getQuota(RecordBufferPool pool)
+    {
+        return quotaOf(checkPool(pool), activeWeight());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of frames holding blocks of a file.
+     *
+     * @param pool
+     *            a pool from open()
+     * @return frames the file holds
+     */
+    public synchronized int getResident(RecordBufferPool pool)
+    {
+        return checkPool(pool).lru.length();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of frames shared by all files.
+     *
+     * @return number of frames
+     */
+    public int getFrames()
+    {
+        return buffers.length;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of bytes per block.
+     *
+     * @return block size
+     */
+    public int getBlockSize()
+    {
+        return blockSize;
+    }
+
+
+    /*
+     * Finds the frame holding a block of a file, reading it into a free frame
+     * or one given up by the file furthest over its quota.
+     */
+    private Buffer buffer(SharedFile file, long block)
+    {
+        if (file.closed)
+            throw new IllegalStateException("Pool was closed");
+        file.lastUse = ++tick;
+
+        long key = keyOf(file.id, block);
+        int frame = index.get(key);
+        if (frame != BlockIndex.NONE)
+        {
+            stats.setHits(stats.getHits() + 1);
+            file.lru.moveToFront(frame);
+            return buffers[frame];
+        }
+        stats.setMisses(stats.getMisses() + 1);
+
+        if (freeCount == 0)
+        {
+            SharedFile victim = pickVictim(file);
+            drop(victim, victim.lru.last());
+        }
+        frame = freeFrames[--freeCount];
+
+        Buffer buff = buffers[frame];
+        if (buff == null)
+        {
+            buff = new Buffer(blockSize, true);
+            buffers[frame] = buff;
+        }
+        try
+        {
+            buff.fill(file.channel, block * blockSize);
+        }
+        catch (IOException e)
+        {
+            freeFrames[freeCount++] = frame;
+            throw handleIOE(e);
+        }
+        stats.setReads(stats.getReads() + 1);
+        index.put(key, frame);
+        owners[frame] = file.id;
+        file.lru.addFirst(frame);
+        return buff;
+    }
+
+
+    /*
+     * Picks the file furthest over its quota that holds a frame, preferring
+     * the missing file on a tie.
+     */
+    private SharedFile pickVictim(SharedFile missing)
+    {
+        long weight = activeWeight();
+        SharedFile victim = null;
+        long most = Long.MIN_VALUE;
+        for (SharedFile file : files)
+        {
+            if (file.lru.isEmpty())
+                continue;
+            long excess = file.lru.length() - quotaOf(file, weight);
+            if (excess > most || (excess == most && file == missing))
+            {
+                victim = file;
+                most = excess;
+            }
+        }
+        return victim;
+    }
+
+
+    /*
+     * Writes back the block in a frame of a file and frees the frame.
+     */
+    private void drop(SharedFile file, int frame)
+    {
+        Buffer buff = buffers[frame];
+        long block = buff.getOffset() / blockSize;
+        try
+        {
+            int bytes = buff.dirtyBytes();
+            if (buff.flush(file.channel))
+            {
+                stats.setWrites(stats.getWrites() + 1);
+                stats.setBytesWritten(stats.getBytesWritten() + bytes);
+            }
+        }
+        catch (IOException e)
+        {
+            throw handleIOE(e); // the frame still holds its dirty block
+        }
+        index.remove(keyOf(file.id, block));
+        file.lru.remove(frame);
+        owners[frame] = NO_FILE;
+        freeFrames[freeCount++] = frame;
+    }
+
+
+    private long activeWeight()
+    {
+        long weight = 0;
+        for (SharedFile file : files)
+        {
+            if (isActive(file))
+                weight += file.weight;
+        }
+        return weight;
+    }
+
+
+    private int quotaOf(SharedFile file, long activeWeight)
+    {
+        if (!isActive(file))
+            return 0;
+        return (int)(buffers.length * (long)file.weight / activeWeight);
+    }
+
+
+    private boolean isActive(SharedFile file)
+    {
+        return tick - file.lastUse <= (long)IDLE_PER_FRAME * buffers.length;
+    }
+
+
+    private SharedFile findFile(int id)
+    {
+        for (SharedFile file : files)
+        {
+            if (file.id == id)
+                return file;
+        }
+        return null;
+    }
+
+
+    private SharedFile checkPool(RecordBufferPool pool)
+    {
+        for (SharedFile file : files)
+        {
+            if (file == pool)
+                return file;
+        }
+        throw new IllegalArgumentException(
+            "Pool does not belong to the cache");
+    }
+
+
+    /*
+     * Makes the key of a block of a file. Files have fewer than
+     * 2^BLOCK_BITS blocks.
+     */
+    private static long keyOf(int id, long block)
+    {
+        return ((long)id << BLOCK_BITS) | block;
+    }
+
+
+    /**
+     * Converts IOException(checked) to RuntimeException(unchecked).
+     */
+    private RuntimeException handleIOE(IOException e)
+    {
+        return new RuntimeException(
+            "Unexpected error happened with the file",
+            e);
+    }
+
+
+    // -------------------------------------------------------------------------
+    /**
+     * A file in the cache, seen as a buffer pool. Every access takes the
+     * cache's lock.
+     */
+    private final class SharedFile
+        implements RecordBufferPool
+    {
+        private final int         id;
+        private final FileChannel channel;
+        private final int         weight;
+        private final FrameList   lru;     // frames, most recently used first
+        private long              lastUse; // tick of the last access
+        private long              hintStart; // bytes of the last dontNeed(),
+        private long              hintEnd;   // joined with those above it
+        private boolean           closed;
+
+        private SharedFile(int id, FileChannel channel, int weight)
+        {
+            this.id = id;
+            this.channel = channel;
+            this.weight = weight;
+            lru = new FrameList(buffers.length);
+        }
+
+
+        @Override
+        public Record getElem(long pos)
+        {
+            synchronized (SharedBlockCache.this)
+            {
+                Buffer buff = buffer(this, blockOf(pos));
+                return buff.getRecord(posInBuff(pos, buff));
+            }
+        }
+
+
+        @Override
+        public void setElem(long pos, Record newRec)
+        {
+            synchronized (SharedBlockCache.this)
+            {
+                Buffer buff = buffer(this, blockOf(pos));
+                buff.setRecord(posInBuff(pos, buff), newRec);
+            }
+        }
+
+
+        @Override
+        public void swapElems(long a, long b)
+        {
+            swapAt(a, b);
+        }
+
+
+        @Override
+        public short keyAt(long pos)
+        {
+            synchronized (SharedBlockCache.this)
+            {
+                Buffer buff = buffer(this, blockOf(pos));
+                return buff.getKey(posInBuff(pos, buff));
+            }
+        }
+
+
+        @Override
+        public int compareAt(long a, long b)
+        {
+            synchronized (SharedBlockCache.this)
+            {
+                return Short.compare(keyAt(a), keyAt(b));
+            }
+        }
+
+
+        @Override
+        public void swapAt(long a, long b)
+        {
+            synchronized (SharedBlockCache.this)
+            {
+                // each access finds its buffer again, since getting B can
+                // take A's frame
+                int recA = getPacked(a);
+                int recB = getPacked(b);
+                setPacked(b, recA);
+                setPacked(a, recB);
+            }
+        }
+
+
+        @Override
+        public void readRange(long pos, int[] dst, int off, int count)
+        {
+            checkArray(dst.length, off, count);
+            moveRange(pos, count, false, dst, off, null);
+        }
+
+
+        @Override
+        public void readRange(long pos, ByteBuffer dst)
+        {
+            int count = dst.remaining() / Record.SIZE_IN_BYTES;
+            moveRange(pos, count, false, null, 0, dst);
+        }
+
+
+        @Override
+        public void writeRange(long pos, int[] src, int off, int count)
+        {
+            checkArray(src.length, off, count);
+            moveRange(pos, count, true, src, off, null);
+        }
+
+
+        @Override
+        public void writeRange(long pos, ByteBuffer src)
+        {
+            int count = src.remaining() / Record.SIZE_IN_BYTES;
+            moveRange(pos, count, true, null, 0, src);
+        }
+
+
+        @Override
+        public void copyRange(long from, long to, long count)
+        {
+            checkRange(from, count);
+            checkRange(to, count);
+            if (count == 0 || from == to)
+                return;
+
+            // from the back if the destination overlaps the end of the source
+            int chunk = (int)Math.min(blockSize / Record.SIZE_IN_BYTES, count);
+            ByteBuffer temp =
+                ByteBuffer.allocate(chunk * Record.SIZE_IN_BYTES);
+            boolean backward = to > from && to < from + count;
+            for (long done = 0; done < count; done += chunk)
+            {
+                int n = (int)Math.min(chunk, count - done);
+                long at = backward ? count - done - n : done;
+                temp.clear().limit(n * Record.SIZE_IN_BYTES);
+                moveRange(from + at, n, false, null, 0, temp);
+                temp.flip();
+                moveRange(to + at, n, true, null, 0, temp);
+            }
+        }
+
+
+        @Override
+        public void pin(long pos, long count)
+        {
+            // quotas decide what stays
+        }
+
+
+        @Override
+        public void unpin(long pos, long count)
+        {
+            // quotas decide what stays
+        }
+
+
+        @Override
+        public void willNeed(long pos, long count)
+        {
+            // nothing reads ahead
+        }
+
+
+        /*
+         * Writes back and frees the frames of the file's blocks lying wholly
+         * in the range, for the other files to use.
+         */
+        @Override
+        public void dontNeed(long pos, long count)
+        {
+            checkRange(pos, count);
+            if (count == 0)
+                return;
+            long start = pos * Record.SIZE_IN_BYTES;
+            long end = (pos + count) * Record.SIZE_IN_BYTES;
+            if (end == hintStart)
+                end = hintEnd; // joins the last hint
+            hintStart = start;
+            hintEnd = end;
+
+            long first = (start + blockSize - 1) / blockSize;
+            long last =
+                Math.min(blockOf(pos + count - 1), end / blockSize - 1);
+            if (end == length() * Record.SIZE_IN_BYTES)
+                last = blockOf(pos + count - 1); // the last block may be short
+
+            synchronized (SharedBlockCache.this)
+            {
+                for (int frame = 0; frame < buffers.length; frame++)
+                {
+                    if (owners[frame] != id)
+                        continue;
+                    long block = buffers[frame].getOffset() / blockSize;
+                    if (block >= first && block <= last)
+                        drop(this, frame);
+                }
+            }
+        }
+
+
+        /*
+         * Writes back the file's blocks and frees their frames.
+         */
+        @Override
+        public void clear()
+        {
+            synchronized (SharedBlockCache.this)
+            {
+                release();
+            }
+        }
+
+
+        @Override
+        public long length()
+        {
+            try
+            {
+                return channel.size() / Record.SIZE_IN_BYTES;
+            }
+            catch (IOException e)
+            {
+                throw handleIOE(e);
+            }
+        }
+
+
+        private void release()
+        {
+            while (!lru.isEmpty())
+                drop(this, lru.last());
+        }
+
+
+        private int getPacked(long pos)
+        {
+            Buffer buff = buffer(this, blockOf(pos));
+            return buff.getPacked(posInBuff(pos, buff));
+        }
+
+
+        private void setPacked(long pos, int packed)
+        {
+            Buffer buff = buffer(this, blockOf(pos));
+            buff.setPacked(posInBuff(pos, buff), packed);
+        }
+
+
+        /*
+         * Moves count records starting at pos between the file and either
+         * ints, from index off, or bytes, from its position, which advances.
+         * Each block is copied under the cache's lock.
+         */
+        private void moveRange(
+            long pos,
+            long count,
+            boolean write,
+            int[] ints,
+            int off,
+            ByteBuffer bytes)
+        {
+            checkRange(pos, count);
+            int perBlock = blockSize / Record.SIZE_IN_BYTES;
+            long done = 0;
+            while (done < count)
+            {
+                long recPos = pos + done;
+                long block = recPos / perBlock;
+                int inBlock = (int)(recPos % perBlock);
+                int n = (int)Math.min(perBlock - inBlock, count - done);
+                int at = off + (int)done;
+
+                synchronized (SharedBlockCache.this)
+                {
+                    Buffer buff = buffer(this, block);
+                    if (write && ints != null)
+                        buff.setRecords(inBlock, ints, at, n);
+                    else if (write)
+                        buff.setRecords(inBlock, bytes, n);
+                    else if (ints != null)
+                        buff.getRecords(inBlock, ints, at, n);
+                    else
+                        buff.getRecords(inBlock, bytes, n);
+                }
+                done += n;
+            }
+        }
+
+
+        private long blockOf(long pos)
+        {
+            if (pos < 0)
+                throw new IllegalArgumentException(
+                    "Position must be within range");
+            return pos * Record.SIZE_IN_BYTES / blockSize;
+        }
+
+
+        private void checkRange(long pos, long count)
+        {
+            if (pos < 0 || count < 0 || count > length() - pos)
+                throw new IllegalArgumentException(
+                    "Range must be within the file");
+        }
+
+
+        private void checkArray(int length, int off, int count)
+        {
+            if (off < 0 || count < 0 || count > length - off)
+                throw new IllegalArgumentException(
+                    "Range must be within the array");
+        }
+
+
+        private int posInBuff(long pos, Buffer buff)
+        {
+            long offset = pos * Record.SIZE_IN_BYTES;
+            return (int)((offset - buff.getOffset()) / Record.SIZE_IN_BYTES);
+        }
+    }
+}
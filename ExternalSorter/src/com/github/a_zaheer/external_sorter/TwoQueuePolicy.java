@@ -0,0 +1,117 @@
+package com.github.a_zaheer.external_sorter;
+// -------------------------------------------------------------------------
+/**
+ * 2Q eviction (Johnson and Shasha). New blocks enter a FIFO queue (A1in) and
+ * only move to the main LRU list (Am) when they are requested again after
+ * falling out of A1in, which is noticed through a list of recently evicted
+ * block numbers (A1out). Blocks touched once, like the sequential tail of a
+ * heap sort, pass through A1in without pushing hot blocks out of Am.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class TwoQueuePolicy
+    implements EvictionPolicy
+{
+    // ~ Fields ................................................................
+    private FrameList    in;    // A1in, newest first
+    private FrameList    main;  // Am, most recently used first
+    private GhostList    out;   // A1out
+    private final long[] blocks; // frame -> block
+    private final int    inTarget;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new TwoQueuePolicy object, with A1in at a quarter of the frames
+     * and A1out remembering half as many blocks as there are frames.
+     *
+     * @param capacity
+     *            number of frames in the pool
+     */
+    public TwoQueuePolicy(int capacity)
+    {
+        in = new FrameList(capacity);
+        main = new FrameList(capacity);
+        out = new GhostList(Math.max(1, capacity / 2));
+        blocks = new long[capacity];
+        inTarget = Math.max(1, capacity / 4);
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void hit(int frame)
+    {
+        if (main.contains(frame))
+            main.moveToFront(frame);
+        // hits in A1in are correlated references, so they stay put
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void miss(int frame, long block)
+    {
+        blocks[frame] = block;
+        if (out.remove(block))
+            main.addFirst(frame);
+        else
+            in.addFirst(frame);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int evict(long block)
+    {
+        int victim;
+        if (in.length() > inTarget || main.isEmpty())
+        {
+            victim = in.last();
+            in.remove(victim);
+            out.add(blocks[victim]);
+        }
+        else
+        {
+            victim = main.last();
+            main.remove(victim);
+        }
+        return victim;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(int frame)
+    {
+        in.remove(frame);
+        main.remove(frame);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        in.clear();
+        main.clear();
+        out.clear();
+    }
+}
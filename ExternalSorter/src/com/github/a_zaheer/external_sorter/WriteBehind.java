@@ -0,0 +1,341 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// -------------------------------------------------------------------------
+/**
+ * Writes dirty blocks of a FileBufferPool in the background. The pool copies
+ * the changed sectors of a dirty buffer into one of a few staging buffers
+ * and marks it clean, and a single daemon thread writes them with positional
+ * FileChannel writes. The pool keeps working meanwhile, and when it later
+ * evicts the block it finds it clean.
+ * <p>
+ * Buffers of adjacent blocks can be queued together. The slots are slices of
+ * one direct ByteBuffer, so such a run is staged in consecutive slots, and
+ * changed bytes that run on from one block into the next go in a single
+ * positional write.
+ * <p>
+ * Writes run one at a time in the order they were queued, so two writes of
+ * the same block always land in order. The pool has to wait for a block's
+ * queued write before reading that block from the file or writing it
+ * itself, which await() does.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class WriteBehind
+    implements Closeable
+{
+    // ~ Fields ................................................................
+    private FileChannel     channel;
+    private ExecutorService writer;
+    private int             blockSize;
+
+    // staging slots, reused round robin
+    private long[]          slotBlocks;
+    private ByteBuffer[]    slotData;   // slices of staging
+    private ByteBuffer      staging;
+    private Future<?>[]     slotWrites;
+    private int             nextSlot;
+    private BlockIndex      pending;    // block -> its latest slot
+    private int[]           extents;    // scratch for a buffer's changes
+
+    private static final long NO_BLOCK = -1L;
+
+    // ~ Constructors ..........................................................
+    // ----------------------------------------------------------
+    /**
+     * Create a new WriteBehind object.
+     *
+     * @param channel
+     *            channel of the pool's file, which stays open after close()
+     * @param slots
+     *            number of blocks that can be queued at once
+     */
+    public WriteBehind(FileChannel channel, int slots)
+    {
+        if (slots < 1)
+            throw new IllegalArgumentException(
+                "Number of slots must be positive");
+
+        this.channel = channel;
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+
+        slotBlocks = new long[slots];
+        slotData = new ByteBuffer[slots];
+        slotWrites = new Future<?>[slots];
+        Arrays.fill(slotBlocks, NO_BLOCK);
+        nextSlot = 0;
+        pending = new BlockIndex(slots);
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * Sets the size of the blocks to write. Called by the pool this is given
+     * to.
+     *
+     * @param size
+     *            block size in bytes
+     * @throws IOException
+     *             if a queued write failed
+     */
+    public void setBlockSize(int size)
+        throws IOException
+    {
+        if (size != blockSize)
+        {
+            drain();
+            blockSize = size;
+            staging = ByteBuffer.allocateDirect(size * slotData.length);
+            extents = new int[(size + Buffer.SECTOR_SIZE - 1)
+                / Buffer.SECTOR_SIZE + 1];
+            for (int i = 0; i < slotData.length; i++)
+            {
+                ByteBuffer slice = staging.duplicate();
+                slice.limit((i + 1) * size).position(i * size);
+                slotData[i] = slice.slice();
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Queues a write of a buffer's changed sectors and marks the buffer
+     * clean. Waits for the oldest queued write if every slot is taken.
+     *
+     * @param block
+     *            the buffer's block
+     * @param buff
+     *            the dirty buffer
+     * @return bytes queued
+     * @throws IOException
+     *             if the write that held the slot failed
+     */
+    public long write(long block, Buffer buff)
+        throws IOException
+    {
+        return write(block, new Buffer[] { buff }, 1);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Queues writes of the changed sectors of the buffers of adjacent blocks
+     * and marks them clean. Changes that run on from one block into the next
+     * go in one write, as far as they fit in consecutive slots. Waits for
+     * the oldest queued writes if their slots are taken.
+     *
+     * @param firstBlock
+     *            the first buffer's block; the others follow it in order
+     * @param buffs
+     *            the dirty buffers, all full but maybe the last
+     * @param count
+     *            number of buffers
+     * @return bytes queued
+     * @throws IOException
+     *             if a write that held a slot failed
+     */
+    public long write(long firstBlock, Buffer[] buffs, int count)
+        throws IOException
+    {
+        long total = 0;
+        int done = 0;
+        while (done < count)
+        {
+            int first = nextSlot;
+            int n = Math.min(count - done, slotBlocks.length - first);
+            nextSlot = (first + n) % slotBlocks.length;
+
+            // start and end in staging of each run of changed bytes
+            int[] runs = new int[n * extents.length];
+            int runCount = 0;
+            for (int i = 0; i < n; i++)
+            {
+                int slot = first + i;
+                if (slotBlocks[slot] != NO_BLOCK)
+                    finish(slot);
+
+                Buffer buff = buffs[done + i];
+                int k = buff.copyDirtyTo(slotData[slot], extents);
+                buff.markClean();
+                for (int e = 0; e < 2 * k; e += 2)
+                {
+                    int from = slot * blockSize + extents[e];
+                    int to = slot * blockSize + extents[e + 1];
+                    if (runCount > 0 && runs[runCount - 1] == from)
+                        runs[runCount - 1] = to; // goes on from the last
+                    else
+                    {
+                        runs[runCount++] = from;
+                        runs[runCount++] = to;
+                    }
+                    total += to - from;
+                }
+
+                long block = firstBlock + done + i;
+                slotBlocks[slot] = block;
+                pending.put(block, slot);
+            }
+
+            // file offset of the start of staging
+            long base = (firstBlock + done - first) * blockSize;
+            ByteBuffer data = staging.duplicate();
+            int last = runCount;
+            Future<?> write = writer.submit(() -> {
+                for (int r = 0; r < last; r += 2)
+                {
+                    data.limit(runs[r + 1]).position(runs[r]);
+                    long at = base + runs[r];
+                    while (data.hasRemaining())
+                        at += channel.write(data, at);
+                }
+                return null;
+            });
+            for (int i = 0; i < n; i++)
+                slotWrites[first + i] = write;
+            done += n;
+        }
+        return total;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Checks if a block has a write that has not finished yet.
+     *
+     * @param block
+     *            the block
+     * @return true or false
+     */
+    public boolean isPending(long block)
+    {
+        int slot = pending.get(block);
+        return slot != BlockIndex.NONE && !slotWrites[slot].isDone();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Waits for the queued writes of a block, if there are any.
+     *
+     * @param block
+     *            the block
+     * @throws IOException
+     *             if the write failed
+     */
+    public void await(long block)
+        throws IOException
+    {
+        // writes run in order, so the latest one finishing means all did
+        int slot = pending.get(block);
+        if (slot != BlockIndex.NONE)
+            finish(slot);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Waits for every queued write.
+     *
+     * @throws IOException
+     *             if a write failed
+     */
+    public void drain()
+        throws IOException
+    {
+        IOException failure = null;
+        for (int i = 0; i < slotBlocks.length; i++)
+        {
+            if (slotBlocks[i] == NO_BLOCK)
+                continue;
+            try
+            {
+                finish(i);
+            }
+            catch (IOException e)
+            {
+                failure = e;
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Waits for every queued write and stops the background thread. The
+     * channel is left open.
+     *
+     * @throws IOException
+     *             if a write failed
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        try
+        {
+            drain();
+        }
+        finally
+        {
+            writer.shutdown();
+        }
+    }
+
+
+    /*
+     * Waits for a slot's write and frees the slot.
+     */
+    private void finish(int slot)
+        throws IOException
+    {
+        long block = slotBlocks[slot];
+        slotBlocks[slot] = NO_BLOCK;
+        if (pending.get(block) == slot)
+            pending.remove(block);
+
+        boolean interrupted = false;
+        try
+        {
+            while (true)
+            {
+                try
+                {
+                    slotWrites[slot].get();
+                    return;
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    throw new IOException(
+                        "Background write failed",
+                        e.getCause());
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+}
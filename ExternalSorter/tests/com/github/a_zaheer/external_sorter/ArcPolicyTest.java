@@ -0,0 +1,80 @@
+package com.github.a_zaheer.external_sorter;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests ArcPolicy
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class ArcPolicyTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private ArcPolicy policy;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up test methods with 4 frames holding blocks 10 to 13, all in T1
+     */
+    public void setUp()
+    {
+        policy = new ArcPolicy(4);
+        for (int i = 0; i < 4; i++)
+            policy.miss(i, 10 + i);
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests that a miss on a B1 ghost grows the target for T1
+     */
+    public void testRecencyGhost()
+    {
+        assertEquals(0, policy.getTarget());
+
+        policy.hit(3); // 13 moves to T2
+        assertEquals(0, policy.evict(14)); // T1 LRU, 10 goes to B1
+        policy.miss(0, 14);
+
+        assertEquals(1, policy.evict(10)); // ghost hit in B1
+        assertEquals(1, policy.getTarget());
+        policy.miss(1, 10); // straight into T2
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that a miss on a B2 ghost shrinks the target for T1
+     */
+    public void testFrequencyGhost()
+    {
+        policy.hit(0);
+        policy.hit(1);
+        policy.hit(2);
+        policy.hit(3); // T2 = 13 12 11 10
+
+        // new block with an empty T1 evicts from T2
+        assertEquals(0, policy.evict(20));
+        policy.miss(0, 20);
+
+        // B1 ghost hit pushes the target up
+        assertEquals(0, policy.evict(21)); // T1 = {20} is over target 0
+        policy.miss(0, 21);
+        assertEquals(1, policy.evict(20)); // T1 is at target, T2 gives up 11
+        assertEquals(1, policy.getTarget());
+        policy.miss(1, 20); // T2 now
+
+        // B2 ghost hit pulls it back down
+        assertEquals(0, policy.evict(10)); // T1 = {21} is over target 0
+        assertEquals(0, policy.getTarget());
+        policy.miss(0, 10);
+
+        policy.clear();
+        assertEquals(0, policy.getTarget());
+        policy.miss(2, 30);
+        assertEquals(2, policy.evict(31));
+    }
+}
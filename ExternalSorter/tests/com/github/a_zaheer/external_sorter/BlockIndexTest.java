@@ -0,0 +1,108 @@
+package com.github.a_zaheer.external_sorter;
+import java.util.HashMap;
+import java.util.Random;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests BlockIndex
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class BlockIndexTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private BlockIndex index;
+    private Exception  exception;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up test methods
+     */
+    public void setUp()
+    {
+        index = new BlockIndex(4);
+        exception = null;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests get(), put() and remove() on a few blocks
+     */
+    public void testBasics()
+    {
+        assertEquals(0, index.size());
+        assertEquals(BlockIndex.NONE, index.get(0));
+
+        index.put(0, 3);
+        index.put(7, 1);
+        index.put(1L << 40, 2);
+        assertEquals(3, index.size());
+        assertEquals(3, index.get(0));
+        assertEquals(1, index.get(7));
+        assertEquals(2, index.get(1L << 40));
+
+        index.put(7, 5); // replaces
+        assertEquals(3, index.size());
+        assertEquals(5, index.get(7));
+
+        assertEquals(5, index.remove(7));
+        assertEquals(BlockIndex.NONE, index.remove(7));
+        assertEquals(BlockIndex.NONE, index.get(7));
+        assertEquals(2, index.size());
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(BlockIndex.NONE, index.get(0));
+
+        try
+        {
+            index.put(-1, 0);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("Block must not be negative", exception.getMessage());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests growing and removing in the middle of probe chains against a
+     * HashMap
+     */
+    public void testAgainstHashMap()
+    {
+        HashMap<Long, Integer> expected = new HashMap<Long, Integer>();
+        Random rand = new Random(42);
+        for (int i = 0; i < 20000; i++)
+        {
+            long block = rand.nextInt(500);
+            if (rand.nextInt(3) == 0)
+            {
+                Integer old = expected.remove(block);
+                assertEquals(
+                    old == null ? BlockIndex.NONE : old,
+                    index.remove(block));
+            }
+            else
+            {
+                expected.put(block, i);
+                index.put(block, i);
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        for (long block = 0; block < 500; block++)
+        {
+            Integer val = expected.get(block);
+            assertEquals(val == null ? BlockIndex.NONE : val, index.get(block));
+        }
+    }
+}
@@ -222,5 +222,143 @@ public class BufferTest
 
         raf.close();
     }
-}
 
+
+    // ----------------------------------------------------------
+    /**
+     * tests a direct buffer, and that records are copies that do not change
+     * when the buffer is reused
+     *
+     * @throws IOException
+     *             if an error occurs while reading/writing
+     */
+    public void testDirect()
+        throws IOException
+    {
+        buffer = new Buffer(true);
+        buffer.fill(raf);
+        Record first = buffer.getRecord(1);
+        assertEquals(0, expected.compareTo(first));
+
+        buffer.setRecord(1, new Record(0, 0));
+        assertEquals(24210, first.getKey()); // a copy, not a view
+        assertTrue(buffer.flush(raf));
+        assertEquals(Buffer.BUFFER_CAPACITY, raf.getFilePointer());
+
+        raf.seek(0);
+        buffer.fill(raf);
+        assertEquals(0, buffer.getRecord(1).getKey());
+        assertEquals(0, buffer.getRecord(1).getValue());
+        raf.close();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests a block cut short by the end of the file
+     *
+     * @throws IOException
+     *             if an error occurs while reading/writing
+     */
+    public void testPartialBlock()
+        throws IOException
+    {
+        long fileLength = raf.length();
+        raf.setLength(fileLength - 8); // last two records gone
+        raf.seek(fileLength - Buffer.BUFFER_CAPACITY);
+        buffer.fill(raf);
+
+        int last = Buffer.BUFFER_CAPACITY / Record.SIZE_IN_BYTES - 1;
+        assertEquals(0, buffer.getRecord(last).getKey()); // reads as zero
+
+        buffer.setRecord(0, new Record(1, 2));
+        assertTrue(buffer.flush(raf));
+        assertEquals(fileLength - 8, raf.length()); // did not grow
+        raf.close();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests a buffer with a larger block size, and the block size checks
+     *
+     * @throws IOException
+     *             if an error occurs while reading/writing
+     */
+    public void testCapacity()
+        throws IOException
+    {
+        buffer = new Buffer(2 * Buffer.BUFFER_CAPACITY, false);
+        assertEquals(8192, buffer.getCapacity());
+        buffer.fill(raf);
+        assertEquals(8192, raf.getFilePointer());
+        Record rec = buffer.getRecord(1024); // first record of the 2nd block
+        assertEquals(23189, rec.getKey());
+        assertEquals(1559, rec.getValue());
+        assertTrue(buffer.hasBytes(4096, 4096));
+
+        int[] bad = { 4092, 4098, Buffer.MAX_CAPACITY + 4 };
+        for (int size : bad)
+        {
+            exception = null;
+            try
+            {
+                new Buffer(size, false);
+            }
+            catch (IllegalArgumentException e)
+            {
+                exception = e;
+            }
+            assertNotNull(exception);
+            assertEquals(
+                "Block size must be a multiple of 4 from 4096 to 4194304",
+                exception.getMessage());
+        }
+        raf.close();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that a flush writes only the changed sectors
+     *
+     * @throws IOException
+     *             if an error occurs while reading/writing
+     */
+    public void testDirtySectors()
+        throws IOException
+    {
+        buffer = new Buffer(2 * Buffer.BUFFER_CAPACITY, false);
+        buffer.fill(raf);
+        assertEquals(0, buffer.dirtyBytes());
+        buffer.setRecord(0, new Record(1, 1)); // sector 0
+        buffer.setRecord(1024, new Record(2, 2)); // sector 8
+        buffer.setRecord(1100, new Record(3, 3)); // sector 8 too
+        assertEquals(2 * Buffer.SECTOR_SIZE, buffer.dirtyBytes());
+
+        // an unchanged sector is not written over
+        raf.seek(1000);
+        raf.writeInt(Record.pack(32767, 32767));
+        assertTrue(buffer.flush(raf));
+        assertEquals(8192, raf.getFilePointer());
+
+        raf.seek(0);
+        buffer.fill(raf);
+        assertEquals(1, buffer.getRecord(0).getKey());
+        assertEquals(32767, buffer.getRecord(250).getKey());
+        assertEquals(2, buffer.getRecord(1024).getKey());
+        assertEquals(3, buffer.getRecord(1100).getKey());
+        buffer.flush();
+
+        // through a channel, from a direct buffer
+        buffer = new Buffer(true);
+        buffer.fill(raf.getChannel(), 0);
+        buffer.swapRecords(0, 1023); // first and last sectors
+        assertEquals(2 * Buffer.SECTOR_SIZE, buffer.dirtyBytes());
+        assertTrue(buffer.flush(raf.getChannel()));
+        buffer.fill(raf.getChannel(), 0);
+        assertEquals(1, buffer.getRecord(1023).getKey());
+        assertEquals(32767, buffer.getRecord(250).getKey());
+        raf.close();
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.a_zaheer.external_sorter;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests ClockPolicy
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class ClockPolicyTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private ClockPolicy policy;
+    private Exception   exception;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up test methods with frames 0, 1 and 2 holding blocks 10, 11, 12
+     */
+    public void setUp()
+    {
+        policy = new ClockPolicy(3);
+        policy.miss(0, 10);
+        policy.miss(1, 11);
+        policy.miss(2, 12);
+        exception = null;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests that referenced frames get a second chance
+     */
+    public void testSecondChance()
+    {
+        policy.hit(0);
+        assertEquals(1, policy.evict(13)); // 0 loses its bit, 1 goes
+        policy.miss(1, 13);
+
+        assertEquals(2, policy.evict(14));
+        policy.miss(2, 14);
+
+        policy.hit(0);
+        policy.hit(1);
+        policy.hit(2);
+        assertEquals(0, policy.evict(15)); // every bit cleared, then 0 goes
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests evicting when no frame is tracked
+     */
+    public void testEmpty()
+    {
+        policy.clear();
+        try
+        {
+            policy.evict(10);
+        }
+        catch (IllegalStateException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("No frame to evict", exception.getMessage());
+    }
+}
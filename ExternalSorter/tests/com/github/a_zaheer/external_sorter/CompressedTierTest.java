@@ -0,0 +1,270 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests CompressedTier and a FileBufferPool that uses one
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class CompressedTierTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private final File     copy     = new File("data\\working\\CTCopy3.bin");
+    private final File     original =
+        new File("data\\working\\sampleBlock3.bin");
+    private CompressedTier tier;
+    private ByteBuffer     sorted;
+    private ByteBuffer     noisy;
+    private Exception      exception;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up a tier of 16 KB, a block of sorted records and one of random
+     * bytes
+     */
+    public void setUp()
+    {
+        tier = new CompressedTier(4 * Buffer.BUFFER_CAPACITY);
+        sorted = ByteBuffer.allocate(Buffer.BUFFER_CAPACITY);
+        noisy = ByteBuffer.allocate(Buffer.BUFFER_CAPACITY);
+        Random random = new Random(7);
+        for (int i = 0; i < Buffer.BUFFER_CAPACITY / 4; i++)
+        {
+            sorted.putShort((short)(i * 29));
+            sorted.putShort((short)random.nextInt());
+        }
+        random.nextBytes(noisy.array());
+        sorted.flip();
+        exception = null;
+    }
+
+
+    /**
+     * drops the stored blocks
+     */
+    public void tearDown()
+    {
+        tier.close();
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests that blocks come back as they went in, sorted ones smaller, and
+     * stay stored
+     */
+    public void testRoundTrip()
+    {
+        assertTrue(tier.put(0, sorted));
+        assertEquals(0, sorted.position());
+        long packed = tier.getStoredBytes();
+        assertEquals(
+            Buffer.BUFFER_CAPACITY * 3 / 4 + CompressedTier.ENTRY_OVERHEAD,
+            packed); // one byte a key step
+        assertTrue(tier.put(1, noisy));
+        assertEquals(
+            Buffer.BUFFER_CAPACITY + CompressedTier.ENTRY_OVERHEAD,
+            tier.getStoredBytes() - packed); // kept as it is
+        assertEquals(2, tier.getBlockCount());
+
+        Buffer buff = new Buffer();
+        assertTrue(tier.take(0, buff, 0));
+        assertEquals(0, buff.getOffset());
+        assertFalse(buff.isDirty());
+        for (int i = 0; i < Buffer.BUFFER_CAPACITY / 4; i++)
+            assertEquals(sorted.getInt(i * 4), buff.getPacked(i));
+        assertTrue(tier.contains(0));
+
+        assertTrue(tier.take(1, buff, Buffer.BUFFER_CAPACITY));
+        for (int i = 0; i < Buffer.BUFFER_CAPACITY / 4; i++)
+            assertEquals(noisy.getInt(i * 4), buff.getPacked(i));
+        assertEquals(2, tier.getBlockCount());
+
+        tier.remove(0);
+        assertFalse(tier.take(0, buff, 0));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests keys that step far up and down and a short last record
+     */
+    public void testLargeSteps()
+    {
+        ByteBuffer steps = ByteBuffer.allocate(Buffer.BUFFER_CAPACITY - 2);
+        short[] keys = { Short.MIN_VALUE, Short.MAX_VALUE, -1, 0, 63, -64 };
+        for (int i = 0; i < steps.capacity() / 4; i++)
+        {
+            steps.putShort(i < 768 ? (short)(i / 8) : keys[i % keys.length]);
+            steps.putShort((short)i);
+        }
+        steps.putShort((short)-7);
+        steps.flip();
+        assertTrue(tier.put(0, steps));
+        assertTrue(tier.getStoredBytes() < steps.capacity());
+
+        Buffer buff = new Buffer();
+        assertTrue(tier.take(0, buff, 0));
+        ByteBuffer back = buff.view();
+        assertEquals(steps.capacity(), back.remaining());
+        assertEquals(steps, back);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that the oldest blocks are dropped to stay in the budget
+     */
+    public void testBudget()
+    {
+        for (int b = 0; b < 4; b++)
+            assertTrue(tier.put(b, noisy));
+        assertEquals(3, tier.getBlockCount()); // with overhead, 4 do not fit
+        assertFalse(tier.contains(0));
+        assertTrue(tier.contains(3));
+        assertTrue(tier.getStoredBytes() <= 4 * Buffer.BUFFER_CAPACITY);
+
+        tier.put(1, sorted); // replaces block 1
+        tier.remove(2);
+        assertEquals(2, tier.getBlockCount());
+
+        CompressedTier small = new CompressedTier(Buffer.BUFFER_CAPACITY);
+        assertFalse(small.put(0, noisy));
+        assertEquals(0, small.getBlockCount());
+        small.close();
+
+        tier.clear();
+        assertEquals(0, tier.getBlockCount());
+        assertEquals(0, tier.getStoredBytes());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests the budget check
+     */
+    public void testBadArguments()
+    {
+        try
+        {
+            new CompressedTier(0);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("Budget must be positive", exception.getMessage());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests a pool that keeps evicted blocks in a tier, dirty ones after
+     * writing them back
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testPool()
+        throws IOException
+    {
+        Files.copy(
+            Paths.get(original.getPath()),
+            Paths.get(copy.getPath()),
+            StandardCopyOption.REPLACE_EXISTING);
+        copy.deleteOnExit();
+
+        try (RandomAccessFile raf = new RandomAccessFile(copy, "rw"))
+        {
+            IOStats stats = new IOStats();
+            FileBufferPool bp = new FileBufferPool(raf, 1, stats);
+            bp.setCompressedTier(tier);
+            bp.setElem(0, new Record(7, 8));
+            bp.getElem(1024); // block 0 is written back and kept
+            assertEquals(1, stats.getWrites());
+            assertTrue(tier.contains(0));
+            assertEquals(7, bp.getElem(0).getKey());
+            assertEquals(1, stats.getTierHits());
+            assertEquals(2, stats.getReads());
+
+            new RecordHeapSorter(bp, bp.length()).sort();
+            for (int i = 1; i < bp.length(); i++)
+                assertTrue(bp.compareAt(i - 1, i) <= 0);
+            assertEquals(
+                stats.getMisses(),
+                stats.getReads() + stats.getTierHits());
+            assertTrue(stats.getTierHits() > stats.getReads());
+
+            bp.clear();
+            assertEquals(0, tier.getBlockCount());
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that a block evicted unchanged is not stored again, and that a
+     * changed one drops its stored copy until it is written back
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testUnchangedBlocks()
+        throws IOException
+    {
+        Files.copy(
+            Paths.get(original.getPath()),
+            Paths.get(copy.getPath()),
+            StandardCopyOption.REPLACE_EXISTING);
+        copy.deleteOnExit();
+
+        int[] puts = new int[1];
+        CompressedTier counting = new CompressedTier(4 * Buffer.BUFFER_CAPACITY)
+        {
+            @Override
+            public boolean put(long block, ByteBuffer data)
+            {
+                puts[0]++;
+                return super.put(block, data);
+            }
+        };
+        try (RandomAccessFile raf = new RandomAccessFile(copy, "rw"))
+        {
+            IOStats stats = new IOStats();
+            FileBufferPool bp = new FileBufferPool(raf, 1, stats);
+            bp.setCompressedTier(counting);
+            for (int round = 0; round < 3; round++)
+            {
+                bp.getElem(0);
+                bp.getElem(1024);
+            }
+            assertEquals(2, puts[0]); // once for each block
+            assertEquals(4, stats.getTierHits());
+
+            bp.setElem(1024, new Record(5, 6)); // block 1 is out of date
+            assertFalse(counting.contains(1));
+            bp.getElem(0); // stores block 1 as written back
+            assertEquals(3, puts[0]);
+            assertEquals(5, bp.getElem(1024).getKey());
+            assertEquals(3, puts[0]);
+            assertEquals(6, stats.getTierHits());
+        }
+        finally
+        {
+            counting.close();
+        }
+    }
+}
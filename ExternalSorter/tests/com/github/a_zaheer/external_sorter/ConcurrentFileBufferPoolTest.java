@@ -0,0 +1,222 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Random;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests ConcurrentFileBufferPool
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class ConcurrentFileBufferPoolTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private final File               copy     =
+        new File("data\\working\\CPCopy10.bin");
+    private final File               original =
+        new File("data\\working\\sampleBlock10.bin");
+    private Path                     pathSrc;
+    private Path                     pathDest;
+
+    private RandomAccessFile         raf;
+    private IOStats                  stats;
+    private ConcurrentFileBufferPool bp;
+    private Exception                exception;
+
+    private static final int         THREADS  = 4;
+    private static final int         SWAPS    = 5000;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up a six buffer pool with three stripes
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void setUp()
+        throws IOException
+    {
+        pathSrc = Paths.get(original.getPath());
+        pathDest = Paths.get(copy.getPath());
+
+        Files.copy(pathSrc, pathDest, StandardCopyOption.REPLACE_EXISTING);
+
+        raf = new RandomAccessFile(copy, "rw");
+        stats = new IOStats();
+        bp = new ConcurrentFileBufferPool(raf.getChannel(), 6, 3);
+        exception = null;
+
+        copy.deleteOnExit();
+    }
+
+
+    /**
+     * closes the file
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void tearDown()
+        throws IOException
+    {
+        raf.close();
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests that records are read and written back like FileBufferPool's
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testGetSet()
+        throws IOException
+    {
+        assertEquals(3, bp.stripeCount());
+        assertEquals(10 * 1024, bp.length());
+
+        Record first = bp.getElem(0);
+        Record last = bp.getElem(bp.length() - 1);
+        bp.swapElems(0, bp.length() - 1);
+        assertEquals(last.getKey(), bp.getElem(0).getKey());
+        assertEquals(first.getKey(), bp.getElem(bp.length() - 1).getKey());
+        assertEquals(last.getKey(), bp.keyAt(0));
+        bp.swapAt(0, bp.length() - 1);
+        assertEquals(first.getKey(), bp.keyAt(0));
+        bp.swapAt(0, bp.length() - 1);
+
+        // a range across stripes
+        int[] recs = new int[2048];
+        bp.readRange(1000, recs, 0, recs.length);
+        assertEquals(bp.keyAt(2024), Record.packedKey(recs[1024]));
+        bp.writeRange(5000, recs, 0, recs.length);
+        assertEquals(0, bp.compareAt(2024, 6024));
+
+        // one frame per stripe at most, so each block is read again
+        for (int b = 0; b < 10; b++)
+            bp.setElem(b * 1024 + 1, new Record(b, b));
+        bp.clear();
+        bp.copyStatsTo(stats);
+        assertEquals(stats.getMisses(), stats.getReads());
+        assertTrue(stats.getWrites() >= 10);
+
+        try (RandomAccessFile check = new RandomAccessFile(copy, "r"))
+        {
+            check.seek(0);
+            assertEquals(last.getKey(), check.readShort());
+            for (int b = 0; b < 10; b++)
+            {
+                check.seek((b * 1024 + 1) * Record.SIZE_IN_BYTES);
+                assertEquals(b, check.readShort());
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that swaps from several threads at once lose no record and
+     * count every access
+     *
+     * @throws Exception
+     *             if a thread fails
+     */
+    public void testConcurrentSwaps()
+        throws Exception
+    {
+        int length = (int)bp.length();
+        int[] before = keys(length);
+
+        Thread[] threads = new Thread[THREADS];
+        Throwable[] failures = new Throwable[THREADS];
+        for (int t = 0; t < THREADS; t++)
+        {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                try
+                {
+                    Random random = new Random(id);
+                    for (int i = 0; i < SWAPS; i++)
+                        bp.swapElems(
+                            random.nextInt(length),
+                            random.nextInt(length));
+                }
+                catch (Throwable e)
+                {
+                    failures[id] = e;
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        for (Throwable failure : failures)
+            assertNull(failure);
+
+        // one access per record for keys(), four per swap
+        bp.copyStatsTo(stats);
+        assertEquals(
+            length + 4 * THREADS * SWAPS,
+            stats.getHits() + stats.getMisses());
+
+        bp.clear();
+        assertTrue(Arrays.equals(before, keys(length)));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests the argument checks
+     */
+    public void testBadArguments()
+    {
+        try
+        {
+            new ConcurrentFileBufferPool(raf.getChannel(), 2, 3);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals(
+            "Number of stripes must be from 1 to the number of buffers",
+            exception.getMessage());
+        exception = null;
+
+        try
+        {
+            bp.getElem(-1);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+    }
+
+
+    /*
+     * Reads every key and sorts them, to compare the records as a multiset.
+     */
+    private int[] keys(int length)
+    {
+        int[] keys = new int[length];
+        for (int i = 0; i < length; i++)
+            keys[i] = bp.getElem(i).getKey();
+        Arrays.sort(keys);
+        return keys;
+    }
+}
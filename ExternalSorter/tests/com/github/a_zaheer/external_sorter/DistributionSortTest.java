@@ -0,0 +1,245 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests DistributionSort
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class DistributionSortTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private final File copy     = new File("data\\working\\DSCopy10.bin");
+    private final File original = new File("data\\working\\sampleBlock10.bin");
+    private Path       tempDir;
+    private IOStats    stats;
+    private Exception  exception;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up a copy of a ten block file
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void setUp()
+        throws IOException
+    {
+        Files.copy(
+            Paths.get(original.getPath()),
+            Paths.get(copy.getPath()),
+            StandardCopyOption.REPLACE_EXISTING);
+        copy.deleteOnExit();
+        tempDir = copy.getAbsoluteFile().getParentFile().toPath();
+        stats = new IOStats();
+        exception = null;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests a sort through several buckets, which keeps records with equal
+     * keys in file order
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testSortInBuckets()
+        throws IOException
+    {
+        int[] before = readRecords();
+        DistributionSort sorter = sort(3 * Buffer.BUFFER_CAPACITY);
+        // 1536 records per bucket
+        assertTrue(sorter.getBucketCount() >= 7);
+        assertTrue(Arrays.equals(stableSort(before), readRecords()));
+        // counted, scattered and gathered
+        assertTrue(stats.getReads() >= 30);
+        assertTrue(stats.getWrites() > 10);
+        assertEquals(
+            2L * before.length * Record.SIZE_IN_BYTES,
+            stats.getBytesWritten());
+        assertEquals(0, countTempFiles());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that a file that fits in memory is read once and written once
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testSortInMemory()
+        throws IOException
+    {
+        int[] before = readRecords();
+        DistributionSort sorter = sort(20 * Buffer.BUFFER_CAPACITY);
+        assertEquals(1, sorter.getBucketCount());
+        assertTrue(Arrays.equals(stableSort(before), readRecords()));
+        assertEquals(10, stats.getReads());
+        assertEquals(10, stats.getWrites());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests a key with more records than a bucket holds, which is copied
+     * in file order without sorting
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testOneLargeKey()
+        throws IOException
+    {
+        int[] recs = new int[4000];
+        for (int i = 0; i < recs.length; i++)
+            recs[i] = Record.pack(i % 2 == 0 ? 5 : 3 - i % 4, i);
+        ByteBuffer bytes = ByteBuffer.allocate(4 * recs.length);
+        bytes.asIntBuffer().put(recs);
+        Files.write(Paths.get(copy.getPath()), bytes.array());
+
+        DistributionSort sorter = sort(3 * Buffer.BUFFER_CAPACITY);
+        assertEquals(3, sorter.getBucketCount()); // one for each key
+        assertTrue(Arrays.equals(stableSort(recs), readRecords()));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests a file needing more buckets than the memory has write-combining
+     * buffers for, whose larger buckets are scattered again
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testScatterAgain()
+        throws IOException
+    {
+        // 8192 bytes of buffers hold 128 buckets of MIN_COMBINE records,
+        // and no two of these keys fit in one bucket of 1536 records
+        int[] recs = new int[129 * 769];
+        for (int i = 0; i < recs.length; i++)
+            recs[i] = Record.pack(128 - i % 129, i);
+        ByteBuffer bytes = ByteBuffer.allocate(4 * recs.length);
+        bytes.asIntBuffer().put(recs);
+        Files.write(Paths.get(copy.getPath()), bytes.array());
+
+        DistributionSort sorter = sort(3 * Buffer.BUFFER_CAPACITY);
+        assertTrue(Arrays.equals(stableSort(recs), readRecords()));
+        // 43 buckets of three keys, each scattered into three more
+        assertEquals(43 + 3 * 43, sorter.getBucketCount());
+        // counted, scattered, scattered again and gathered
+        assertEquals(
+            3L * recs.length * Record.SIZE_IN_BYTES,
+            stats.getBytesWritten());
+        assertEquals(0, countTempFiles());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests the argument checks
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testBadArguments()
+        throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(copy, "rw"))
+        {
+            new DistributionSort(
+                raf.getChannel(),
+                2 * Buffer.BUFFER_CAPACITY,
+                Buffer.BUFFER_CAPACITY,
+                stats,
+                tempDir);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals(
+            "Memory must hold at least three blocks",
+            exception.getMessage());
+    }
+
+
+    /*
+     * Sorts the copy with the given memory.
+     */
+    private DistributionSort sort(long memory)
+        throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(copy, "rw"))
+        {
+            DistributionSort sorter = new DistributionSort(
+                raf.getChannel(),
+                memory,
+                Buffer.BUFFER_CAPACITY,
+                stats,
+                tempDir);
+            assertEquals(0, sorter.getBucketCount());
+            sorter.sort();
+            return sorter;
+        }
+    }
+
+
+    /*
+     * Sorts packed records by key alone, keeping equal keys in order.
+     */
+    private static int[] stableSort(int[] recs)
+    {
+        Integer[] boxed = new Integer[recs.length];
+        for (int i = 0; i < recs.length; i++)
+            boxed[i] = recs[i];
+        Arrays.sort(
+            boxed,
+            (a, b) -> Short.compare(Record.packedKey(a), Record.packedKey(b)));
+        int[] sorted = new int[recs.length];
+        for (int i = 0; i < recs.length; i++)
+            sorted[i] = boxed[i];
+        return sorted;
+    }
+
+
+    /*
+     * Reads the copy's records, packed.
+     */
+    private int[] readRecords()
+        throws IOException
+    {
+        ByteBuffer bytes =
+            ByteBuffer.wrap(Files.readAllBytes(Paths.get(copy.getPath())));
+        int[] recs = new int[bytes.remaining() / Record.SIZE_IN_BYTES];
+        bytes.asIntBuffer().get(recs);
+        return recs;
+    }
+
+
+    /*
+     * Counts the bucket files left in the temporary directory.
+     */
+    private int countTempFiles()
+    {
+        String[] names = tempDir.toFile().list(
+            (dir, name) -> name.startsWith("buckets"));
+        return names.length;
+    }
+}
@@ -0,0 +1,196 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests EvictionPolicy.forName() and runs every policy through a simulated
+ * pool and a real sort.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class EvictionPolicyTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private final File     copy     = new File("data\\working\\EPCopy10.bin");
+    private final File     original =
+        new File("data\\working\\sampleBlock10.bin");
+    private final String[] names    = { "lru", "clock", "2q", "arc", "lirs" };
+    private Exception      exception;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up test methods
+     */
+    public void setUp()
+    {
+        exception = null;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests forName()
+     */
+    public void testForName()
+    {
+        assertTrue(EvictionPolicy.forName("LRU", 4) instanceof LruPolicy);
+        assertTrue(EvictionPolicy.forName("clock", 4) instanceof ClockPolicy);
+        assertTrue(EvictionPolicy.forName("2q", 4) instanceof TwoQueuePolicy);
+        assertTrue(EvictionPolicy.forName(" Arc ", 4) instanceof ArcPolicy);
+        assertTrue(EvictionPolicy.forName("lirs", 4) instanceof LirsPolicy);
+
+        try
+        {
+            EvictionPolicy.forName("fifo", 4);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("Unknown eviction policy: fifo", exception.getMessage());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Simulates a small pool on random accesses with some locality. Every
+     * evicted frame has to be one that holds a block.
+     */
+    public void testSimulatedPool()
+    {
+        final int frames = 8;
+        for (String name : names)
+        {
+            EvictionPolicy policy = EvictionPolicy.forName(name, frames);
+            BlockIndex resident = new BlockIndex(frames);
+            long[] blockOf = new long[frames];
+            int used = 0;
+            int hits = 0;
+            Random rand = new Random(7);
+
+            for (int i = 0; i < 20000; i++)
+            {
+                long block = rand.nextInt(4) == 0
+                    ? rand.nextInt(200)
+                    : rand.nextInt(6);
+                int frame = resident.get(block);
+                if (frame != BlockIndex.NONE)
+                {
+                    policy.hit(frame);
+                    hits++;
+                    continue;
+                }
+
+                if (used < frames)
+                    frame = used++;
+                else
+                {
+                    frame = policy.evict(block);
+                    assertTrue(name, frame >= 0 && frame < frames);
+                    assertEquals(name, frame, resident.remove(blockOf[frame]));
+                }
+                blockOf[frame] = block;
+                resident.put(block, frame);
+                policy.miss(frame, block);
+            }
+            assertEquals(name, frames, resident.size());
+            assertTrue(name, hits > 10000); // the hot set mostly fits
+
+            policy.clear();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Removes frames from a full pool. The policy must not evict them, and
+     * must take them back on a later miss.
+     */
+    public void testRemove()
+    {
+        final int frames = 8;
+        for (String name : names)
+        {
+            EvictionPolicy policy = EvictionPolicy.forName(name, frames);
+            for (int frame = 0; frame < frames; frame++)
+            {
+                policy.miss(frame, frame);
+                policy.hit(frame);
+            }
+            policy.remove(2);
+            policy.remove(5);
+
+            boolean[] evicted = new boolean[frames];
+            for (int i = 0; i < frames - 2; i++)
+            {
+                int frame = policy.evict(100 + i);
+                assertTrue(name, frame != 2 && frame != 5);
+                assertFalse(name, evicted[frame]);
+                evicted[frame] = true;
+            }
+
+            policy.miss(5, 200);
+            assertEquals(name, 5, policy.evict(201));
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Sorts a file through a FileBufferPool with every policy.
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testSortWithEachPolicy()
+        throws IOException
+    {
+        long accesses = -1;
+        for (String name : names)
+        {
+            Files.copy(
+                Paths.get(original.getPath()),
+                Paths.get(copy.getPath()),
+                StandardCopyOption.REPLACE_EXISTING);
+
+            try (RandomAccessFile raf = new RandomAccessFile(copy, "rw"))
+            {
+                IOStats stats = new IOStats();
+                FileBufferPool bp = new FileBufferPool(
+                    raf,
+                    3,
+                    stats,
+                    EvictionPolicy.forName(name, 3));
+                new HeapSorter<Record>(bp, bp.length()).sort();
+
+                for (int i = 1; i < bp.length(); i++)
+                {
+                    assertTrue(
+                        name,
+                        bp.getElem(i - 1).compareTo(bp.getElem(i)) <= 0);
+                }
+                bp.clear();
+
+                // the access sequence does not depend on the policy
+                long total = stats.getHits() + stats.getMisses();
+                if (accesses >= 0)
+                    assertEquals(name, accesses, total);
+                accesses = total;
+                assertEquals(name, stats.getMisses(), stats.getReads());
+            }
+        }
+        copy.deleteOnExit();
+    }
+}
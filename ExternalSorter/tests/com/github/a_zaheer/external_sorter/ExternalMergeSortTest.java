@@ -0,0 +1,323 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests ExternalMergeSort and the run readers, writers and merger it is
+ * built from
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class ExternalMergeSortTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private final File copy     = new File("data\\working\\EMCopy10.bin");
+    private final File original = new File("data\\working\\sampleBlock10.bin");
+    private Path       tempDir;
+    private IOStats    stats;
+    private int[]      before;
+    private Exception  exception;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up a copy of a ten block file and keeps its records
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void setUp()
+        throws IOException
+    {
+        Files.copy(
+            Paths.get(original.getPath()),
+            Paths.get(copy.getPath()),
+            StandardCopyOption.REPLACE_EXISTING);
+        copy.deleteOnExit();
+        tempDir = copy.getAbsoluteFile().getParentFile().toPath();
+        stats = new IOStats();
+        before = readRecords();
+        exception = null;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests a sort with memory for three blocks: four runs, merged two at a
+     * time in two passes
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testSortInPasses()
+        throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(copy, "rw"))
+        {
+            new ExternalMergeSort(
+                raf.getChannel(),
+                3 * Buffer.BUFFER_CAPACITY,
+                Buffer.BUFFER_CAPACITY,
+                stats,
+                tempDir).sort();
+        }
+        assertEquals(4, stats.getRuns());
+        assertEquals(2, stats.getMergePasses());
+        // each window of a run and of the output is a block here
+        assertEquals(30, stats.getReads());
+        assertEquals(30, stats.getWrites());
+        assertEquals(30L * Buffer.BUFFER_CAPACITY, stats.getBytesWritten());
+        checkSorted();
+        assertEquals(0, countTempFiles());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that a file that fits in memory is sorted in one chunk
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testSortOneChunk()
+        throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(copy, "rw"))
+        {
+            new ExternalMergeSort(
+                raf.getChannel(),
+                16 * Buffer.BUFFER_CAPACITY,
+                Buffer.BUFFER_CAPACITY,
+                stats,
+                tempDir).sort();
+        }
+        assertEquals(1, stats.getRuns());
+        assertEquals(0, stats.getMergePasses());
+        assertEquals(10, stats.getReads());
+        assertEquals(10, stats.getWrites());
+        checkSorted();
+        assertEquals(0, countTempFiles());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that replacement selection makes runs longer than the memory on
+     * random records and one run on sorted ones
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testReplacementSelection()
+        throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(copy, "rw"))
+        {
+            ExternalMergeSort sorter = new ExternalMergeSort(
+                raf.getChannel(),
+                3 * Buffer.BUFFER_CAPACITY,
+                Buffer.BUFFER_CAPACITY,
+                stats,
+                tempDir);
+            assertNull(sorter.getRunStats());
+            sorter.setReplacementSelection(true);
+            sorter.sort();
+            RunStats runs = sorter.getRunStats();
+            assertEquals(stats.getRuns(), runs.getCount());
+            assertEquals(3, runs.getCount()); // chunks make four
+            assertEquals(before.length, runs.getTotal());
+            // the first run is about e - 1 memories, the next about two
+            assertTrue(runs.getLongest() > 3 * runs.getMemoryRecords() / 2);
+            assertEquals(2, stats.getMergePasses());
+            checkSorted();
+
+            stats.reset();
+            sorter.sort(); // already sorted
+            runs = sorter.getRunStats();
+            assertEquals(1, runs.getCount());
+            assertEquals(before.length, runs.getLongest());
+            assertEquals(1, stats.getMergePasses()); // copied back
+            checkSorted();
+        }
+        assertEquals(0, countTempFiles());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that runs are read and written through their windows and that
+     * records with equal keys are merged in the order of their runs
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testRunsAndMerger()
+        throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(copy, "rw"))
+        {
+            RunWriter out = new RunWriter(raf.getChannel(), 0, 8, stats);
+            out.write(new int[] { Record.pack(1, 10),
+                Record.pack(3, 10) }, 0, 2);
+            out.write(Record.pack(1, 20));
+            assertEquals(12, out.getPosition());
+            assertEquals(1, stats.getWrites());
+            out.write(Record.pack(2, 20));
+            out.flush();
+            assertEquals(2, stats.getWrites());
+            assertEquals(16, stats.getBytesWritten());
+
+            RunReader[] runs = new RunReader[] {
+                new RunReader(raf.getChannel(), 0, 8, 4, stats),
+                new RunReader(raf.getChannel(), 8, 16, 4, stats),
+                new RunReader(raf.getChannel(), 16, 16, 4, stats) };
+            assertTrue(runs[2].isDone());
+            RunWriter merged =
+                new RunWriter(raf.getChannel(), 16, 64, stats);
+            assertEquals(4, new HeapMerger(runs).mergeTo(merged));
+            merged.flush();
+            assertEquals(4, stats.getReads());
+
+            RunReader result =
+                new RunReader(raf.getChannel(), 16, 32, 64, stats);
+            int[] expected = new int[] { Record.pack(1, 10),
+                Record.pack(1, 20),
+                Record.pack(2, 20),
+                Record.pack(3, 10) };
+            for (int packed : expected)
+            {
+                assertEquals(packed, result.current());
+                result.advance();
+            }
+            assertTrue(result.isDone());
+
+            try
+            {
+                result.current();
+            }
+            catch (IllegalStateException e)
+            {
+                exception = e;
+            }
+            assertNotNull(exception);
+            assertEquals("Run is done", exception.getMessage());
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests the argument checks
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testBadArguments()
+        throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(copy, "rw"))
+        {
+            try
+            {
+                new ExternalMergeSort(
+                    raf.getChannel(),
+                    2 * Buffer.BUFFER_CAPACITY,
+                    Buffer.BUFFER_CAPACITY,
+                    stats,
+                    tempDir);
+            }
+            catch (IllegalArgumentException e)
+            {
+                exception = e;
+            }
+            assertNotNull(exception);
+            assertEquals(
+                "Memory must hold at least three blocks",
+                exception.getMessage());
+
+            exception = null;
+            try
+            {
+                new RunWriter(raf.getChannel(), 0, 3, stats);
+            }
+            catch (IllegalArgumentException e)
+            {
+                exception = e;
+            }
+            assertNotNull(exception);
+            assertEquals(
+                "Window must hold at least one record",
+                exception.getMessage());
+
+            exception = null;
+            try
+            {
+                new RunReader(raf.getChannel(), 0, 6, 4, stats);
+            }
+            catch (IllegalArgumentException e)
+            {
+                exception = e;
+            }
+            assertNotNull(exception);
+            assertEquals(
+                "Run must be a whole number of records",
+                exception.getMessage());
+        }
+    }
+
+
+    /*
+     * Checks that the copy holds the same records as before, by key.
+     */
+    private void checkSorted()
+        throws IOException
+    {
+        int[] after = readRecords();
+        assertEquals(before.length, after.length);
+        for (int i = 1; i < after.length; i++)
+        {
+            assertTrue(
+                Record.packedKey(after[i - 1]) <= Record.packedKey(after[i]));
+        }
+        int[] expected = before.clone();
+        Arrays.sort(expected);
+        Arrays.sort(after);
+        assertTrue(Arrays.equals(expected, after));
+    }
+
+
+    /*
+     * Reads the copy's records, packed.
+     */
+    private int[] readRecords()
+        throws IOException
+    {
+        ByteBuffer bytes =
+            ByteBuffer.wrap(Files.readAllBytes(Paths.get(copy.getPath())));
+        int[] recs = new int[bytes.remaining() / Record.SIZE_IN_BYTES];
+        bytes.asIntBuffer().get(recs);
+        return recs;
+    }
+
+
+    /*
+     * Counts the run files left in the temporary directory.
+     */
+    private int countTempFiles()
+    {
+        String[] names = tempDir.toFile().list(
+            (dir, name) -> name.startsWith("runs") && name.endsWith(".bin"));
+        return names.length;
+    }
+}
@@ -2,6 +2,7 @@ package com.github.a_zaheer.external_sorter;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -182,9 +183,9 @@ public class FileBufferPoolTest
         assertEquals(4807, rec12.getValue());
         assertEquals(24210, rec11.getKey());
         assertEquals(16923, rec11.getValue());
-        // checking clear with dirty bit on
+        // checking clear with dirty bit on, the swap looked up its block once
         bp.clear();
-        assertEquals(5, stats.getHits());
+        assertEquals(2, stats.getHits());
         assertEquals(1, stats.getMisses());
         assertEquals(1, stats.getReads());
         assertEquals(1, stats.getWrites());
@@ -193,7 +194,7 @@ public class FileBufferPoolTest
         rec2 = bp.getElem(1024);
         rec3 = bp.getElem(2048);
         bp.clear();
-        assertEquals(5, stats.getHits());
+        assertEquals(2, stats.getHits());
         assertEquals(3, stats.getMisses());
         assertEquals(3, stats.getReads());
         assertEquals(1, stats.getWrites());
@@ -241,5 +242,405 @@ public class FileBufferPoolTest
             "Unexpected error happened with the file",
             exception.getMessage());
     }
-}
 
+
+    // ----------------------------------------------------------
+    /**
+     * tests a pool with 8 KB blocks
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testBlockSize()
+        throws IOException
+    {
+        bp = new FileBufferPool(raf, 1, 8192, stats, new LruPolicy(1));
+        assertEquals(8192, bp.getBlockSize());
+
+        Record rec = bp.getElem(1024); // same block as record 0
+        assertEquals(23189, rec.getKey());
+        rec = bp.getElem(0);
+        assertEquals(3734, rec.getKey());
+        assertEquals(1, stats.getReads());
+
+        bp.setElem(2048, rec0); // second block, writes nothing yet
+        assertEquals(2, stats.getReads());
+        assertEquals(0, stats.getWrites());
+        bp.getElem(1); // evicts and writes the second block
+        assertEquals(1, stats.getWrites());
+        assertEquals(0, bp.getElem(2048).getKey());
+        raf.close();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests picking the block size and number of buffers from a budget
+     */
+    public void testAutoSize()
+    {
+        long mb = 1 << 20;
+
+        // plenty of file, blocks grow until 32 of them fill the budget
+        assertEquals(2 * mb, FileBufferPool.autoBlockSize(64 * mb, 1024 * mb));
+        assertEquals(
+            32,
+            FileBufferPool.autoBufferCount(64 * mb, (int)(2 * mb), 1024 * mb));
+
+        // never past the largest buffer
+        assertEquals(
+            Buffer.MAX_CAPACITY,
+            FileBufferPool.autoBlockSize(1024 * mb, 4096 * mb));
+
+        // a small file keeps blocks small and needs few of them
+        assertEquals(65536, FileBufferPool.autoBlockSize(64 * mb, 3 * mb));
+        assertEquals(
+            48,
+            FileBufferPool.autoBufferCount(64 * mb, 65536, 3 * mb));
+
+        // a tiny budget gets the default block size
+        assertEquals(4096, FileBufferPool.autoBlockSize(40960, 204800));
+        assertEquals(10, FileBufferPool.autoBufferCount(40960, 4096, 204800));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests records past 2^31 in a sparse 8 GB file, where an int offset
+     * would wrap around to the start of the file
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testLargeFile()
+        throws IOException
+    {
+        File big = new File("data\\working\\BPLarge.bin");
+        big.deleteOnExit();
+        long pos = (1L << 31) + 3;
+        try (RandomAccessFile bigRaf = new RandomAccessFile(big, "rw"))
+        {
+            bigRaf.setLength((pos + 1) * Record.SIZE_IN_BYTES);
+            bp = new FileBufferPool(bigRaf, 2, stats);
+            assertEquals(pos + 1, bp.length());
+
+            bp.setElem(pos, new Record(7, 9));
+            bp.swapElems(pos, 0);
+            bp.clear();
+
+            bigRaf.seek(0);
+            assertEquals(7, bigRaf.readShort());
+            bigRaf.seek(pos * Record.SIZE_IN_BYTES);
+            assertEquals(0, bigRaf.readShort());
+            assertEquals(0, bigRaf.readShort());
+        }
+        finally
+        {
+            big.delete();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests reading and writing short ranges through the buffers, one
+     * lookup per block
+     */
+    public void testRanges()
+    {
+        int[] recs = new int[8];
+        bp.readRange(0, recs, 0, 2);
+        assertEquals(Record.pack(3734, 4807), recs[0]);
+        assertEquals(Record.pack(24210, 16923), recs[1]);
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getReads());
+
+        // spans blocks 0 and 1
+        bp.readRange(1020, recs, 0, 8);
+        assertEquals(Record.pack(23189, 1559), recs[4]);
+        assertEquals(1, stats.getHits());
+        assertEquals(2, stats.getMisses());
+
+        int[] src = { Record.pack(1, 1), Record.pack(2, 2), Record.pack(3, 3) };
+        bp.writeRange(1022, src, 0, 3);
+        assertEquals(1, bp.getElem(1022).getKey());
+        assertEquals(3, bp.getElem(1024).getKey());
+
+        ByteBuffer bytes = ByteBuffer.allocate(12);
+        bp.readRange(1022, bytes);
+        assertEquals(12, bytes.position());
+        assertEquals(2, bytes.getShort(4));
+
+        bytes.flip();
+        bp.writeRange(0, bytes);
+        assertEquals(0, bytes.remaining());
+        bp.clear();
+        assertEquals(3, bp.getElem(2).getKey());
+        assertEquals(2, stats.getWrites());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that a range longer than half the buffers goes straight to the
+     * file but still sees and updates blocks in the buffers
+     */
+    public void testDirectRange()
+    {
+        bp.setElem(2048, rec0); // block 2 dirty in a frame
+
+        int[] all = new int[3072];
+        bp.readRange(0, all, 0, all.length);
+        assertEquals(Record.pack(3734, 4807), all[0]);
+        assertEquals(Record.pack(23189, 1559), all[1024]);
+        assertEquals(0, all[2048]);
+        assertEquals(3, stats.getMisses());
+        assertEquals(3, stats.getReads());
+
+        for (int i = 0; i < all.length; i++)
+            all[i] = Record.pack(i, i);
+        bp.writeRange(0, all, 0, all.length);
+        assertEquals(2, stats.getWrites()); // blocks 0 and 1 straight out
+        assertEquals(2050, bp.getElem(2050).getKey()); // still in a frame
+        assertEquals(5, bp.getElem(5).getKey()); // read back from the file
+        assertEquals(4, stats.getReads());
+
+        try
+        {
+            bp.readRange(3000, new int[100], 0, 100);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("Range must be within the file", exception.getMessage());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests copying overlapping ranges both ways
+     */
+    public void testCopyRange()
+    {
+        int[] all = new int[3072];
+        for (int i = 0; i < all.length; i++)
+            all[i] = Record.pack(i, i);
+        bp.writeRange(0, all, 0, all.length);
+
+        // forward overlap, long enough to go straight to the file
+        bp.copyRange(0, 10, 3000);
+        for (int i = 0; i < 10; i++)
+            assertEquals(i, bp.getElem(i).getKey());
+        for (int i = 0; i < 3000; i += 7)
+            assertEquals(i, bp.getElem(10 + i).getKey());
+        assertEquals(3010, bp.getElem(3010).getKey());
+
+        // backward overlap, through the buffers
+        bp.copyRange(10, 0, 100);
+        for (int i = 0; i < 100; i++)
+            assertEquals(i, bp.getElem(i).getKey());
+        assertEquals(100, bp.getElem(110).getKey());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests swaps with a single buffer, where the second block takes the
+     * first one's frame and the first one's buffer is kept aside
+     */
+    public void testSwapOneBuffer()
+    {
+        bp = new FileBufferPool(raf, 1, stats);
+        bp.swapElems(0, 1024);
+        assertEquals(0, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(1, stats.getWrites()); // block 0, set aside
+
+        assertEquals(3734, bp.getElem(1024).getKey()); // still in the frame
+        assertEquals(23189, bp.getElem(0).getKey());
+        assertEquals(2, stats.getWrites());
+
+        // same block, one lookup
+        bp.swapAt(0, 1);
+        assertEquals(24210, bp.keyAt(0));
+        assertEquals(23189, bp.keyAt(1));
+        assertEquals(4, stats.getHits());
+        assertEquals(3, stats.getMisses());
+        assertEquals(stats.getMisses(), stats.getReads());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that buffers are made on first use and given back when their
+     * frames go idle
+     */
+    public void testIdleBuffers()
+    {
+        bp = new FileBufferPool(raf, 3, stats);
+        assertEquals(0, bp.getAllocatedBuffers());
+        bp.getElem(0);
+        bp.getElem(1024);
+        assertEquals(2, bp.getAllocatedBuffers());
+        bp.setElem(0, new Record(7, 7));
+
+        bp.setIdleLimit(2);
+        for (int i = 0; i < 10; i++)
+            assertEquals(23189, bp.getElem(1024).getKey());
+        assertEquals(1, bp.getAllocatedBuffers()); // block 0 went idle
+        assertEquals(1, stats.getWrites());
+        assertEquals(Buffer.SECTOR_SIZE, stats.getBytesWritten());
+
+        assertEquals(7, bp.getElem(0).getKey());
+        assertEquals(3, stats.getMisses());
+        assertEquals(2, bp.getPeakBuffers());
+
+        bp.setIdleLimit(0);
+        for (int i = 0; i < 10; i++)
+            bp.getElem(1024);
+        assertEquals(2, bp.getAllocatedBuffers());
+
+        try
+        {
+            bp.setIdleLimit(-1);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("Idle limit must not be negative", exception.getMessage());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that clear() writes adjacent dirty buffers together, and a
+     * buffer on its own only where it changed
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testClearAdjacent()
+        throws IOException
+    {
+        raf.setLength(8L * Buffer.BUFFER_CAPACITY);
+        bp = new FileBufferPool(raf, 8, stats);
+        int[] blocks = { 5, 0, 2, 1 };
+        for (int b : blocks)
+            bp.setElem(b * 1024L, new Record(b, b));
+        bp.clear();
+        assertEquals(4, stats.getWrites());
+        assertEquals(
+            3 * Buffer.BUFFER_CAPACITY + Buffer.SECTOR_SIZE,
+            stats.getBytesWritten());
+
+        for (int b : blocks)
+            assertEquals(b, bp.getElem(b * 1024L).getKey());
+        assertEquals(24210, bp.getElem(1).getKey()); // untouched record
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests a pool on a FileChannel, which reads and writes without moving
+     * the file pointer
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testChannel()
+        throws IOException
+    {
+        raf.seek(100);
+        bp = new FileBufferPool(
+            raf.getChannel(),
+            1,
+            Buffer.BUFFER_CAPACITY,
+            stats,
+            new LruPolicy(1));
+        bp.swapElems(0, 2048);
+        assertEquals(7077, bp.getElem(0).getKey());
+        assertEquals(3734, bp.getElem(2048).getKey());
+        bp.clear();
+        assertEquals(100, raf.getFilePointer());
+        assertEquals(2, stats.getWrites()); // block 0, then block 2
+        assertEquals(stats.getMisses(), stats.getReads());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that pinned blocks stay in while others come and go, and that
+     * blocks not needed any more are written back and dropped
+     */
+    public void testHints()
+    {
+        bp = new FileBufferPool(raf, 2, stats);
+        bp.pin(0, 2048); // only block 0, half the buffers
+        bp.getElem(1024);
+        bp.getElem(2048);
+        bp.getElem(1024);
+        assertEquals(3734, bp.getElem(0).getKey());
+        assertEquals(4, stats.getMisses());
+        assertEquals(1, stats.getHits());
+
+        bp.unpin(0, 2048);
+        bp.getElem(2048); // evicts block 1, not block 0
+        bp.getElem(0);
+        assertEquals(5, stats.getMisses());
+        assertEquals(2, stats.getHits());
+
+        bp.setElem(0, new Record(7, 7));
+        bp.dontNeed(0, 1023); // block 0 is not wholly in the range
+        assertEquals(0, stats.getWrites());
+        bp.dontNeed(0, 1024);
+        assertEquals(1, stats.getWrites());
+        bp.willNeed(0, 1024); // no prefetcher, nothing happens
+        assertEquals(7, bp.getElem(0).getKey());
+        assertEquals(6, stats.getMisses());
+
+        try
+        {
+            bp.pin(0, 4000);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("Range must be within the file", exception.getMessage());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that a dontNeed() range ending where the last one started joins
+     * it, so the block across the two is dropped
+     */
+    public void testAdjacentHints()
+    {
+        bp = new FileBufferPool(raf, 2, stats);
+        bp.setElem(1000, new Record(7, 7));
+        bp.getElem(1500);
+        assertEquals(2, stats.getMisses());
+
+        bp.dontNeed(1500, 1572); // to the end, block 1 is not wholly in it
+        bp.getElem(1500);
+        assertEquals(1, stats.getHits());
+
+        bp.dontNeed(900, 600); // joined, block 1 is now wholly in the hints
+        bp.getElem(1000);
+        assertEquals(2, stats.getHits());
+        assertEquals(0, stats.getWrites());
+
+        bp.dontNeed(0, 900); // and block 0 too
+        assertEquals(1, stats.getWrites());
+        assertEquals(7, bp.getElem(1000).getKey());
+        bp.getElem(1500);
+        assertEquals(4, stats.getMisses());
+        assertEquals(2, stats.getHits());
+    }
+}
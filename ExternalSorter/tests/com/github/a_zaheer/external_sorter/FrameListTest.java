@@ -0,0 +1,113 @@
+package com.github.a_zaheer.external_sorter;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests FrameList
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class FrameListTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private FrameList list;
+    private Exception exception;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up test methods
+     */
+    public void setUp()
+    {
+        list = new FrameList(4);
+        exception = null;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests the list when it is empty
+     */
+    public void testEmpty()
+    {
+        assertTrue(list.isEmpty());
+        assertEquals(0, list.length());
+        assertEquals(FrameList.NIL, list.first());
+        assertEquals(FrameList.NIL, list.last());
+        assertFalse(list.contains(0));
+
+        list.remove(0); // not in the list, nothing happens
+        assertTrue(list.isEmpty());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests addFirst(), addLast(), next() and prev()
+     */
+    public void testAdd()
+    {
+        list.addFirst(1);
+        list.addFirst(2);
+        list.addLast(0);
+        assertEquals(3, list.length());
+        assertEquals(2, list.first());
+        assertEquals(0, list.last());
+        assertEquals(1, list.next(2));
+        assertEquals(0, list.next(1));
+        assertEquals(FrameList.NIL, list.next(0));
+        assertEquals(1, list.prev(0));
+        assertEquals(FrameList.NIL, list.prev(2));
+
+        try
+        {
+            list.addLast(1);
+        }
+        catch (IllegalStateException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("Frame is already in the list", exception.getMessage());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests moveToFront(), remove() and clear()
+     */
+    public void testMoveAndRemove()
+    {
+        list.addLast(0);
+        list.addLast(1);
+        list.addLast(2);
+
+        list.moveToFront(2); // 2 0 1
+        assertEquals(2, list.first());
+        assertEquals(1, list.last());
+
+        list.moveToFront(2); // already at front
+        assertEquals(2, list.first());
+
+        list.moveToFront(3); // not in the list yet: 3 2 0 1
+        assertEquals(4, list.length());
+        assertEquals(3, list.first());
+
+        list.remove(0); // 3 2 1
+        assertFalse(list.contains(0));
+        assertEquals(1, list.next(2));
+        assertEquals(2, list.prev(1));
+
+        list.remove(3);
+        list.remove(1);
+        assertEquals(2, list.first());
+        assertEquals(2, list.last());
+
+        list.clear();
+        assertTrue(list.isEmpty());
+        assertFalse(list.contains(2));
+    }
+}
@@ -0,0 +1,172 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests FrameSlab and a FileBufferPool that uses one
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class FrameSlabTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private final File copy     = new File("data\\working\\FSCopy3.bin");
+    private final File original = new File("data\\working\\sampleBlock3.bin");
+    private FrameSlab  slab;
+    private Exception  exception;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up test methods
+     */
+    public void setUp()
+    {
+        slab = new FrameSlab(Buffer.BUFFER_CAPACITY, 3);
+        exception = null;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests that frames are separate and are taken and given back
+     */
+    public void testTakeAndGive()
+    {
+        assertEquals(0, slab.getReservedBytes());
+        Buffer a = slab.take();
+        Buffer b = slab.take();
+        assertEquals(3 * Buffer.BUFFER_CAPACITY, slab.getReservedBytes());
+        assertEquals(2, slab.getTakenFrames());
+
+        ByteBuffer block = ByteBuffer.allocate(Buffer.BUFFER_CAPACITY);
+        a.load(block, 0);
+        b.load(block.clear(), Buffer.BUFFER_CAPACITY);
+        a.setRecord(1023, new Record(5, 6)); // last record of a's frame
+        assertEquals(0, b.getRecord(0).getKey());
+        assertEquals(5, a.getRecord(1023).getKey());
+
+        Buffer c = slab.take();
+        try
+        {
+            slab.take();
+        }
+        catch (IllegalStateException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("Every frame is taken", exception.getMessage());
+        exception = null;
+
+        try
+        {
+            slab.give(a);
+        }
+        catch (IllegalStateException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals(
+            "Only an empty buffer can be given back",
+            exception.getMessage());
+
+        a.flush();
+        slab.give(a);
+        assertEquals(2, slab.getTakenFrames());
+        assertSame(a, slab.take());
+        assertNotNull(c);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests the argument checks
+     */
+    public void testBadArguments()
+    {
+        try
+        {
+            new FrameSlab(Buffer.BUFFER_CAPACITY, 0);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals(
+            "Number of frames must be positive",
+            exception.getMessage());
+        exception = null;
+
+        try
+        {
+            slab.give(new Buffer(2 * Buffer.BUFFER_CAPACITY, true));
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals(
+            "Buffer does not belong to the slab",
+            exception.getMessage());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests a pool that carves its buffers out of a slab, including the
+     * spare one a swap needs and buffers given back when idle
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testPool()
+        throws IOException
+    {
+        Files.copy(
+            Paths.get(original.getPath()),
+            Paths.get(copy.getPath()),
+            StandardCopyOption.REPLACE_EXISTING);
+        copy.deleteOnExit();
+
+        try (RandomAccessFile raf = new RandomAccessFile(copy, "rw"))
+        {
+            IOStats stats = new IOStats();
+            FileBufferPool bp = new FileBufferPool(raf, 1, stats);
+            FrameSlab poolSlab = bp.useFrameSlab();
+            bp.swapElems(0, 1024);
+            assertEquals(2, poolSlab.getTakenFrames()); // frame and spare
+            assertEquals(3734, bp.getElem(1024).getKey());
+            assertEquals(23189, bp.getElem(0).getKey());
+
+            bp.setIdleLimit(1);
+            new RecordHeapSorter(bp, bp.length()).sort();
+            for (int i = 1; i < bp.length(); i++)
+                assertTrue(bp.compareAt(i - 1, i) <= 0);
+            bp.clear();
+
+            try
+            {
+                bp.useFrameSlab();
+            }
+            catch (IllegalStateException e)
+            {
+                exception = e;
+            }
+            assertNotNull(exception);
+            assertEquals("Buffers were already made", exception.getMessage());
+        }
+    }
+}
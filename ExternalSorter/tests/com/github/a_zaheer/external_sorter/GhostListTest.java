@@ -0,0 +1,76 @@
+package com.github.a_zaheer.external_sorter;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests GhostList
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class GhostListTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private GhostList ghosts;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up test methods
+     */
+    public void setUp()
+    {
+        ghosts = new GhostList(3);
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests add(), contains() and forgetting the oldest block when full
+     */
+    public void testAdd()
+    {
+        assertEquals(0, ghosts.size());
+        ghosts.add(10);
+        ghosts.add(20);
+        ghosts.add(30);
+        assertEquals(3, ghosts.size());
+        assertTrue(ghosts.contains(10));
+
+        ghosts.add(40); // 10 is the oldest
+        assertEquals(3, ghosts.size());
+        assertFalse(ghosts.contains(10));
+        assertTrue(ghosts.contains(20));
+        assertTrue(ghosts.contains(40));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests remove(), removeLast() and clear()
+     */
+    public void testRemove()
+    {
+        ghosts.removeLast(); // empty, nothing happens
+        ghosts.add(10);
+        ghosts.add(20);
+        ghosts.add(30);
+
+        assertTrue(ghosts.remove(20));
+        assertFalse(ghosts.remove(20));
+        assertEquals(2, ghosts.size());
+
+        ghosts.removeLast();
+        assertFalse(ghosts.contains(10));
+        assertTrue(ghosts.contains(30));
+
+        ghosts.add(50);
+        ghosts.add(60);
+        assertEquals(3, ghosts.size());
+
+        ghosts.clear();
+        assertEquals(0, ghosts.size());
+        assertFalse(ghosts.contains(30));
+    }
+}
@@ -1,5 +1,8 @@
 package com.github.a_zaheer.external_sorter;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -20,6 +23,7 @@ public class HeapSortTest
 {
     private final File copy     = new File("data\\working\\workingCopy50.bin");
     private final File original = new File("data\\working\\sampleBlock50.bin");
+    private final File stats    = new File("data\\working\\stats.txt");
     private String[]   args;
     private String     out;
     private Path       pathSrc;
@@ -40,7 +44,15 @@ public class HeapSortTest
         HeapSort.main(args);
         out = systemOut().getHistory();
         assertFuzzyEquals(
-            "Usage: HeapSort <data-file-name> <num-buffers> <stat-file-name>",
+            "Usage: HeapSort <data-file-name> <num-buffers> <stat-file-name>"
+                + " [--policy=lru|clock|2q|arc|lirs]"
+                + " [--pool=file|mapped|concurrent] [--prefetch=<depth>]"
+                + " [--write-behind=<dirty-ratio>]"
+                + " [--block-size=<bytes>[k|m]|auto]"
+                + " [--memory=<bytes>[k|m|g]] [--slab]"
+                + " [--tier=<bytes>[k|m|g]]"
+                + " [--mode=heap|merge|distribution|memory]"
+                + " [--runs=chunks|replace]",
             out);
         systemOut().clearHistory();
 
@@ -61,6 +73,24 @@ public class HeapSortTest
         assertFuzzyEquals("Number of buffers needs to be positive", out);
         systemOut().clearHistory();
 
+        // unknown option or policy
+        args = new String[4];
+        args[0] = "data\\working\\sampleBlock3.bin";
+        args[1] = "2";
+        args[2] = "data\\working\\stats.txt";
+        args[3] = "--verbose";
+        HeapSort.main(args);
+        out = systemOut().getHistory();
+        assertFuzzyEquals("Unknown option: --verbose", out);
+        systemOut().clearHistory();
+
+        args[3] = "--mode=quick";
+        HeapSort.main(args);
+        out = systemOut().getHistory();
+        assertFuzzyEquals("Unknown mode: quick", out);
+        systemOut().clearHistory();
+        args = new String[3];
+
         // file is not found
         args[0] = "data\\working\\file_not_exist";
         args[1] = "2";
@@ -113,5 +143,250 @@ public class HeapSortTest
         copy.deleteOnExit(); // delete the working copy
     }
 
+
+    /**
+     * Test --policy: unknown names are refused, and the named policy runs
+     * the heap sort
+     *
+     * @throws IOException
+     *             if an unexpected read/write error occurs
+     */
+    public void testPolicyOption()
+        throws IOException
+    {
+        assertFuzzyEquals(
+            "Unknown eviction policy: fifo",
+            run("data\\working\\sampleBlock3.bin", "2", "--policy=fifo"));
+
+        for (String policy : new String[] { "clock", "2q", "arc", "lirs" })
+        {
+            sortCopy("10", "--policy=" + policy);
+            assertEquals("Eviction policy: " + policy, lastStat("Eviction"));
+        }
+    }
+
+
+    /**
+     * Test --block-size: sizes out of range are refused, and other sizes
+     * sort with the same number of larger buffers
+     *
+     * @throws IOException
+     *             if an unexpected read/write error occurs
+     */
+    public void testBlockSizeOption()
+        throws IOException
+    {
+        assertFuzzyEquals(
+            "Block size must be a multiple of 4 from 4096 to 4194304",
+            run("data\\working\\sampleBlock3.bin", "2", "--block-size=8m"));
+
+        sortCopy("10", "--block-size=16k");
+        assertEquals("Block size: 16384", lastStat("Block size"));
+        assertEquals("Number of buffers: 10", lastStat("Number of buffers"));
+
+        sortCopy("10", "--block-size=auto");
+        assertNotNull(lastStat("Number of buffers"));
+    }
+
+
+    /**
+     * Test the other pool options: bad values and combinations are refused,
+     * and good ones sort
+     *
+     * @throws IOException
+     *             if an unexpected read/write error occurs
+     */
+    public void testPoolOptions()
+        throws IOException
+    {
+        String small = "data\\working\\sampleBlock3.bin";
+        assertFuzzyEquals(
+            "Prefetch depth needs to be positive",
+            run(small, "2", "--prefetch=0"));
+        assertFuzzyEquals(
+            "Dirty ratio needs to be more than 0 and at most 1",
+            run(small, "2", "--write-behind=1.5"));
+        assertFuzzyEquals(
+            "Tier size needs to be positive",
+            run(small, "2", "--tier=0"));
+        assertFuzzyEquals(
+            "An off-heap slab needs --pool=file",
+            run(small, "2", "--slab", "--pool=mapped"));
+        assertFuzzyEquals(
+            "A compressed tier needs --pool=file",
+            run(small, "2", "--tier=1m", "--pool=mapped"));
+
+        sortCopy("10", "--prefetch=4", "--write-behind=0.5");
+        assertNotNull(lastStat("Background writes"));
+        sortCopy("10", "--slab", "--tier=64k");
+        assertNotNull(lastStat("Compressed tier time"));
+        sortCopy("10", "--pool=mapped");
+        assertEquals("Eviction policy: none (memory-mapped)", lastStat("Evic"));
+        sortCopy("10", "--pool=concurrent");
+        assertEquals("Eviction policy: lru (4 stripes)", lastStat("Evic"));
+    }
+
+
+    /**
+     * Test --mode=merge: it needs three blocks of memory and no pool
+     * options, and sorts in runs made either way
+     *
+     * @throws IOException
+     *             if an unexpected read/write error occurs
+     */
+    public void testMergeMode()
+        throws IOException
+    {
+        String small = "data\\working\\sampleBlock3.bin";
+        assertFuzzyEquals(
+            "Memory must hold at least three blocks",
+            run(small, "2", "--mode=merge"));
+        assertFuzzyEquals(
+            "Pool options need --mode=heap",
+            run(small, "3", "--mode=merge", "--pool=mapped"));
+        assertFuzzyEquals(
+            "Replacement selection needs --mode=merge",
+            run(small, "3", "--runs=replace"));
+        assertFuzzyEquals(
+            "Unknown run generation: tape",
+            run(small, "3", "--mode=merge", "--runs=tape"));
+
+        sortCopy("4", "--mode=merge");
+        assertEquals("Eviction policy: none (merge sort)", lastStat("Evic"));
+        assertNotNull(lastStat("Merge passes"));
+
+        sortCopy("4", "--mode=merge", "--runs=replace");
+        assertNotNull(lastStat("Merge passes"));
+    }
+
+
+    /**
+     * Test --mode=distribution: it needs three blocks of memory, and sorts
+     * through buckets
+     *
+     * @throws IOException
+     *             if an unexpected read/write error occurs
+     */
+    public void testDistributionMode()
+        throws IOException
+    {
+        assertFuzzyEquals(
+            "Memory must hold at least three blocks",
+            run(
+                "data\\working\\sampleBlock3.bin",
+                "2",
+                "--mode=distribution"));
+
+        sortCopy("4", "--mode=distribution");
+        assertEquals(
+            "Eviction policy: none (distribution sort)",
+            lastStat("Evic"));
+        assertNotNull(lastStat("Distribution buckets"));
+    }
+
+
+    /**
+     * Test --mode=memory and --memory: bad budgets are refused, and a file
+     * that fits is sorted in memory when asked to or given a budget, but
+     * not otherwise
+     *
+     * @throws IOException
+     *             if an unexpected read/write error occurs
+     */
+    public void testMemoryMode()
+        throws IOException
+    {
+        String small = "data\\working\\sampleBlock3.bin";
+        assertFuzzyEquals(
+            "Invalid number format for memory budget",
+            run(small, "2", "--memory=2x"));
+        assertFuzzyEquals(
+            "Memory budget needs to be positive",
+            run(small, "2", "--memory=0"));
+        assertFuzzyEquals(
+            "File does not fit in memory",
+            run(small, "2", "--mode=memory")); // two buffers, three blocks
+
+        sortCopy("60", "--mode=memory");
+        assertEquals("Eviction policy: none (in memory)", lastStat("Evic"));
+        assertEquals("Disk reads: 50", lastStat("Disk reads"));
+
+        sortCopy("20", "--memory=1m");
+        assertEquals("Eviction policy: none (in memory)", lastStat("Evic"));
+        assertEquals("Disk reads: 50", lastStat("Disk reads"));
+
+        sortCopy("60"); // fits in the buffers, but no budget was given
+        assertEquals("Eviction policy: lru", lastStat("Evic"));
+    }
+
+
+    /*
+     * Runs main on a file with the stats file and options, and returns what
+     * it printed.
+     */
+    private String run(String file, String buffers, String... options)
+        throws IOException
+    {
+        String[] all = new String[3 + options.length];
+        all[0] = file;
+        all[1] = buffers;
+        all[2] = stats.getPath();
+        System.arraycopy(options, 0, all, 3, options.length);
+        HeapSort.main(all);
+        String printed = systemOut().getHistory();
+        systemOut().clearHistory();
+        return printed;
+    }
+
+
+    /*
+     * Sorts a fresh working copy and checks that it is sorted.
+     */
+    private void sortCopy(String buffers, String... options)
+        throws IOException
+    {
+        Files.copy(
+            Paths.get(original.getPath()),
+            Paths.get(copy.getPath()),
+            StandardCopyOption.REPLACE_EXISTING);
+        copy.deleteOnExit();
+
+        String printed = run(copy.getPath(), buffers, options);
+        assertEquals(7, printed.split("\n").length);
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(copy))))
+        {
+            short last = Short.MIN_VALUE;
+            for (long n = copy.length() / Record.SIZE_IN_BYTES; n > 0; n--)
+            {
+                short key = in.readShort();
+                in.readShort();
+                assertTrue(last <= key);
+                last = key;
+            }
+        }
+    }
+
+
+    /*
+     * Gets the last line of the stats file that starts with a prefix, or
+     * null if there is none.
+     */
+    private String lastStat(String prefix)
+        throws IOException
+    {
+        String found = null;
+        try (Scanner statsScan = new Scanner(stats))
+        {
+            while (statsScan.hasNextLine())
+            {
+                String line = statsScan.nextLine();
+                if (line.startsWith(prefix))
+                    found = line;
+            }
+        }
+        return found;
+    }
+
 }
 
@@ -46,6 +46,15 @@ public class IOStatsTest
         assertEquals(1, stats.getWrites());
         stats.setWrites(0);
         assertEquals(0, stats.getWrites());
+
+        stats.setBytesWritten(4096);
+        assertEquals(4096, stats.getBytesWritten());
+
+        stats.setTierHits(3);
+        assertEquals(3, stats.getTierHits());
+
+        stats.setTierTime(5000);
+        assertEquals(5000, stats.getTierTime());
     }
 
 
@@ -60,6 +69,9 @@ public class IOStatsTest
         assertEquals(0, stats.getMisses());
         assertEquals(0, stats.getReads());
         assertEquals(0, stats.getWrites());
+        assertEquals(0, stats.getBytesWritten());
+        assertEquals(0, stats.getTierHits());
+        assertEquals(0, stats.getTierTime());
     }
 }
 
@@ -0,0 +1,142 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests InMemorySort
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class InMemorySortTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private final File copy     = new File("data\\working\\IMCopy10.bin");
+    private final File original = new File("data\\working\\sampleBlock10.bin");
+    private IOStats    stats;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up a copy of a ten block file
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void setUp()
+        throws IOException
+    {
+        Files.copy(
+            Paths.get(original.getPath()),
+            Paths.get(copy.getPath()),
+            StandardCopyOption.REPLACE_EXISTING);
+        copy.deleteOnExit();
+        stats = new IOStats();
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests that the file is sorted with one pass of block reads and one of
+     * block writes
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testSort()
+        throws IOException
+    {
+        int[] before = readRecords();
+        sort();
+        int[] after = readRecords();
+        for (int i = 1; i < after.length; i++)
+        {
+            assertTrue(
+                Record.packedKey(after[i - 1]) <= Record.packedKey(after[i]));
+        }
+        Arrays.sort(before);
+        assertTrue(Arrays.equals(before, after));
+        assertEquals(10, stats.getReads());
+        assertEquals(10, stats.getWrites());
+        assertEquals(10 * Buffer.BUFFER_CAPACITY, stats.getBytesWritten());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that negative keys sort first and that a partial record at the
+     * end is left alone
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testSignsAndTail()
+        throws IOException
+    {
+        ByteBuffer bytes = ByteBuffer.allocate(14);
+        bytes.putInt(Record.pack(7, -1));
+        bytes.putInt(Record.pack(-3, 2));
+        bytes.putInt(Record.pack(0, 9));
+        bytes.putShort((short)99);
+        Files.write(Paths.get(copy.getPath()), bytes.array());
+
+        sort();
+        ByteBuffer sorted =
+            ByteBuffer.wrap(Files.readAllBytes(Paths.get(copy.getPath())));
+        assertEquals(14, sorted.remaining());
+        assertEquals(Record.pack(-3, 2), sorted.getInt());
+        assertEquals(Record.pack(0, 9), sorted.getInt());
+        assertEquals(Record.pack(7, -1), sorted.getInt());
+        assertEquals(99, sorted.getShort());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests fits()
+     */
+    public void testFits()
+    {
+        assertTrue(InMemorySort.fits(4096, 4096));
+        assertFalse(InMemorySort.fits(4100, 4096));
+        assertFalse(InMemorySort.fits(1L << 32, 1L << 40));
+        assertTrue(InMemorySort.fits(InMemorySort.MAX_BYTES, 1L << 40));
+    }
+
+
+    /*
+     * Sorts the copy.
+     */
+    private void sort()
+        throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(copy, "rw"))
+        {
+            new InMemorySort(raf.getChannel(), Buffer.BUFFER_CAPACITY, stats)
+                .sort();
+        }
+    }
+
+
+    /*
+     * Reads the copy's records, packed.
+     */
+    private int[] readRecords()
+        throws IOException
+    {
+        ByteBuffer bytes =
+            ByteBuffer.wrap(Files.readAllBytes(Paths.get(copy.getPath())));
+        int[] recs = new int[bytes.remaining() / Record.SIZE_IN_BYTES];
+        bytes.asIntBuffer().get(recs);
+        return recs;
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.a_zaheer.external_sorter;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests LirsPolicy
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class LirsPolicyTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private LirsPolicy policy;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up test methods with 4 frames: blocks 10, 11 and 12 become LIR and
+     * block 13 is the one HIR block
+     */
+    public void setUp()
+    {
+        policy = new LirsPolicy(4);
+        for (int i = 0; i < 4; i++)
+            policy.miss(i, 10 + i);
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests that a scan only churns the HIR frame
+     */
+    public void testScan()
+    {
+        for (int block = 100; block < 200; block++)
+        {
+            assertEquals(3, policy.evict(block));
+            policy.miss(3, block);
+            policy.hit(block % 3); // LIR blocks keep being used
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that a HIR block reused while in the stack becomes LIR
+     */
+    public void testPromotion()
+    {
+        policy.hit(3); // 13 is still in the stack: LIR, 10 becomes HIR
+        assertEquals(0, policy.evict(14));
+        policy.miss(0, 14);
+
+        // 10 is gone and 14 is the HIR block now
+        assertEquals(0, policy.evict(15));
+        policy.miss(0, 15);
+
+        // 14 is evicted but still in the stack, so it comes back as LIR
+        assertEquals(0, policy.evict(14));
+        policy.miss(0, 14);
+        // ... and the oldest LIR block, 11, is the HIR victim
+        assertEquals(1, policy.evict(16));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests a pool of one frame, where every block is HIR
+     */
+    public void testSingleFrame()
+    {
+        policy = new LirsPolicy(1);
+        policy.miss(0, 10);
+        policy.hit(0);
+        for (int block = 11; block < 20; block++)
+        {
+            assertEquals(0, policy.evict(block));
+            policy.miss(0, block);
+            policy.hit(0);
+        }
+        policy.clear();
+        policy.miss(0, 10);
+        assertEquals(0, policy.evict(11));
+    }
+}
@@ -0,0 +1,236 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests LoserTreeMerger and double-buffered RunReaders
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class LoserTreeMergerTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private final File       copy     = new File("data\\working\\LTCopy3.bin");
+    private final File       original =
+        new File("data\\working\\sampleBlock3.bin");
+    private RandomAccessFile raf;
+    private IOStats          stats;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up a scratch file to write runs in
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void setUp()
+        throws IOException
+    {
+        Files.copy(
+            Paths.get(original.getPath()),
+            Paths.get(copy.getPath()),
+            StandardCopyOption.REPLACE_EXISTING);
+        copy.deleteOnExit();
+        raf = new RandomAccessFile(copy, "rw");
+        stats = new IOStats();
+    }
+
+
+    /**
+     * closes the file
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void tearDown()
+        throws IOException
+    {
+        raf.close();
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests a merge of five runs, one empty, with equal keys kept in the
+     * order of their runs and the same result as a HeapMerger
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testMerge()
+        throws IOException
+    {
+        int[][] runs = { { Record.pack(2, 0), Record.pack(5, 0) },
+            { Record.pack(1, 1), Record.pack(2, 1), Record.pack(9, 1) }, {},
+            { Record.pack(2, 3) },
+            { Record.pack(0, 4), Record.pack(5, 4), Record.pack(5, 5) } };
+        long[] bounds = write(runs);
+
+        RunWriter out = new RunWriter(raf.getChannel(), 64, 64, stats);
+        LoserTreeMerger merger = new LoserTreeMerger(readers(bounds));
+        assertEquals(9, merger.mergeTo(out));
+        out.flush();
+        int[] expected = { Record.pack(0, 4), Record.pack(1, 1),
+            Record.pack(2, 0), Record.pack(2, 1), Record.pack(2, 3),
+            Record.pack(5, 0), Record.pack(5, 4), Record.pack(5, 5),
+            Record.pack(9, 1) };
+        assertTrue(Arrays.equals(expected, read(64, 9)));
+
+        out = new RunWriter(raf.getChannel(), 128, 64, stats);
+        new HeapMerger(readers(bounds)).mergeTo(out);
+        out.flush();
+        assertTrue(Arrays.equals(expected, read(128, 9)));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that a loser tree makes about log2(k) comparisons per record,
+     * fewer than a heap, on many runs read ahead in the background
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testComparisons()
+        throws IOException
+    {
+        Random random = new Random(3);
+        int[][] runs = new int[100][];
+        for (int i = 0; i < runs.length; i++)
+        {
+            runs[i] = new int[50];
+            for (int j = 0; j < runs[i].length; j++)
+                runs[i][j] = Record.pack(random.nextInt(30000), i);
+            Arrays.sort(runs[i]);
+        }
+        long[] bounds = write(runs);
+        long end = bounds[runs.length];
+
+        try (AsynchronousFileChannel async = AsynchronousFileChannel
+            .open(Paths.get(copy.getPath()), StandardOpenOption.READ))
+        {
+            RunReader[] readers = new RunReader[runs.length];
+            for (int i = 0; i < runs.length; i++)
+            {
+                readers[i] =
+                    new RunReader(async, bounds[i], bounds[i + 1], 64, stats);
+            }
+            RunWriter out = new RunWriter(raf.getChannel(), end, 4096, stats);
+            LoserTreeMerger merger = new LoserTreeMerger(readers);
+            assertEquals(5000, merger.mergeTo(out));
+            out.flush();
+            // 200 bytes per run: 4 windows of 64 bytes, the last short
+            assertEquals(400, stats.getReads());
+            // 7 levels of matches per record, and 99 to start
+            assertTrue(merger.getComparisons() <= 7 * 5000 + 99);
+
+            HeapMerger heap = new HeapMerger(readers(bounds));
+            heap.mergeTo(new RunWriter(raf.getChannel(), end, 4096, stats));
+            assertTrue(heap.getComparisons() > merger.getComparisons());
+        }
+
+        int[] merged = read(end, 5000);
+        for (int i = 1; i < merged.length; i++)
+        {
+            int a = merged[i - 1];
+            int b = merged[i];
+            assertTrue(Record.packedKey(a) < Record.packedKey(b)
+                || (Record.packedKey(a) == Record.packedKey(b)
+                    && Record.packedValue(a) <= Record.packedValue(b)));
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests merges of no runs and of one
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testFewRuns()
+        throws IOException
+    {
+        RunWriter out = new RunWriter(raf.getChannel(), 64, 64, stats);
+        assertEquals(0, new LoserTreeMerger(new RunReader[0]).mergeTo(out));
+
+        long[] bounds = write(new int[][] { { 1, 2, 3 } });
+        LoserTreeMerger merger = new LoserTreeMerger(readers(bounds));
+        assertEquals(3, merger.mergeTo(out));
+        assertEquals(0, merger.getComparisons());
+        out.flush();
+        assertTrue(Arrays.equals(new int[] { 1, 2, 3 }, read(64, 3)));
+    }
+
+
+    /*
+     * Writes runs one after another from the start of the file and returns
+     * where they start, and the end.
+     */
+    private long[] write(int[][] runs)
+        throws IOException
+    {
+        RunWriter out = new RunWriter(raf.getChannel(), 0, 4096, stats);
+        long[] bounds = new long[runs.length + 1];
+        for (int i = 0; i < runs.length; i++)
+        {
+            bounds[i] = out.getPosition();
+            out.write(runs[i], 0, runs[i].length);
+        }
+        out.flush();
+        bounds[runs.length] = out.getPosition();
+        stats.reset();
+        return bounds;
+    }
+
+
+    /*
+     * Opens a reader on each run.
+     */
+    private RunReader[] readers(long[] bounds)
+        throws IOException
+    {
+        FileChannel channel = raf.getChannel();
+        RunReader[] readers = new RunReader[bounds.length - 1];
+        for (int i = 0; i < readers.length; i++)
+            readers[i] =
+                new RunReader(channel, bounds[i], bounds[i + 1], 8, stats);
+        return readers;
+    }
+
+
+    /*
+     * Reads packed records from a byte offset.
+     */
+    private int[] read(long offset, int count)
+        throws IOException
+    {
+        RunReader in = new RunReader(
+            raf.getChannel(),
+            offset,
+            offset + 4L * count,
+            4096,
+            new IOStats());
+        int[] recs = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            recs[i] = in.current();
+            in.advance();
+        }
+        return recs;
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.a_zaheer.external_sorter;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests LruPolicy
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class LruPolicyTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private LruPolicy policy;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up test methods with frames 0, 1 and 2 holding blocks 10, 11, 12
+     */
+    public void setUp()
+    {
+        policy = new LruPolicy(3);
+        policy.miss(0, 10);
+        policy.miss(1, 11);
+        policy.miss(2, 12);
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests that the least recently used frame is evicted
+     */
+    public void testEvict()
+    {
+        assertEquals(0, policy.evict(13));
+        policy.miss(0, 13);
+
+        policy.hit(1);
+        assertEquals(2, policy.evict(14));
+        policy.miss(2, 14);
+        assertEquals(0, policy.evict(15));
+
+        policy.clear();
+        policy.miss(2, 16);
+        assertEquals(2, policy.evict(17));
+    }
+}
@@ -0,0 +1,207 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests MappedBufferPool
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class MappedBufferPoolTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private final File       copy     = new File("data\\working\\MPCopy3.bin");
+    private final File       original = new File("data\\working\\sampleBlock3.bin");
+    private Path             pathSrc;
+    private Path             pathDest;
+
+    private RandomAccessFile raf;
+    private IOStats          stats;
+    private MappedBufferPool bp;
+    private Record           rec;
+    private Exception        exception;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up test methods with one 4096 byte window per block
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void setUp()
+        throws IOException
+    {
+        pathSrc = Paths.get(original.getPath());
+        pathDest = Paths.get(copy.getPath());
+
+        Files.copy(pathSrc, pathDest, StandardCopyOption.REPLACE_EXISTING);
+
+        raf = new RandomAccessFile(copy, "rw");
+        stats = new IOStats();
+        bp = new MappedBufferPool(raf, MappedBufferPool.PAGE_SIZE, stats);
+        exception = null;
+
+        copy.deleteOnExit();
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests getElem(), setElem() and the statistics
+     *
+     * @throws IOException
+     *             if the file cannot be closed
+     */
+    public void testGetSet()
+        throws IOException
+    {
+        assertEquals(3072, bp.length());
+        assertEquals(3, bp.windowCount());
+
+        rec = bp.getElem(0);
+        assertEquals(3734, rec.getKey());
+        assertEquals(4807, rec.getValue());
+        assertEquals(1, stats.getReads()); // window mapped
+        assertEquals(1, stats.getMisses()); // first touch of the page
+        assertEquals(1, stats.getFaults());
+
+        rec = bp.getElem(1);
+        assertEquals(24210, rec.getKey());
+        assertEquals(16923, rec.getValue());
+        assertEquals(1, stats.getHits());
+
+        rec = bp.getElem(2048);
+        assertEquals(7077, rec.getKey());
+        assertEquals(17306, rec.getValue());
+        assertEquals(2, stats.getReads());
+        assertEquals(1, bp.getWindowFaults(2));
+        assertEquals(0, bp.getWindowFaults(1));
+
+        bp.setElem(1024, new Record(5, 6));
+        rec = bp.getElem(1024);
+        assertEquals(5, rec.getKey());
+        assertEquals(6, rec.getValue());
+        assertEquals(5 * Record.SIZE_IN_BYTES, stats.getTouched());
+
+        try
+        {
+            bp.getElem(3072);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("Position must be within range", exception.getMessage());
+
+        // clear() writes the change through to the file
+        bp.clear();
+        assertEquals(3, stats.getWrites());
+        raf.seek(1024 * Record.SIZE_IN_BYTES);
+        assertEquals(5, raf.readShort());
+        assertEquals(6, raf.readShort());
+        raf.close();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests swapElems() across windows and sorting through the pool
+     *
+     * @throws IOException
+     *             if the file cannot be closed
+     */
+    public void testSwapAndSort()
+        throws IOException
+    {
+        bp.swapElems(0, 2048);
+        assertEquals(7077, bp.getElem(0).getKey());
+        assertEquals(3734, bp.getElem(2048).getKey());
+
+        new HeapSorter<Record>(bp, bp.length()).sort();
+        for (int i = 1; i < bp.length(); i++)
+            assertTrue(bp.getElem(i - 1).compareTo(bp.getElem(i)) <= 0);
+        bp.clear();
+        raf.close();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests window sizes that cannot be used and the default window
+     *
+     * @throws IOException
+     *             if the file cannot be closed
+     */
+    public void testWindowSize()
+        throws IOException
+    {
+        try
+        {
+            bp = new MappedBufferPool(raf, 1000, stats);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals(
+            "Window size must be a positive multiple of 4096",
+            exception.getMessage());
+
+        bp = new MappedBufferPool(raf, stats);
+        assertEquals(1, bp.windowCount());
+        assertEquals(23189, bp.getElem(1024).getKey());
+        raf.close();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests the range methods, which count each page once
+     */
+    public void testRanges()
+    {
+        int[] recs = new int[1030];
+        bp.readRange(0, recs, 0, recs.length); // pages 0 and 1
+        assertEquals(Record.pack(3734, 4807), recs[0]);
+        assertEquals(Record.pack(23189, 1559), recs[1024]);
+        assertEquals(2, stats.getMisses());
+        assertEquals(recs.length * Record.SIZE_IN_BYTES, stats.getTouched());
+
+        for (int i = 0; i < recs.length; i++)
+            recs[i] = Record.pack(i, -i);
+        bp.writeRange(1, recs, 0, recs.length);
+        assertEquals(1029, bp.getElem(1030).getKey());
+        assertEquals(-1029, bp.getElem(1030).getValue());
+
+        ByteBuffer bytes = ByteBuffer.allocate(8);
+        bp.readRange(2, bytes);
+        assertEquals(1, bytes.getShort(0));
+        assertEquals(2, bytes.getShort(4));
+
+        bp.copyRange(1, 0, recs.length);
+        assertEquals(0, bp.getElem(0).getKey());
+        assertEquals(1029, bp.getElem(1029).getKey());
+        assertEquals(1029, bp.keyAt(1029));
+        assertTrue(bp.compareAt(0, 1029) < 0);
+        bp.swapAt(0, 1029);
+        assertEquals(1029, bp.keyAt(0));
+        bp.swapAt(0, 1029);
+
+        bp.copyRange(0, 2, 3);
+        assertEquals(2, bp.getElem(4).getKey());
+        assertEquals(1, bp.getElem(1).getKey());
+    }
+}
@@ -0,0 +1,399 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests Prefetcher through a FileBufferPool, comparing every record with a
+ * pool that does not read ahead.
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class PrefetcherTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private final File       copy     = new File("data\\working\\PFCopy10.bin");
+    private final File       original =
+        new File("data\\working\\sampleBlock10.bin");
+    private Path             pathSrc;
+    private Path             pathDest;
+
+    private RandomAccessFile raf;
+    private IOStats          stats;
+    private Prefetcher       prefetcher;
+    private FileBufferPool   bp;
+    private FileBufferPool   plain;
+    private Exception        exception;
+
+    private static final int RECORDS_PER_BLOCK =
+        Buffer.BUFFER_CAPACITY / Record.SIZE_IN_BYTES;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up a two buffer pool that reads up to two blocks ahead
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void setUp()
+        throws IOException
+    {
+        pathSrc = Paths.get(original.getPath());
+        pathDest = Paths.get(copy.getPath());
+
+        Files.copy(pathSrc, pathDest, StandardCopyOption.REPLACE_EXISTING);
+
+        raf = new RandomAccessFile(copy, "rw");
+        stats = new IOStats();
+        prefetcher = new Prefetcher(pathDest, 2, stats);
+        bp = new FileBufferPool(raf, 2, stats);
+        bp.setPrefetcher(prefetcher);
+        plain = new FileBufferPool(raf, 2, new IOStats());
+        exception = null;
+
+        copy.deleteOnExit();
+    }
+
+
+    /**
+     * closes the prefetcher and the file
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void tearDown()
+        throws IOException
+    {
+        prefetcher.close();
+        raf.close();
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests a scan of one record per block, like printing the sorted file
+     */
+    public void testSequential()
+    {
+        for (int b = 0; b < 10; b++)
+            checkBlock(b);
+
+        // 0, 1 and 2 make the pattern, 3 to 9 were read ahead
+        assertEquals(10, stats.getMisses());
+        assertEquals(7, stats.getPrefetchHits());
+        assertEquals(3, stats.getReads());
+        assertEquals(0, stats.getPrefetchWasted());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests the tail of a heap sort, which moves down one record at a time
+     * with the root used in between
+     */
+    public void testShrinkingTail()
+    {
+        for (int n = 10 * RECORDS_PER_BLOCK - 1; n > 0; n--)
+        {
+            check(0);
+            check(n);
+        }
+
+        // block 9 and 8 are read, 7 to 1 were read ahead
+        assertEquals(7, stats.getPrefetchHits());
+        assertEquals(0, stats.getPrefetchWasted());
+        assertEquals(
+            stats.getMisses(),
+            stats.getReads() + stats.getPrefetchHits());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests misses three blocks apart
+     */
+    public void testStrided()
+    {
+        checkBlock(0);
+        checkBlock(3);
+        assertEquals(0, stats.getPrefetches());
+        checkBlock(6); // 0, 3, 6 confirm the stride, 9 is read ahead
+        assertEquals(1, stats.getPrefetches());
+        checkBlock(9);
+        assertEquals(1, stats.getPrefetchHits());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests reading ahead on a willNeed() hint, without a pattern
+     */
+    public void testWillNeed()
+    {
+        bp.willNeed(5 * RECORDS_PER_BLOCK, 5 * RECORDS_PER_BLOCK);
+        assertEquals(2, stats.getPrefetches()); // as deep as the prefetcher
+        checkBlock(5);
+        checkBlock(6);
+        assertEquals(2, stats.getPrefetchHits());
+        assertEquals(0, stats.getReads());
+
+        bp.willNeed(5 * RECORDS_PER_BLOCK, 1); // already in a frame
+        assertEquals(2, stats.getPrefetches());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that read-ahead blocks nobody uses are counted as wasted, and
+     * that written blocks are read back correctly
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testWastedAndWrites()
+        throws IOException
+    {
+        checkBlock(0);
+        checkBlock(1);
+        assertEquals(0, stats.getPrefetches()); // no pattern yet
+        checkBlock(2); // reads 3 and 4 ahead
+        assertEquals(2, stats.getPrefetches());
+
+        bp.setElem(RECORDS_PER_BLOCK, new Record(1, 2));
+        bp.clear();
+        Record rec = bp.getElem(RECORDS_PER_BLOCK);
+        assertEquals(1, rec.getKey());
+        assertEquals(2, rec.getValue());
+
+        prefetcher.close();
+        assertEquals(2, stats.getPrefetchWasted());
+        assertEquals(0, stats.getPrefetchHits());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that a block whose first read comes back short is read to the
+     * end before the pool gets it, so none of its records are lost
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testShortReads()
+        throws IOException
+    {
+        prefetcher.close();
+        prefetcher = new Prefetcher(
+            new ShortReadChannel(
+                AsynchronousFileChannel
+                    .open(pathDest, StandardOpenOption.READ)),
+            2,
+            stats);
+        bp = new FileBufferPool(raf, 2, stats);
+        bp.setPrefetcher(prefetcher);
+
+        checkBlock(0);
+        checkBlock(1);
+        checkBlock(2); // reads 3 and 4 ahead, a little at a time
+        int last = 5 * RECORDS_PER_BLOCK - 1;
+        check(last);
+        assertEquals(1, stats.getPrefetchHits());
+        assertEquals(3, stats.getReads());
+
+        // the whole block is written back, not just the first read
+        bp.setElem(last, new Record(1, 2));
+        bp.clear();
+        Record rec = new FileBufferPool(raf, 2, new IOStats()).getElem(last);
+        assertEquals(1, rec.getKey());
+        assertEquals(2, rec.getValue());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests the depth check
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testBadDepth()
+        throws IOException
+    {
+        try
+        {
+            new Prefetcher(pathDest, 0, stats);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("Depth must be positive", exception.getMessage());
+    }
+
+
+    /*
+     * Compares the first record of a block with the pool that does not read
+     * ahead.
+     */
+    private void checkBlock(int block)
+    {
+        check(block * RECORDS_PER_BLOCK);
+    }
+
+
+    private void check(int pos)
+    {
+        Record expected = plain.getElem(pos);
+        Record actual = bp.getElem(pos);
+        assertEquals(expected.getKey(), actual.getKey());
+        assertEquals(expected.getValue(), actual.getValue());
+    }
+
+
+    /*
+     * Reads no more than SHORT bytes at a time, as a channel may.
+     */
+    private static class ShortReadChannel
+        extends AsynchronousFileChannel
+    {
+        private final AsynchronousFileChannel channel;
+
+        private static final int              SHORT = 100;
+
+        ShortReadChannel(AsynchronousFileChannel channel)
+        {
+            this.channel = channel;
+        }
+
+
+        @Override
+        public Future<Integer> read(ByteBuffer dst, long position)
+        {
+            ByteBuffer part =
+                ByteBuffer.allocate(Math.min(SHORT, dst.remaining()));
+            try
+            {
+                int read = channel.read(part, position).get();
+                part.flip();
+                dst.put(part);
+                return CompletableFuture.completedFuture(read);
+            }
+            catch (InterruptedException | ExecutionException e)
+            {
+                CompletableFuture<Integer> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+        }
+
+
+        @Override
+        public <A> void read(
+            ByteBuffer dst,
+            long position,
+            A attachment,
+            CompletionHandler<Integer, ? super A> handler)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+
+        @Override
+        public Future<Integer> write(ByteBuffer src, long position)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+
+        @Override
+        public <A> void write(
+            ByteBuffer src,
+            long position,
+            A attachment,
+            CompletionHandler<Integer, ? super A> handler)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+
+        @Override
+        public long size()
+            throws IOException
+        {
+            return channel.size();
+        }
+
+
+        @Override
+        public AsynchronousFileChannel truncate(long size)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+
+        @Override
+        public void force(boolean metaData)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+
+        @Override
+        public <A> void lock(
+            long position,
+            long size,
+            boolean shared,
+            A attachment,
+            CompletionHandler<FileLock, ? super A> handler)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+
+        @Override
+        public Future<FileLock> lock(long position, long size, boolean shared)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+
+        @Override
+        public boolean isOpen()
+        {
+            return channel.isOpen();
+        }
+
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            channel.close();
+        }
+    }
+}
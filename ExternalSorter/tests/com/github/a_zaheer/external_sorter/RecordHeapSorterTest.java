@@ -0,0 +1,92 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests RecordHeapSorter on its own and against HeapSorter on a file
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class RecordHeapSorterTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private final File       copy     = new File("data\\working\\RSCopy3.bin");
+    private final File       copy2    = new File("data\\working\\RSCopy3b.bin");
+    private final File       original =
+        new File("data\\working\\sampleBlock3.bin");
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests sort()
+     */
+    public void testSort()
+    {
+        int[] keys = { 4, 7, 2, 2, 3, 9, 1 };
+        int[] recs = new int[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            recs[i] = Record.pack(keys[i], 0);
+
+        FakeRecordBufferPool bp = new FakeRecordBufferPool(recs);
+        new RecordHeapSorter(bp, 7).sort();
+
+        int[] sorted = { 1, 2, 2, 3, 4, 7, 9 };
+        for (int i = 0; i < sorted.length; i++)
+            assertEquals(sorted[i], bp.keyAt(i));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that a file sorts to the same records with the same IO as with
+     * HeapSorter
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testSameAsHeapSorter()
+        throws IOException
+    {
+        Path pathSrc = Paths.get(original.getPath());
+        Files.copy(
+            pathSrc,
+            Paths.get(copy.getPath()),
+            StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(
+            pathSrc,
+            Paths.get(copy2.getPath()),
+            StandardCopyOption.REPLACE_EXISTING);
+        copy.deleteOnExit();
+        copy2.deleteOnExit();
+
+        IOStats stats = new IOStats();
+        IOStats stats2 = new IOStats();
+        try (RandomAccessFile raf = new RandomAccessFile(copy, "rw");
+            RandomAccessFile raf2 = new RandomAccessFile(copy2, "rw"))
+        {
+            FileBufferPool bp = new FileBufferPool(raf, 2, stats);
+            FileBufferPool bp2 = new FileBufferPool(raf2, 2, stats2);
+            new RecordHeapSorter(bp, bp.length()).sort();
+            new HeapSorter<Record>(bp2, bp2.length()).sort();
+
+            assertEquals(stats2.getHits(), stats.getHits());
+            assertEquals(stats2.getMisses(), stats.getMisses());
+            assertEquals(stats2.getWrites(), stats.getWrites());
+            for (int i = 0; i < bp.length(); i++)
+            {
+                assertEquals(bp2.getElem(i).getKey(), bp.keyAt(i));
+                if (i > 0)
+                    assertTrue(bp.compareAt(i - 1, i) <= 0);
+            }
+        }
+    }
+}
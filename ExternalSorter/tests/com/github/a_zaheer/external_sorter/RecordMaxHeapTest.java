@@ -0,0 +1,87 @@
+package com.github.a_zaheer.external_sorter;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests RecordMaxHeap
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class RecordMaxHeapTest
+    extends TestCase
+{
+    private int[]                recs;
+    private FakeRecordBufferPool bp;
+    private RecordMaxHeap        heap;
+
+    /**
+     * sets up the test methods with the same keys as MaxHeapTest, and each
+     * record's starting index as its value
+     */
+    public void setUp()
+    {
+        int[] keys = { 4, 7, 2, 2, 3, 9, 1 };
+        recs = new int[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            recs[i] = Record.pack(keys[i], i);
+
+        bp = new FakeRecordBufferPool(recs);
+        heap = new RecordMaxHeap(bp, 7);
+        // This constructor calls build-heap automatically
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that the heap was built like MaxHeap builds it and that values
+     * move with their keys
+     */
+    public void testHeap()
+    {
+        assertEquals(7, heap.heapSize());
+
+        int[] keys = { 9, 7, 4, 2, 3, 2, 1 };
+        for (int i = 0; i < keys.length; i++)
+            assertEquals(keys[i], Record.packedKey(recs[i]));
+        assertEquals(5, Record.packedValue(recs[0]));
+        assertEquals(0, Record.packedValue(recs[2]));
+
+        assertTrue(heap.isLeaf(3));
+        assertFalse(heap.isLeaf(2));
+        assertFalse(heap.isLeaf(7));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests removeMax()
+     */
+    public void testRemoveMax()
+    {
+        assertEquals(9, heap.removeMax());
+        assertEquals(7, Record.packedKey(recs[0]));
+        assertEquals(9, Record.packedKey(recs[6])); // out of heap
+        assertEquals(6, heap.heapSize());
+
+        assertEquals(7, heap.removeMax());
+        assertEquals(4, heap.removeMax());
+        assertEquals(3, heap.removeMax());
+        assertEquals(2, heap.removeMax());
+        assertEquals(2, heap.removeMax());
+        assertEquals(1, heap.removeMax());
+        assertEquals(0, heap.heapSize());
+
+        Exception exception = null;
+        try
+        {
+            heap.removeMax();
+        }
+        catch (IllegalStateException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("Heap is empty", exception.getMessage());
+    }
+}
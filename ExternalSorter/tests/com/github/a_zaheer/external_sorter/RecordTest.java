@@ -1,4 +1,5 @@
 package com.github.a_zaheer.external_sorter;
+import java.nio.ByteBuffer;
 import student.TestCase;
 
 // -------------------------------------------------------------------------
@@ -66,4 +67,22 @@ public class RecordTest
 
     }
 
+
+    // ----------------------------------------------------------
+    /**
+     * Tests packing records into ints the way they are laid out in the file.
+     */
+    public void testPack()
+    {
+        int packed = Record.pack(23, 1024);
+        assertEquals(23, Record.packedKey(packed));
+        assertEquals(1024, Record.packedValue(packed));
+        byte[] bytes = { 0, 23, 4, 0 };
+        assertEquals(ByteBuffer.wrap(bytes).getInt(), packed);
+
+        packed = Record.pack(-2, -3);
+        assertEquals(-2, Record.packedKey(packed));
+        assertEquals(-3, Record.packedValue(packed));
+    }
+
 }
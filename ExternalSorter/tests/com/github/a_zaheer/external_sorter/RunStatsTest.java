@@ -0,0 +1,83 @@
+package com.github.a_zaheer.external_sorter;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests RunStats
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class RunStatsTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private RunStats  runs;
+    private Exception exception;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up statistics for a memory of 100 records
+     */
+    public void setUp()
+    {
+        runs = new RunStats(100);
+        exception = null;
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests the lengths and the distribution
+     */
+    public void testAdd()
+    {
+        assertEquals(0, runs.getCount());
+        assertEquals(0, runs.getShortest());
+        assertEquals(0.0, runs.getMeanRatio(), 0.0);
+        assertEquals("", runs.toString());
+
+        runs.add(190);
+        runs.add(210);
+        runs.add(20);
+        runs.add(1000);
+        assertEquals(4, runs.getCount());
+        assertEquals(1420, runs.getTotal());
+        assertEquals(20, runs.getShortest());
+        assertEquals(1000, runs.getLongest());
+        assertEquals(3.55, runs.getMeanRatio(), 1e-9);
+        assertEquals(100, runs.getMemoryRecords());
+
+        long[] buckets = runs.getBuckets();
+        assertEquals(RunStats.BUCKETS, buckets.length);
+        assertEquals(1, buckets[0]);
+        assertEquals(1, buckets[3]);
+        assertEquals(1, buckets[4]);
+        assertEquals(1, buckets[RunStats.BUCKETS - 1]);
+        assertEquals(
+            "[0.0, 0.5): 1 [1.5, 2.0): 1 [2.0, 2.5): 1 [3.5, inf): 1",
+            runs.toString());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests the memory check
+     */
+    public void testBadArguments()
+    {
+        try
+        {
+            new RunStats(0);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals(
+            "Memory must hold at least one record",
+            exception.getMessage());
+    }
+}
@@ -0,0 +1,265 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests SharedBlockCache
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class SharedBlockCacheTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private final File       copyA    = new File("data\\working\\SCCopyA.bin");
+    private final File       copyB    = new File("data\\working\\SCCopyB.bin");
+    private final File       original =
+        new File("data\\working\\sampleBlock10.bin");
+
+    private RandomAccessFile rafA;
+    private RandomAccessFile rafB;
+    private IOStats          stats;
+    private SharedBlockCache cache;
+    private Exception        exception;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up two copies of a ten block file and a cache of four frames
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void setUp()
+        throws IOException
+    {
+        for (File copy : new File[] { copyA, copyB })
+        {
+            Files.copy(
+                Paths.get(original.getPath()),
+                Paths.get(copy.getPath()),
+                StandardCopyOption.REPLACE_EXISTING);
+            copy.deleteOnExit();
+        }
+
+        rafA = new RandomAccessFile(copyA, "rw");
+        rafB = new RandomAccessFile(copyB, "rw");
+        stats = new IOStats();
+        cache = new SharedBlockCache(4, stats);
+        exception = null;
+    }
+
+
+    /**
+     * closes the files
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void tearDown()
+        throws IOException
+    {
+        rafA.close();
+        rafB.close();
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests that a file over its quota gives frames to one under it, and
+     * that an idle file loses its quota
+     */
+    public void testQuotas()
+    {
+        RecordBufferPool a = cache.open(rafA.getChannel(), 1);
+        RecordBufferPool b = cache.open(rafB.getChannel(), 1);
+        assertEquals(2, cache.getQuota(a));
+        for (int block = 0; block < 4; block++)
+            a.getElem(block * 1024L);
+        assertEquals(4, cache.getResident(a)); // the free frames
+
+        b.getElem(0);
+        b.getElem(1024);
+        assertEquals(2, cache.getResident(a));
+        assertEquals(2, cache.getResident(b));
+        b.getElem(2048); // both at their quota, b gives up its own
+        assertEquals(2, cache.getResident(a));
+        assertEquals(2, cache.getResident(b));
+
+        for (int i = 0; i < SharedBlockCache.IDLE_PER_FRAME * 4 + 1; i++)
+            b.getElem(2048);
+        assertEquals(0, cache.getQuota(a));
+        assertEquals(4, cache.getQuota(b));
+        b.getElem(3072);
+        b.getElem(4096);
+        assertEquals(0, cache.getResident(a));
+        assertEquals(4, cache.getResident(b));
+        assertEquals(stats.getMisses(), stats.getReads());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that quotas follow the weights
+     */
+    public void testWeights()
+    {
+        RecordBufferPool a = cache.open(rafA.getChannel(), 3);
+        RecordBufferPool b = cache.open(rafB.getChannel(), 1);
+        assertEquals(3, cache.getQuota(a));
+        assertEquals(1, cache.getQuota(b));
+
+        for (int block = 0; block < 10; block++)
+        {
+            a.getElem(block * 1024L);
+            b.getElem(block * 1024L);
+        }
+        assertEquals(3, cache.getResident(a));
+        assertEquals(1, cache.getResident(b));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests two sorts on two threads sharing the cache
+     *
+     * @throws Exception
+     *             if a thread fails
+     */
+    public void testSortTwoFiles()
+        throws Exception
+    {
+        RecordBufferPool[] pools = { cache.open(rafA.getChannel(), 1),
+            cache.open(rafB.getChannel(), 1) };
+        Thread[] threads = new Thread[pools.length];
+        Throwable[] failures = new Throwable[pools.length];
+        for (int t = 0; t < pools.length; t++)
+        {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                try
+                {
+                    RecordBufferPool pool = pools[id];
+                    new RecordHeapSorter(pool, pool.length()).sort();
+                }
+                catch (Throwable e)
+                {
+                    failures[id] = e;
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        for (Throwable failure : failures)
+            assertNull(failure);
+
+        for (RecordBufferPool pool : pools)
+            cache.close(pool);
+        for (RandomAccessFile raf : new RandomAccessFile[] { rafA, rafB })
+        {
+            raf.seek(0);
+            short last = Short.MIN_VALUE;
+            for (int i = 0; i < 10 * 1024; i++)
+            {
+                short key = raf.readShort();
+                raf.readShort();
+                assertTrue(last <= key);
+                last = key;
+            }
+        }
+        assertEquals(stats.getMisses(), stats.getReads());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that dontNeed() and close() write blocks back and free their
+     * frames
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testCloseAndDontNeed()
+        throws IOException
+    {
+        RecordBufferPool a = cache.open(rafA.getChannel(), 1);
+        a.setElem(0, new Record(7, 7));
+        a.setElem(1024, new Record(8, 8));
+        a.dontNeed(0, 1023); // block 0 is not wholly in the range
+        assertEquals(2, cache.getResident(a));
+        a.dontNeed(0, 1024);
+        assertEquals(1, cache.getResident(a));
+        assertEquals(1, stats.getWrites());
+
+        cache.close(a);
+        assertEquals(2, stats.getWrites());
+        rafA.seek(1024 * Record.SIZE_IN_BYTES);
+        assertEquals(8, rafA.readShort());
+
+        try
+        {
+            a.getElem(0);
+        }
+        catch (IllegalStateException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("Pool was closed", exception.getMessage());
+        exception = null;
+
+        try
+        {
+            cache.getResident(a);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals(
+            "Pool does not belong to the cache",
+            exception.getMessage());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests the argument checks
+     */
+    public void testBadArguments()
+    {
+        try
+        {
+            new SharedBlockCache(0, stats);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals(
+            "Number of frames must be positive",
+            exception.getMessage());
+        exception = null;
+
+        try
+        {
+            cache.open(rafA.getChannel(), 0);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("Weight must be positive", exception.getMessage());
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.a_zaheer.external_sorter;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests TwoQueuePolicy
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class TwoQueuePolicyTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private TwoQueuePolicy policy;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up test methods with 4 frames holding blocks 10 to 13, all in A1in
+     */
+    public void setUp()
+    {
+        policy = new TwoQueuePolicy(4); // A1in target is 1
+        for (int i = 0; i < 4; i++)
+            policy.miss(i, 10 + i);
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests that blocks only reach Am after coming back from A1out
+     */
+    public void testPromotion()
+    {
+        policy.hit(0); // no effect in A1in
+        assertEquals(0, policy.evict(14)); // FIFO order
+        policy.miss(0, 14);
+
+        assertEquals(1, policy.evict(10));
+        policy.miss(1, 10); // 10 was in A1out, goes to Am
+
+        assertEquals(2, policy.evict(15));
+        policy.miss(2, 15);
+        assertEquals(3, policy.evict(16));
+        policy.miss(3, 16);
+        assertEquals(0, policy.evict(17));
+        policy.miss(0, 17);
+
+        // A1in now holds 15, 16, 17 and the one frame in Am is protected
+        assertEquals(2, policy.evict(18));
+        policy.miss(2, 18);
+        assertEquals(3, policy.evict(19));
+        policy.miss(3, 19);
+        assertEquals(0, policy.evict(20));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that Am is used, in LRU order, once A1in is at its target
+     */
+    public void testMainQueue()
+    {
+        assertEquals(0, policy.evict(14));
+        policy.miss(0, 14);
+        assertEquals(1, policy.evict(10));
+        policy.miss(1, 10); // back from A1out, into Am
+        assertEquals(2, policy.evict(11));
+        policy.miss(2, 11); // Am
+        assertEquals(3, policy.evict(15));
+        policy.miss(3, 15);
+        assertEquals(0, policy.evict(13));
+        policy.miss(0, 13); // Am
+
+        // A1in = {15} is at target, Am = 13 11 10
+        policy.hit(1); // Am = 10 13 11
+        assertEquals(2, policy.evict(20));
+        policy.miss(2, 20);
+
+        // A1in = {20, 15} is over target again
+        assertEquals(3, policy.evict(21));
+
+        policy.clear();
+        policy.miss(3, 30);
+        assertEquals(3, policy.evict(31));
+    }
+}
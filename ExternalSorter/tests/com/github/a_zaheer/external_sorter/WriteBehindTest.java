@@ -0,0 +1,264 @@
+package com.github.a_zaheer.external_sorter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import student.TestCase;
+
+// -------------------------------------------------------------------------
+/**
+ * Tests WriteBehind through a FileBufferPool
+ *
+ * @author agent
+ * @version Oct 18, 2026
+ */
+public class WriteBehindTest
+    extends TestCase
+{
+    // ~ Fields ................................................................
+    private final File       copy     = new File("data\\working\\WBCopy10.bin");
+    private final File       original =
+        new File("data\\working\\sampleBlock10.bin");
+    private Path             pathSrc;
+    private Path             pathDest;
+
+    private RandomAccessFile raf;
+    private IOStats          stats;
+    private WriteBehind      writeBehind;
+    private FileBufferPool   bp;
+    private Exception        exception;
+
+    private static final int RECORDS_PER_BLOCK =
+        Buffer.BUFFER_CAPACITY / Record.SIZE_IN_BYTES;
+
+    // ~ Constructors ..........................................................
+    /**
+     * sets up a four buffer pool that writes behind once more than two
+     * buffers are dirty
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void setUp()
+        throws IOException
+    {
+        pathSrc = Paths.get(original.getPath());
+        pathDest = Paths.get(copy.getPath());
+
+        Files.copy(pathSrc, pathDest, StandardCopyOption.REPLACE_EXISTING);
+
+        raf = new RandomAccessFile(copy, "rw");
+        stats = new IOStats();
+        writeBehind = new WriteBehind(raf.getChannel(), 2);
+        bp = new FileBufferPool(raf, 4, stats);
+        bp.setWriteBehind(writeBehind, 0.5);
+        exception = null;
+
+        copy.deleteOnExit();
+    }
+
+
+    /**
+     * stops the background thread and closes the file
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void tearDown()
+        throws IOException
+    {
+        writeBehind.close();
+        raf.close();
+    }
+
+
+    // ~Public Methods ........................................................
+    // ----------------------------------------------------------
+    /**
+     * tests that crossing the dirty ratio writes the oldest dirty buffers in
+     * the background, so later evictions find them clean
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testWriteBehind()
+        throws IOException
+    {
+        for (int b = 0; b < 2; b++)
+            bp.setElem(b * RECORDS_PER_BLOCK, new Record(b, b));
+        assertEquals(0, stats.getBackgroundWrites());
+
+        // third dirty buffer, blocks 0 and 1 are written down to one dirty
+        bp.setElem(2 * RECORDS_PER_BLOCK, new Record(2, 2));
+        assertEquals(2, stats.getBackgroundWrites());
+        assertEquals(2, stats.getWrites());
+
+        // evicting blocks 0 to 2 writes only block 2
+        for (int b = 3; b < 7; b++)
+            bp.getElem(b * RECORDS_PER_BLOCK);
+        assertEquals(3, stats.getWrites());
+
+        bp.clear();
+        for (int b = 0; b < 3; b++)
+            assertEquals(b, readKey(b * RECORDS_PER_BLOCK));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that only changed sectors are written behind, that changing a
+     * dirty buffer again does not write behind, and that a block written
+     * behind that changes again is left to its eviction
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testWrittenBytes()
+        throws IOException
+    {
+        for (int b = 0; b < 3; b++)
+            bp.setElem(b * RECORDS_PER_BLOCK, new Record(b, b));
+        assertEquals(2, stats.getWrites());
+        assertEquals(2 * Buffer.SECTOR_SIZE, stats.getBytesWritten());
+
+        // block 2 is already dirty
+        for (int i = 1; i < RECORDS_PER_BLOCK; i++)
+            bp.setElem(2 * RECORDS_PER_BLOCK + i, new Record(i, i));
+        assertEquals(2, stats.getBackgroundWrites());
+
+        // blocks 2 and 0 are the oldest, but block 0 was written behind
+        bp.setElem(0, new Record(10, 0));
+        bp.setElem(RECORDS_PER_BLOCK, new Record(11, 1));
+        assertEquals(3, stats.getBackgroundWrites());
+        assertEquals(
+            2 * Buffer.SECTOR_SIZE + Buffer.BUFFER_CAPACITY,
+            stats.getBytesWritten());
+
+        // evicting blocks 0 to 2 writes blocks 0 and 1
+        for (int b = 3; b < 7; b++)
+            bp.getElem(b * RECORDS_PER_BLOCK);
+        assertEquals(5, stats.getWrites());
+        assertEquals(
+            4 * Buffer.SECTOR_SIZE + Buffer.BUFFER_CAPACITY,
+            stats.getBytesWritten());
+
+        bp.clear();
+        assertEquals(10, readKey(0));
+        assertEquals(11, readKey(RECORDS_PER_BLOCK));
+        assertEquals(RECORDS_PER_BLOCK - 1, readKey(3 * RECORDS_PER_BLOCK - 1));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests that a block is read back with its latest data while and after
+     * it is written in the background, and after it changes again
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testReadBack()
+        throws IOException
+    {
+        for (int round = 1; round <= 3; round++)
+        {
+            for (int b = 0; b < 10; b++)
+                bp.setElem(b * RECORDS_PER_BLOCK, new Record(round, b));
+            for (int b = 0; b < 10; b++)
+            {
+                Record rec = bp.getElem(b * RECORDS_PER_BLOCK);
+                assertEquals(round, rec.getKey());
+                assertEquals(b, rec.getValue());
+            }
+        }
+        assertTrue(stats.getBackgroundWrites() > 0);
+
+        bp.clear();
+        for (int b = 0; b < 10; b++)
+            assertEquals(3, readKey(b * RECORDS_PER_BLOCK));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests queueing a run of adjacent blocks that is longer than the slots
+     * left before the end of the staging buffer
+     *
+     * @throws IOException
+     *             if an IO error occurs
+     */
+    public void testAdjacentRun()
+        throws IOException
+    {
+        Buffer single = new Buffer().fill(raf.getChannel(), 0);
+        single.setRecord(1, new Record(99, 0));
+        writeBehind.write(0, single); // the run starts at the last slot
+
+        Buffer[] run = new Buffer[3];
+        for (int i = 0; i < run.length; i++)
+        {
+            run[i] = new Buffer().fill(
+                raf.getChannel(),
+                (4L + i) * Buffer.BUFFER_CAPACITY);
+            run[i].setRecord(1, new Record(40 + i, i));
+        }
+        writeBehind.write(4, run, run.length);
+        for (Buffer buff : run)
+            assertFalse(buff.isDirty());
+
+        writeBehind.drain();
+        for (int i = 0; i < run.length; i++)
+            assertEquals(40 + i, readKey((4 + i) * RECORDS_PER_BLOCK + 1));
+        assertEquals(99, readKey(1));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * tests the argument checks
+     */
+    public void testBadArguments()
+    {
+        try
+        {
+            bp.setWriteBehind(writeBehind, 0);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals(
+            "Dirty ratio must be more than 0 and at most 1",
+            exception.getMessage());
+        exception = null;
+
+        try
+        {
+            new WriteBehind(raf.getChannel(), 0);
+        }
+        catch (IllegalArgumentException e)
+        {
+            exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals("Number of slots must be positive", exception.getMessage());
+    }
+
+
+    /*
+     * Reads a record's key straight from the file.
+     */
+    private int readKey(int pos)
+        throws IOException
+    {
+        try (RandomAccessFile check = new RandomAccessFile(copy, "r"))
+        {
+            check.seek((long)pos * Record.SIZE_IN_BYTES);
+            return check.readShort();
+        }
+    }
+}